@@ -0,0 +1,120 @@
+package io.afaruqi.gogobot.benchmarks;
+
+import io.afaruqi.gogobot.application.Cli;
+import io.afaruqi.gogobot.application.CommandMetrics;
+import io.afaruqi.gogobot.application.CommandSession;
+import io.afaruqi.gogobot.application.RegexCommandParser;
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse-and-dispatch cost per command line: the byte tokenizer of {@link CommandSession} against the regular
+ * expressions of {@link RegexCommandParser} over the same lines decoded into {@code String}s, both without any I/O.
+ * Both execute every command on its own ({@link #byteParser} executes the run of MOVE, LEFT or RIGHT lines it holds
+ * back at once), so they only differ in parsing. {@link #commandSession} adds what holding back runs saves, and
+ * {@link #cli} is the whole interactive {@link Cli} reading stdin.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandDispatchBenchmark {
+    private static final int LINES = 10_000;
+
+    private byte[] commands;
+    private int[] lineStarts;
+    private CommandSession session;
+    private RegexCommandParser regexParser;
+    private InputStream systemIn;
+    private PrintStream systemOut;
+
+    @Setup
+    public void setUp() {
+        commands = CommandStreams.generate(LINES);
+        lineStarts = new int[LINES + 1];
+
+        for (int i = 0, line = 0; i < commands.length; i++) {
+            if (commands[i] == '\n') {
+                lineStarts[++line] = i + 1;
+            }
+        }
+
+        session = new CommandSession(new RobotService(PlaneService.initDefault()), OutputStream.nullOutputStream());
+        regexParser = new RegexCommandParser(CommandMetrics.DISABLED);
+
+        systemIn = System.in;
+        systemOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @Setup(Level.Invocation)
+    public void resetInput() {
+        System.setIn(new ByteArrayInputStream(commands));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setIn(systemIn);
+        System.setOut(systemOut);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void cli() {
+        new Cli(new RobotService(PlaneService.initDefault())).run();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public CommandSession commandSession() {
+        for (var i = 0; i < LINES; i++) {
+            session.executeLine(commands, lineStarts[i], lineStarts[i + 1] - 1);
+        }
+
+        return session;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public CommandSession byteParser() {
+        for (var i = 0; i < LINES; i++) {
+            session.executeLine(commands, lineStarts[i], lineStarts[i + 1] - 1);
+            session.executePendingRun();
+        }
+
+        return session;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public CommandSession regexParser() {
+        for (var i = 0; i < LINES; i++) {
+            var line = new String(commands, lineStarts[i], lineStarts[i + 1] - 1 - lineStarts[i], StandardCharsets.UTF_8);
+            regexParser.execute(session, line);
+        }
+
+        return session;
+    }
+}
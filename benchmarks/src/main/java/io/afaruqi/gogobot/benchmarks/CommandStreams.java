@@ -0,0 +1,75 @@
+package io.afaruqi.gogobot.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Generates reproducible command streams for the 5x5 default plane.
+ * <p>
+ * The mix is roughly what a user types: mostly MOVE, some turns and REPORTs, now and then a new PLACE, an unknown
+ * command or an invalid PLACE.
+ */
+final class CommandStreams {
+    private static final String[] DIRECTIONS = {"NORTH", "SOUTH", "EAST", "WEST"};
+
+    private CommandStreams() {
+    }
+
+    static byte[] generate(int lines) {
+        var stream = new StringBuilder(lines * 6);
+        var random = new SplittableRandom(42);
+
+        for (var i = 0; i < lines; i++) {
+            stream.append(line(random, i)).append('\n');
+        }
+
+        return stream.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static Path generateFile(long lines) {
+        try {
+            var file = Files.createTempFile("gogobot-commands-", ".txt");
+            var random = new SplittableRandom(42);
+
+            try (var output = new BufferedOutputStream(Files.newOutputStream(file), 1 << 20)) {
+                for (var i = 0L; i < lines; i++) {
+                    output.write(line(random, i).getBytes(StandardCharsets.US_ASCII));
+                    output.write('\n');
+                }
+            }
+
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String line(SplittableRandom random, long index) {
+        if (index == 0) {
+            return "PLACE 0,0,NORTH";
+        }
+
+        var roll = random.nextInt(100);
+
+        if (roll < 50) {
+            return "MOVE";
+        } else if (roll < 65) {
+            return "LEFT";
+        } else if (roll < 80) {
+            return "RIGHT";
+        } else if (roll < 93) {
+            return "REPORT";
+        } else if (roll < 98) {
+            return "PLACE " + random.nextInt(7) + "," + random.nextInt(7) + "," + DIRECTIONS[random.nextInt(4)];
+        } else if (roll < 99) {
+            return "PLACE 1,1";
+        }
+
+        return "JUMP";
+    }
+}
@@ -0,0 +1,112 @@
+package io.afaruqi.gogobot.benchmarks;
+
+import io.afaruqi.gogobot.application.CommandJournal;
+import io.afaruqi.gogobot.application.CommandMetrics;
+import io.afaruqi.gogobot.application.CommandSession;
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Commands executed with a journal, under every fsync policy and with a commit after every line or after groups of
+ * lines, e.g. the interactive mode against a pipelined or batch input.
+ * <p>
+ * The {@code lines} counter reports the throughput in command lines per second. The journal is written to a
+ * temporary directory, so the numbers depend on the disk under it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JournalBenchmark {
+    private static final int LINES = 10_000;
+
+    @Param({"NEVER", "GROUP", "ALWAYS"})
+    public CommandJournal.FsyncPolicy fsyncPolicy;
+
+    @Param({"1", "1000"})
+    public int linesPerCommit;
+
+    private final PlaneService planeService = PlaneService.initDefault();
+    private byte[] commands;
+    // the end of every group of lines in commands
+    private int[] commitPoints;
+    private Path directory;
+    private CommandJournal journal;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Lines {
+        public long lines;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        commands = CommandStreams.generate(LINES);
+
+        var ends = new ArrayList<Integer>();
+        var lines = 0;
+
+        for (var i = 0; i < commands.length; i++) {
+            if (commands[i] == '\n' && ++lines % linesPerCommit == 0) {
+                ends.add(i + 1);
+            }
+        }
+
+        commitPoints = ends.stream().mapToInt(Integer::intValue).toArray();
+        directory = Files.createTempDirectory("gogobot-journal-");
+        journal = CommandJournal.open(directory, fsyncPolicy, 100_000, planeService);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void journaled(Lines counter) {
+        var session = new CommandSession(new RobotService(planeService), OutputStream.nullOutputStream(),
+            CommandMetrics.DISABLED, journal);
+        var from = 0;
+
+        for (var to : commitPoints) {
+            from = session.feed(commands, from, to, false);
+            session.commit();
+        }
+
+        session.feed(commands, from, commands.length, true);
+        session.commit();
+
+        counter.lines += LINES;
+    }
+}
@@ -0,0 +1,113 @@
+package io.afaruqi.gogobot.benchmarks;
+
+import io.afaruqi.gogobot.application.BatchCli;
+import io.afaruqi.gogobot.application.BinaryCommands;
+import io.afaruqi.gogobot.application.Cli;
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end replay of a generated command file, from reading the file to writing (and discarding) the output.
+ * <p>
+ * Every invocation replays the whole file, the {@code lines} counter reports the throughput in command lines per
+ * second. The 100M lines file takes about 550 MB of temporary disk space (plus its binary encoding), pick the sizes
+ * with e.g. {@code -p lines=1000000}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PipelineThroughputBenchmark {
+    @Param({"1000", "1000000", "100000000"})
+    public long lines;
+
+    private Path commandFile;
+    private Path binaryFile;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Lines {
+        public long lines;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        commandFile = CommandStreams.generateFile(lines);
+        binaryFile = Files.createTempFile("gogobot-commands-", ".bin");
+
+        try (var input = FileChannel.open(commandFile, StandardOpenOption.READ);
+             var output = new BufferedOutputStream(Files.newOutputStream(binaryFile), 1 << 16)) {
+            BinaryCommands.encode(input, output);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(commandFile);
+        Files.deleteIfExists(binaryFile);
+    }
+
+    @Benchmark
+    public void batch(Lines counter) throws IOException {
+        try (var channel = FileChannel.open(commandFile, StandardOpenOption.READ)) {
+            new BatchCli(new RobotService(PlaneService.initDefault())).replay(channel, OutputStream.nullOutputStream());
+        }
+
+        counter.lines += lines;
+    }
+
+    @Benchmark
+    public void binary(Lines counter) throws IOException {
+        try (var channel = FileChannel.open(binaryFile, StandardOpenOption.READ)) {
+            new BatchCli(new RobotService(PlaneService.initDefault())).replayBinary(channel, OutputStream.nullOutputStream());
+        }
+
+        counter.lines += lines;
+    }
+
+    @Benchmark
+    public void interactive(Lines counter) throws IOException {
+        InputStream systemIn = System.in;
+        PrintStream systemOut = System.out;
+
+        try (var input = new BufferedInputStream(Files.newInputStream(commandFile), 1 << 16)) {
+            System.setIn(input);
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+            new Cli(new RobotService(PlaneService.initDefault())).run();
+        } finally {
+            System.setIn(systemIn);
+            System.setOut(systemOut);
+        }
+
+        counter.lines += lines;
+    }
+}
@@ -0,0 +1,110 @@
+package io.afaruqi.gogobot.benchmarks;
+
+import io.afaruqi.gogobot.domain.common.Coordinate;
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+import io.afaruqi.gogobot.domain.robot.PackedRobot;
+import io.afaruqi.gogobot.domain.robot.Robot;
+import io.afaruqi.gogobot.domain.robot.RobotException;
+import io.afaruqi.gogobot.domain.robot.RobotPopulation;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MOVE and LEFT for every robot of a population, by the {@link RobotPopulation} bulk engine and robot by robot through
+ * the {@link RobotService} packed and {@link Robot} APIs. The robots start at random cells of a plane 4 times as large
+ * as there are robots, and walk in small squares.
+ * <p>
+ * The {@code commands} counter reports the throughput in robot commands per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RobotPopulationBenchmark {
+    @Param({"1000", "1000000"})
+    public int robots;
+
+    private RobotService robotService;
+    private RobotPopulation population;
+    private long[] packedRobots;
+    private Robot[] robotObjects;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Commands {
+        public long commands;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var side = (int) Math.sqrt(robots * 4.0);
+        var planeService = PlaneService.init(side - 1, side - 1);
+        var random = new SplittableRandom(42);
+
+        robotService = new RobotService(planeService);
+        population = new RobotPopulation(planeService);
+        packedRobots = new long[robots];
+        robotObjects = new Robot[robots];
+
+        for (var i = 0; i < robots; i++) {
+            var x = random.nextInt(side);
+            var y = random.nextInt(side);
+            var faceDirection = FaceDirection.values()[random.nextInt(4)];
+
+            population.add(x, y, faceDirection);
+            packedRobots[i] = PackedRobot.pack(x, y, faceDirection);
+            robotObjects[i] = robotService.place(new Coordinate(x, y), faceDirection);
+        }
+    }
+
+    @Benchmark
+    public void bulk(Commands counter) {
+        population.move();
+        population.left();
+        counter.commands += 2L * robots;
+    }
+
+    @Benchmark
+    public void packed(Commands counter) {
+        for (var i = 0; i < packedRobots.length; i++) {
+            packedRobots[i] = robotService.left(robotService.move(packedRobots[i]));
+        }
+
+        counter.commands += 2L * robots;
+    }
+
+    @Benchmark
+    public void objects(Commands counter) {
+        for (var i = 0; i < robotObjects.length; i++) {
+            var robot = robotObjects[i];
+
+            try {
+                robot = robotService.move(robot);
+            } catch (RobotException e) {
+                // at the edge of the plane
+            }
+
+            robotObjects[i] = robotService.left(robot);
+        }
+
+        counter.commands += 2L * robots;
+    }
+}
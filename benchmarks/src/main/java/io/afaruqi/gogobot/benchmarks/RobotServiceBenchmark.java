@@ -0,0 +1,112 @@
+package io.afaruqi.gogobot.benchmarks;
+
+import io.afaruqi.gogobot.domain.common.Coordinate;
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+import io.afaruqi.gogobot.domain.robot.PackedRobot;
+import io.afaruqi.gogobot.domain.robot.Robot;
+import io.afaruqi.gogobot.domain.robot.RobotException;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single robot commands, through the {@link Robot} API and the packed {@code long} API.
+ * <p>
+ * The robot is kept as benchmark state so every call depends on the previous one, like in a real command stream.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RobotServiceBenchmark {
+    private PlaneService planeService;
+    private RobotService robotService;
+    private Robot robot;
+    private long packedRobot;
+    private int x;
+
+    @Setup
+    public void setUp() {
+        planeService = PlaneService.initDefault();
+        robotService = new RobotService(planeService);
+        robot = robotService.place(new Coordinate(2, 2), FaceDirection.NORTH);
+        packedRobot = PackedRobot.of(robot);
+    }
+
+    @Benchmark
+    public Robot move() {
+        try {
+            robot = robotService.move(robot);
+        } catch (RobotException e) {
+            // bounced off the edge of the plane, turn around like a command stream would
+            robot = robotService.left(robotService.left(robot));
+        }
+
+        return robot;
+    }
+
+    @Benchmark
+    public Robot left() {
+        return robot = robotService.left(robot);
+    }
+
+    @Benchmark
+    public Robot right() {
+        return robot = robotService.right(robot);
+    }
+
+    @Benchmark
+    public String report() {
+        return robotService.report(robot);
+    }
+
+    @Benchmark
+    public long packedMove() {
+        var moved = robotService.move(packedRobot);
+
+        return packedRobot = moved != packedRobot ? moved : robotService.left(robotService.left(moved));
+    }
+
+    @Benchmark
+    public long packedLeft() {
+        return packedRobot = robotService.left(packedRobot);
+    }
+
+    @Benchmark
+    public long packedRight() {
+        return packedRobot = robotService.right(packedRobot);
+    }
+
+    @Benchmark
+    public String packedReport() {
+        return robotService.report(packedRobot);
+    }
+
+    @Benchmark
+    public boolean isWithinPlane() {
+        // walks over 7 columns so both outcomes are measured
+        x = x == 6 ? 0 : x + 1;
+
+        return planeService.isWithinPlane(x, 3);
+    }
+
+    @Benchmark
+    public boolean isWithinPlaneCoordinate() {
+        x = x == 6 ? 0 : x + 1;
+
+        return planeService.isWithinPlane(new Coordinate(x, 3));
+    }
+}
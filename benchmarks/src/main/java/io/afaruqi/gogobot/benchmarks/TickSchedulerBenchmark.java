@@ -0,0 +1,96 @@
+package io.afaruqi.gogobot.benchmarks;
+
+import io.afaruqi.gogobot.domain.fleet.FleetCommands;
+import io.afaruqi.gogobot.domain.fleet.TickScheduler;
+import io.afaruqi.gogobot.domain.plane.OccupancyIndex;
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import io.afaruqi.gogobot.domain.robot.RobotStatus;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ticks of a fleet that fills a quarter of its plane, every robot repeating one of a few random programs of mostly
+ * moves, from one thread to as many as there are cores.
+ * <p>
+ * The {@code commands} counter reports the throughput in robot commands per second, i.e. ticks times robots.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TickSchedulerBenchmark {
+    private static final int PROGRAMS = 64;
+    private static final int PROGRAM_LENGTH = 16;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    @Param({"10000", "1000000"})
+    public int robots;
+
+    private TickScheduler scheduler;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Commands {
+        public long commands;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var side = (int) Math.sqrt(robots * 4.0);
+        var planeService = PlaneService.init(side - 1, side - 1);
+        var robotService = new RobotService(planeService, OccupancyIndex.forPlane(planeService.getPlane()));
+        var random = new SplittableRandom(42);
+        var programs = new byte[PROGRAMS][PROGRAM_LENGTH];
+
+        for (var program : programs) {
+            for (var i = 0; i < PROGRAM_LENGTH; i++) {
+                var command = random.nextInt(8);
+                program[i] = (byte) (command == 0 ? FleetCommands.LEFT : command == 1 ? FleetCommands.RIGHT : FleetCommands.MOVE);
+            }
+        }
+
+        scheduler = new TickScheduler(robotService, parallelism);
+
+        for (var id = 0; id < robots; id++) {
+            var faceDirection = FaceDirection.values()[random.nextInt(4)];
+
+            while (scheduler.place(id, random.nextInt(side), random.nextInt(side), faceDirection) != RobotStatus.OK) {
+                // the cell is taken, try another one
+            }
+
+            scheduler.program(id, programs[random.nextInt(PROGRAMS)]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scheduler.close();
+    }
+
+    @Benchmark
+    public void tick(Commands counter) {
+        scheduler.run(1);
+        counter.commands += robots;
+    }
+}
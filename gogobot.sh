@@ -1,10 +1,17 @@
 #!/bin/bash
 
 JAR_FILE="/opt/app.jar"
+ARCHIVE_FILE="/opt/app.jsa"
 
 if [ ! -f "$JAR_FILE" ]; then
     echo "JAR file does not exist: $JAR_FILE"
     exit 1
 fi
 
-java -jar "$JAR_FILE"
+# Classes of a CLI session are mapped from the AppCDS archive instead of being loaded and verified one by one,
+# an archive that does not match the JAR or the JVM is ignored without a warning
+if [ -f "$ARCHIVE_FILE" ]; then
+    CDS_OPTS="-XX:SharedArchiveFile=$ARCHIVE_FILE -Xlog:cds=off -Xlog:cds+dynamic=off"
+fi
+
+java $CDS_OPTS $JAVA_OPTS -jar "$JAR_FILE" "$@"
@@ -0,0 +1,334 @@
+package io.afaruqi.gogobot;
+
+import io.afaruqi.gogobot.application.CommandJournal;
+import io.afaruqi.gogobot.application.CommandMetrics;
+import io.afaruqi.gogobot.application.CommandQueue;
+import io.afaruqi.gogobot.application.ObstacleFile;
+import io.afaruqi.gogobot.domain.plane.Heatmap;
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Command line options of {@link Main}:
+ * <pre>
+ * [--plane &lt;x axis&gt;x&lt;y axis&gt; | --plane unbounded] [--obstacles &lt;obstacle file&gt;]
+ * [--batch &lt;command file&gt; | --binary &lt;binary command file&gt; | --encode &lt;command file&gt;
+ * | --fleet &lt;command file&gt; [--collisions] | --replay &lt;directory or manifest&gt; | --serve &lt;port&gt;]
+ * [--output &lt;directory or file&gt;] [--metrics] [--heatmap &lt;file&gt;]
+ * [--queue &lt;capacity&gt; [--backpressure block|drop-oldest|reject]]
+ * [--journal &lt;directory&gt; [--fsync never|group|always] [--snapshot-interval &lt;records&gt;]]
+ * </pre>
+ */
+final class LaunchOptions {
+    static final String USAGE = """
+        Usage: gogobot [options]
+          --plane <x>x<y>        plane size, up to 2147483647 per axis (default: 5x5)
+          --plane unbounded      plane covering every non-negative 32-bit coordinate
+          --obstacles <file>     blocked cells, one '<x>,<y>' per line
+          --batch <file>         replay a command file
+          --binary <file>        replay a binary command file
+          --encode <file>        convert a command file into a binary one (default output: <file>.bin)
+          --fleet <file>         replay a fleet command file
+          --collisions           keep the robots of a fleet from being placed or moved onto each other
+          --replay <dir|file>    replay every session file of a directory, or listed in a manifest file
+          --serve <port>         serve the interactive commands to TCP clients on a loopback port
+          --output <dir|file>    output directory of --replay (default: replay-output), or file of --encode
+          --metrics              record the command metrics of the interactive, batch and server modes, print
+                                 them with 'STATS' and on exit
+          --heatmap <file>       count the visits of every cell in the interactive, batch and fleet modes, and
+                                 write them on exit as a PGM image if the file ends in .pgm, in binary otherwise
+          --queue <capacity>     queue the interactive commands read, up to a power of two of at least the capacity
+          --backpressure <policy>
+                                 what a full queue does with another command: block (default), drop-oldest or reject
+          --journal <dir>        journal the robot of the interactive and batch modes, and recover it on startup
+          --fsync <policy>       when the journal is forced to disk: never, group (default) or always
+          --snapshot-interval <records>
+                                 journal records between two snapshots (default: 100000)""";
+
+    enum Mode {
+        CLI,
+        BATCH,
+        BINARY,
+        ENCODE,
+        FLEET,
+        REPLAY,
+        SERVER
+    }
+
+    private Mode mode = Mode.CLI;
+    private Path commandFile;
+    private int port;
+    private int xAxis = 5;
+    private int yAxis = 5;
+    private Path obstacleFile;
+    private Path output;
+    private boolean metrics;
+    private Path heatmapFile;
+    private int queueCapacity;
+    private CommandQueue.Backpressure backpressure;
+    private boolean collisions;
+    private Path journalDirectory;
+    // null and 0 until given, see journal()
+    private CommandJournal.FsyncPolicy fsyncPolicy;
+    private int snapshotInterval;
+
+    private LaunchOptions() {
+    }
+
+    static LaunchOptions parse(String... args) {
+        var options = new LaunchOptions();
+
+        for (var i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--plane" -> options.plane(value(args, ++i));
+                case "--obstacles" -> options.obstacleFile = Path.of(value(args, ++i));
+                case "--batch" -> options.command(Mode.BATCH, value(args, ++i));
+                case "--binary" -> options.command(Mode.BINARY, value(args, ++i));
+                case "--encode" -> options.command(Mode.ENCODE, value(args, ++i));
+                case "--fleet" -> options.command(Mode.FLEET, value(args, ++i));
+                case "--replay" -> options.command(Mode.REPLAY, value(args, ++i));
+                case "--serve" -> options.serve(value(args, ++i));
+                case "--output" -> options.output = Path.of(value(args, ++i));
+                case "--metrics" -> options.metrics = true;
+                case "--heatmap" -> options.heatmapFile = Path.of(value(args, ++i));
+                case "--queue" -> options.queue(value(args, ++i));
+                case "--backpressure" -> options.backpressure(value(args, ++i));
+                case "--collisions" -> options.collisions = true;
+                case "--journal" -> options.journalDirectory = Path.of(value(args, ++i));
+                case "--fsync" -> options.fsync(value(args, ++i));
+                case "--snapshot-interval" -> options.snapshotInterval(value(args, ++i));
+                default -> throw new IllegalArgumentException("Unknown option '" + args[i] + "'");
+            }
+        }
+
+        options.validate();
+        return options;
+    }
+
+    Mode mode() {
+        return mode;
+    }
+
+    Path commandFile() {
+        return commandFile;
+    }
+
+    int port() {
+        return port;
+    }
+
+    Path outputDirectory() {
+        return output != null ? output : Path.of("replay-output");
+    }
+
+    Path encodedFile() {
+        return output != null ? output : Path.of(commandFile + ".bin");
+    }
+
+    boolean collisions() {
+        return collisions;
+    }
+
+    CommandMetrics metrics() {
+        return metrics ? new CommandMetrics() : CommandMetrics.DISABLED;
+    }
+
+    Path heatmapFile() {
+        return heatmapFile;
+    }
+
+    /**
+     * @return an empty heatmap of the plane if one was asked for, {@link Heatmap#DISABLED} otherwise
+     * @throws IllegalArgumentException if the plane is too large for a heatmap
+     */
+    Heatmap heatmap(PlaneService planeService) {
+        return heatmapFile != null ? Heatmap.forPlane(planeService.getPlane()) : Heatmap.DISABLED;
+    }
+
+    /**
+     * @return an empty command queue if one was asked for, {@code null} otherwise
+     */
+    CommandQueue queue() {
+        if (queueCapacity == 0) {
+            return null;
+        }
+
+        return new CommandQueue(queueCapacity, backpressure != null ? backpressure : CommandQueue.Backpressure.BLOCK);
+    }
+
+    /**
+     * @return the journal recovered from the journal directory, or {@link CommandJournal#DISABLED} if there is none
+     */
+    CommandJournal journal(PlaneService planeService) {
+        if (journalDirectory == null) {
+            return CommandJournal.DISABLED;
+        }
+
+        return CommandJournal.open(journalDirectory, fsyncPolicy != null ? fsyncPolicy : CommandJournal.FsyncPolicy.GROUP,
+            snapshotInterval > 0 ? snapshotInterval : 100_000, planeService);
+    }
+
+    /**
+     * @return the configured plane, with the obstacles loaded from the obstacle file if there is one
+     */
+    PlaneService planeService() {
+        var planeService = PlaneService.init(xAxis, yAxis);
+
+        if (obstacleFile != null) {
+            ObstacleFile.load(obstacleFile, planeService);
+        }
+
+        return planeService;
+    }
+
+    // options that only apply to some modes are rejected with the others rather than ignored
+    private void validate() {
+        if (metrics) {
+            requireMode("--metrics", Mode.CLI, Mode.BATCH, Mode.BINARY, Mode.SERVER);
+        }
+
+        if (collisions) {
+            requireMode("--collisions", Mode.FLEET);
+        }
+
+        if (heatmapFile != null) {
+            requireMode("--heatmap", Mode.CLI, Mode.BATCH, Mode.BINARY, Mode.FLEET);
+        }
+
+        if (journalDirectory != null) {
+            requireMode("--journal", Mode.CLI, Mode.BATCH, Mode.BINARY);
+        }
+
+        if (fsyncPolicy != null && journalDirectory == null) {
+            throw new IllegalArgumentException("Option '--fsync' needs '--journal'");
+        }
+
+        if (snapshotInterval > 0 && journalDirectory == null) {
+            throw new IllegalArgumentException("Option '--snapshot-interval' needs '--journal'");
+        }
+
+        if (queueCapacity > 0) {
+            requireMode("--queue", Mode.CLI);
+        }
+
+        if (backpressure != null) {
+            requireMode("--backpressure", Mode.CLI);
+
+            if (queueCapacity == 0) {
+                throw new IllegalArgumentException("Option '--backpressure' needs '--queue'");
+            }
+        }
+    }
+
+    private void requireMode(String option, Mode... modes) {
+        for (var allowed : modes) {
+            if (mode == allowed) {
+                return;
+            }
+        }
+
+        throw new IllegalArgumentException("Option '" + option + "' cannot be used with " + modeOption());
+    }
+
+    private String modeOption() {
+        return switch (mode) {
+            case CLI -> "the interactive mode";
+            case BATCH -> "'--batch'";
+            case BINARY -> "'--binary'";
+            case ENCODE -> "'--encode'";
+            case FLEET -> "'--fleet'";
+            case REPLAY -> "'--replay'";
+            case SERVER -> "'--serve'";
+        };
+    }
+
+    private void plane(String plane) {
+        if (plane.equals("unbounded")) {
+            xAxis = Integer.MAX_VALUE;
+            yAxis = Integer.MAX_VALUE;
+            return;
+        }
+
+        var separator = plane.indexOf('x');
+
+        try {
+            xAxis = Integer.parseInt(plane.substring(0, separator));
+            yAxis = Integer.parseInt(plane.substring(separator + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid plane '" + plane + "', expected e.g. '100x100' or 'unbounded'");
+        }
+
+        if (xAxis < 0 || yAxis < 0) {
+            throw new IllegalArgumentException("Invalid plane '" + plane + "', axes cannot be negative");
+        }
+    }
+
+    private void command(Mode mode, String commandFile) {
+        this.mode = mode;
+        this.commandFile = Path.of(commandFile);
+    }
+
+    private void fsync(String policy) {
+        try {
+            fsyncPolicy = CommandJournal.FsyncPolicy.valueOf(policy.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid fsync policy '" + policy + "', expected never, group or always");
+        }
+    }
+
+    private void snapshotInterval(String records) {
+        try {
+            snapshotInterval = Integer.parseInt(records);
+        } catch (NumberFormatException e) {
+            snapshotInterval = 0;
+        }
+
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("Invalid snapshot interval '" + records + "', expected a positive number");
+        }
+    }
+
+    private void queue(String capacity) {
+        try {
+            queueCapacity = Integer.parseInt(capacity);
+        } catch (NumberFormatException e) {
+            queueCapacity = 0;
+        }
+
+        if (queueCapacity < 1 || queueCapacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid queue capacity '" + capacity + "', expected 1 to 1073741824");
+        }
+    }
+
+    private void backpressure(String policy) {
+        try {
+            backpressure = CommandQueue.Backpressure.valueOf(policy.toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid backpressure '" + policy + "', expected block, drop-oldest or reject");
+        }
+    }
+
+    private void serve(String port) {
+        try {
+            this.port = Integer.parseInt(port);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid port '" + port + "'");
+        }
+
+        if (this.port < 0 || this.port > 65535) {
+            throw new IllegalArgumentException("Invalid port '" + port + "', expected 0 to 65535");
+        }
+
+        mode = Mode.SERVER;
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Option '" + args[i - 1] + "' needs a value");
+        }
+
+        return args[i];
+    }
+}
@@ -1,18 +1,237 @@
 package io.afaruqi.gogobot;
 
+import io.afaruqi.gogobot.application.BatchCli;
+import io.afaruqi.gogobot.application.BinaryCommands;
 import io.afaruqi.gogobot.application.Cli;
+import io.afaruqi.gogobot.application.CommandJournal;
+import io.afaruqi.gogobot.application.CommandMetrics;
+import io.afaruqi.gogobot.application.CommandQueue;
+import io.afaruqi.gogobot.application.CommandServer;
+import io.afaruqi.gogobot.application.FleetCli;
+import io.afaruqi.gogobot.application.ReplayRunner;
+import io.afaruqi.gogobot.domain.fleet.FleetService;
+import io.afaruqi.gogobot.domain.plane.Heatmap;
+import io.afaruqi.gogobot.domain.plane.OccupancyIndex;
 import io.afaruqi.gogobot.domain.plane.PlaneService;
 import io.afaruqi.gogobot.domain.robot.RobotService;
+import io.afaruqi.gogobot.domain.robot.Trajectories;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
 
 public class Main {
     public static void main(String[] args) {
-        new Main().startCli();
+        LaunchOptions options;
+
+        try {
+            options = LaunchOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LaunchOptions.USAGE);
+            System.exit(1);
+            return;
+        }
+
+        var main = new Main();
+        PlaneService planeService;
+        CommandJournal journal;
+        Heatmap heatmap;
+
+        try {
+            planeService = options.planeService();
+            heatmap = options.heatmap(planeService);
+            journal = options.journal(planeService);
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        var metrics = options.metrics();
+        var queue = options.queue();
+
+        try (journal) {
+            switch (options.mode()) {
+                case BATCH -> main.startBatch(planeService, options.commandFile(), metrics, journal, heatmap);
+                case BINARY -> main.startBinary(planeService, options.commandFile(), metrics, journal, heatmap);
+                case ENCODE -> main.encode(options.commandFile(), options.encodedFile());
+                case FLEET -> main.startFleet(planeService, options.commandFile(), options.collisions(), heatmap);
+                case REPLAY -> {
+                    if (!main.startReplay(planeService, options.commandFile(), options.outputDirectory())) {
+                        System.exit(1);
+                    }
+                }
+                case SERVER -> {
+                    // it only stops with the process, whose shutdown hook prints the metrics
+                    main.startServer(planeService, options.port(), metrics);
+                    return;
+                }
+                default -> main.startCli(planeService, metrics, journal, heatmap, queue);
+            }
+        }
+
+        if (heatmap.isEnabled()) {
+            main.writeHeatmap(heatmap, options.heatmapFile());
+        }
+
+        if (metrics.isEnabled()) {
+            System.err.print(metrics.dump());
+
+            if (queue != null) {
+                System.err.print(queue.dump());
+            }
+        }
     }
 
     public void startCli() {
-        var planeService = PlaneService.initDefault();
-        var robotService = new RobotService(planeService);
+        startCli(PlaneService.initDefault());
+    }
+
+    public void startCli(PlaneService planeService) {
+        startCli(planeService, CommandMetrics.DISABLED);
+    }
+
+    public void startCli(PlaneService planeService, CommandMetrics metrics) {
+        startCli(planeService, metrics, CommandJournal.DISABLED);
+    }
+
+    public void startCli(PlaneService planeService, CommandMetrics metrics, CommandJournal journal) {
+        startCli(planeService, metrics, journal, Heatmap.DISABLED);
+    }
+
+    /**
+     * @param heatmap where the visits of the robot are counted, e.g. to {@link #writeHeatmap write} them on exit
+     */
+    public void startCli(PlaneService planeService, CommandMetrics metrics, CommandJournal journal, Heatmap heatmap) {
+        startCli(planeService, metrics, journal, heatmap, null);
+    }
+
+    /**
+     * @param queue where the commands read wait to be executed, {@code null} to execute them as they are read
+     */
+    public void startCli(PlaneService planeService, CommandMetrics metrics, CommandJournal journal, Heatmap heatmap,
+                         CommandQueue queue) {
+        var robotService = robotService(planeService, heatmap);
+
+        new Cli(robotService, metrics, journal, queue).run();
+    }
+
+    public void startBatch(PlaneService planeService, Path commandFile, CommandMetrics metrics) {
+        startBatch(planeService, commandFile, metrics, CommandJournal.DISABLED);
+    }
+
+    public void startBatch(PlaneService planeService, Path commandFile, CommandMetrics metrics, CommandJournal journal) {
+        startBatch(planeService, commandFile, metrics, journal, Heatmap.DISABLED);
+    }
+
+    public void startBatch(PlaneService planeService, Path commandFile, CommandMetrics metrics, CommandJournal journal,
+                           Heatmap heatmap) {
+        var robotService = robotService(planeService, heatmap);
+
+        new BatchCli(robotService, metrics, journal).run(commandFile);
+    }
+
+    public void startBinary(PlaneService planeService, Path commandFile, CommandMetrics metrics, CommandJournal journal) {
+        startBinary(planeService, commandFile, metrics, journal, Heatmap.DISABLED);
+    }
+
+    public void startBinary(PlaneService planeService, Path commandFile, CommandMetrics metrics, CommandJournal journal,
+                            Heatmap heatmap) {
+        var robotService = robotService(planeService, heatmap);
+
+        new BatchCli(robotService, metrics, journal).runBinary(commandFile);
+    }
+
+    /**
+     * Converts a command file into a binary one, see {@link BinaryCommands}.
+     */
+    public void encode(Path commandFile, Path binaryFile) {
+        try {
+            try (var input = FileChannel.open(commandFile, StandardOpenOption.READ);
+                 var output = new BufferedOutputStream(Files.newOutputStream(binaryFile), 1 << 16)) {
+                BinaryCommands.encode(input, output);
+            }
+
+            System.out.println("Encoded " + Files.size(commandFile) + " bytes into " + Files.size(binaryFile) + " bytes");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param collisions whether robots are kept from being placed or moved onto each other
+     */
+    public void startFleet(PlaneService planeService, Path commandFile, boolean collisions) {
+        startFleet(planeService, commandFile, collisions, Heatmap.DISABLED);
+    }
+
+    public void startFleet(PlaneService planeService, Path commandFile, boolean collisions, Heatmap heatmap) {
+        var occupancy = collisions ? OccupancyIndex.forPlane(planeService.getPlane()) : OccupancyIndex.NONE;
+        var robotService = new RobotService(planeService, occupancy, Trajectories.DISABLED, heatmap);
+
+        var parallelism = Runtime.getRuntime().availableProcessors();
+
+        try (var fleetService = new FleetService(robotService, parallelism)) {
+            new FleetCli(fleetService, planeService.getPlane()).run(commandFile);
+        }
+    }
+
+    /**
+     * Writes the heatmap as a PGM image if the file name ends in {@code .pgm}, in its binary format otherwise.
+     */
+    public void writeHeatmap(Heatmap heatmap, Path file) {
+        try (var output = Files.newOutputStream(file)) {
+            if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".pgm")) {
+                heatmap.writePgm(output);
+            } else {
+                heatmap.writeBinary(output);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Serves until the process is stopped, only to clients on the same machine.
+     */
+    public void startServer(PlaneService planeService, int port, CommandMetrics metrics) {
+        var server = new CommandServer(planeService, metrics, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+
+            if (metrics.isEnabled()) {
+                System.err.print(metrics.dump());
+            }
+        }));
+
+        System.out.println("Listening on " + server.address().getHostString() + ":" + server.address().getPort());
+        server.serve();
+    }
+
+    /**
+     * @return whether every session was replayed
+     */
+    public boolean startReplay(PlaneService planeService, Path sessions, Path outputDirectory) {
+        var parallelism = Runtime.getRuntime().availableProcessors();
+
+        var summary = new ReplayRunner(planeService, parallelism)
+            .run(ReplayRunner.sessionFiles(sessions), outputDirectory);
+
+        System.out.print(summary);
+
+        return summary.failures() == 0;
+    }
 
-        new Cli(robotService).run();
+    private static RobotService robotService(PlaneService planeService, Heatmap heatmap) {
+        return new RobotService(planeService, OccupancyIndex.NONE, Trajectories.DISABLED, heatmap);
     }
 }
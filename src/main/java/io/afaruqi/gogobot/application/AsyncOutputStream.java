@@ -0,0 +1,187 @@
+package io.afaruqi.gogobot.application;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Collects the output in 64 KB buffers and writes every full buffer to the underlying stream on a dedicated writer
+ * thread, so executing commands never waits for e.g. a slow pipe, and the underlying stream sees a few large writes
+ * instead of one per reply.
+ * <p>
+ * At most {@value #BUFFERS} buffers exist: once they are all waiting to be written, writing blocks until the writer
+ * thread returns one. {@link #flush} hands over the current buffer and waits until everything is written and the
+ * underlying stream is flushed, {@link #close} does the same and stops the writer thread, but leaves the underlying
+ * stream open. A failure of the underlying stream is thrown by the next write or flush.
+ * <p>
+ * Like most streams, it is meant to be written by one thread at a time.
+ */
+final class AsyncOutputStream extends OutputStream {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int BUFFERS = 8;
+
+    private final OutputStream output;
+    private final BlockingQueue<Chunk> written = new ArrayBlockingQueue<>(BUFFERS + 1);
+    private final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(BUFFERS);
+    private final Thread writer;
+
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private boolean closed;
+    private volatile IOException failure;
+
+    /**
+     * @param flushed counted down once the chunk and all chunks before it are written and the output is flushed,
+     *                {@code null} to not flush
+     * @param buffer  {@code null} to stop the writer thread
+     */
+    private record Chunk(byte[] buffer, int length, CountDownLatch flushed) {
+    }
+
+    AsyncOutputStream(OutputStream output) {
+        this.output = output;
+
+        for (var i = 1; i < BUFFERS; i++) {
+            free.add(new byte[BUFFER_SIZE]);
+        }
+
+        writer = Thread.ofPlatform().name("gogobot-output").daemon().start(this::drain);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (position == buffer.length) {
+            handOver(null);
+        }
+
+        buffer[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (position == buffer.length) {
+                handOver(null);
+            }
+
+            var copied = Math.min(length, buffer.length - position);
+            System.arraycopy(bytes, offset, buffer, position, copied);
+            position += copied;
+            offset += copied;
+            length -= copied;
+        }
+    }
+
+    /**
+     * Waits until everything written so far is written to the underlying stream, and flushes it.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        var flushed = new CountDownLatch(1);
+        handOver(flushed);
+
+        try {
+            flushed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while flushing", e);
+        }
+
+        throwFailure();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        try {
+            flush();
+        } finally {
+            closed = true;
+            put(new Chunk(null, 0, null));
+
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void handOver(CountDownLatch flushed) throws IOException {
+        throwFailure();
+
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+
+        put(new Chunk(buffer, position, flushed));
+
+        try {
+            buffer = free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a buffer", e);
+        }
+
+        position = 0;
+    }
+
+    private void put(Chunk chunk) throws IOException {
+        try {
+            written.put(chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while handing over output", e);
+        }
+    }
+
+    private void throwFailure() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // the writer thread, after a failure it keeps taking chunks without writing them so writers never block forever
+    private void drain() {
+        while (true) {
+            Chunk chunk;
+
+            try {
+                chunk = written.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (chunk.buffer() == null) {
+                return;
+            }
+
+            if (failure == null) {
+                try {
+                    output.write(chunk.buffer(), 0, chunk.length());
+
+                    if (chunk.flushed() != null) {
+                        output.flush();
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+
+            free.add(chunk.buffer());
+
+            if (chunk.flushed() != null) {
+                chunk.flushed().countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package io.afaruqi.gogobot.application;
+
+import io.afaruqi.gogobot.domain.robot.RobotService;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replays a command file without any interaction, e.g. a recorded session.
+ * <p>
+ * The file is read through a large NIO buffer and tokenized as raw bytes, and all output goes through a single
+ * buffered sink that is flushed at the end; stdout is written on a thread of its own, see {@link AsyncOutputStream}.
+ * The output is byte-identical to feeding the same file to {@link Cli}.
+ */
+public class BatchCli {
+    private static final int BINARY_READ_BUFFER_SIZE = 1 << 20;
+
+    private final RobotService robotService;
+    private final CommandMetrics metrics;
+    private final CommandJournal journal;
+
+    public BatchCli(RobotService robotService) {
+        this(robotService, CommandMetrics.DISABLED);
+    }
+
+    public BatchCli(RobotService robotService, CommandMetrics metrics) {
+        this(robotService, metrics, CommandJournal.DISABLED);
+    }
+
+    /**
+     * @param journal commits once at the end of the file, and whenever its buffer is full in between
+     */
+    public BatchCli(RobotService robotService, CommandMetrics metrics, CommandJournal journal) {
+        this.robotService = robotService;
+        this.metrics = metrics;
+        this.journal = journal;
+    }
+
+    public void run(Path commandFile) {
+        try (var channel = FileChannel.open(commandFile, StandardOpenOption.READ);
+             var output = new AsyncOutputStream(new FileOutputStream(FileDescriptor.out))) {
+            replay(channel, output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Replays a binary session, see {@link BinaryCommands}.
+     */
+    public void runBinary(Path commandFile) {
+        try (var channel = FileChannel.open(commandFile, StandardOpenOption.READ);
+             var output = new AsyncOutputStream(new FileOutputStream(FileDescriptor.out))) {
+            replayBinary(channel, output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Executes all commands of the binary session read from {@code input} and flushes {@code output} once they are
+     * done, the output is the same as replaying the text session it was encoded from.
+     *
+     * @throws IOException if the input is not a binary session or ends in the middle of a record
+     */
+    public void replayBinary(ReadableByteChannel input, OutputStream output) throws IOException {
+        var buffer = ByteBuffer.allocate(BINARY_READ_BUFFER_SIZE);
+
+        while (buffer.position() < 4 && input.read(buffer) >= 0) {
+            // the magic number may come in pieces
+        }
+
+        if (buffer.position() < 4 || buffer.getInt(0) != BinaryCommands.MAGIC) {
+            throw new IOException("Not a binary command session");
+        }
+
+        buffer.flip().position(4);
+        buffer.compact();
+
+        var session = new CommandSession(robotService, output, metrics, journal);
+        session.welcome();
+
+        var endOfInput = false;
+
+        while (!endOfInput && !session.isExited()) {
+            endOfInput = input.read(buffer) < 0;
+
+            buffer.flip();
+            BinaryCommands.decode(buffer, session);
+            buffer.compact();
+
+            if (!buffer.hasRemaining()) {
+                // a single line kept as is does not fit into the buffer
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+            }
+        }
+
+        if (!session.isExited() && buffer.position() > 0) {
+            throw new IOException("Binary command session ends in the middle of a record");
+        }
+
+        session.goodbye();
+        output.flush();
+    }
+
+    /**
+     * Executes all commands read from {@code input} and flushes {@code output} once they are done.
+     */
+    public void replay(ReadableByteChannel input, OutputStream output) throws IOException {
+        var session = new CommandSession(robotService, output, metrics, journal);
+        session.welcome();
+
+        LineReader.read(input, session::acceptLine);
+
+        session.goodbye();
+        output.flush();
+    }
+}
@@ -0,0 +1,279 @@
+package io.afaruqi.gogobot.application;
+
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Compact binary encoding of a command session, replayed with the same output as its text.
+ * <p>
+ * A binary session starts with the magic {@code GGBC} and is followed by records, whose first byte is:
+ * <pre>
+ * 00 aa bb cc   three simple commands, a then b then c
+ * 01 cc nnnn    a run of n + 1 (1 to 16) simple commands c
+ * 10 cc 0000    a run of simple commands c, followed by the run length as a varint
+ * 1100 00 dd    PLACE facing d, followed by x and y as varints
+ * 1100 01 dd    GOTO facing d, followed by x and y as varints
+ * 1100 1000     any other line as is, followed by its length as a varint and its bytes
+ * </pre>
+ * Simple commands are MOVE (0), LEFT (1), RIGHT (2) and REPORT (3), directions NORTH (0), SOUTH (1), EAST (2) and WEST
+ * (3), and varints are unsigned LEB128. Long runs of one command take a handful of bytes, and mixed simple commands a
+ * third of a byte each, against 5 to 7 bytes per text line.
+ * <p>
+ * Decoding works on a {@link ByteBuffer} and hands the commands to a {@link CommandSession} without any
+ * {@code String}: runs go straight into the session's pending runs, and lines kept as is are tokenized as bytes.
+ */
+public final class BinaryCommands {
+    public static final int MAGIC = 0x4747_4243; // GGBC
+
+    private static final int MOVE = 0;
+    private static final int LEFT = 1;
+    private static final int RIGHT = 2;
+    private static final int REPORT = 3;
+
+    private static final int PACKED = 0b00;
+    private static final int SHORT_RUN = 0b01;
+    private static final int LONG_RUN = 0b10;
+    private static final int PLACE = 0b1100_0000;
+    private static final int GOTO = 0b1100_0100;
+    private static final int LINE = 0b1100_1000;
+
+    private static final int SHORT_RUN_LIMIT = 16;
+    // a tag and two 5 byte varints, the longest record apart from lines kept as is
+    private static final int MAX_POSE_RECORD_SIZE = 11;
+    private static final int[] TOKENIZER_COMMANDS = {
+        CommandTokenizer.MOVE, CommandTokenizer.LEFT, CommandTokenizer.RIGHT, CommandTokenizer.REPORT
+    };
+
+    private BinaryCommands() {
+    }
+
+    /**
+     * Converts a text session, lines as {@link LineReader} splits them, into a binary one.
+     */
+    public static void encode(ReadableByteChannel text, OutputStream binary) throws IOException {
+        var encoder = new Encoder(binary);
+
+        encoder.writeInt(MAGIC);
+        LineReader.read(text, encoder::line);
+        encoder.flushSimpleCommands();
+    }
+
+    /**
+     * Executes the complete records in {@code input} from its position, which is advanced past them. It stops at a
+     * record that is cut short, so the caller can decode it again with more bytes, or when the session is exited.
+     *
+     * @throws IllegalArgumentException if a record is not one of the above
+     */
+    public static void decode(ByteBuffer input, CommandSession session) {
+        byte[] line = null;
+
+        while (input.hasRemaining() && !session.isExited()) {
+            var start = input.position();
+            var tag = input.get() & 0xFF;
+
+            switch (tag >>> 6) {
+                case PACKED -> {
+                    session.executeRepeated(TOKENIZER_COMMANDS[tag >>> 4 & 0b11], 1);
+                    session.executeRepeated(TOKENIZER_COMMANDS[tag >>> 2 & 0b11], 1);
+                    session.executeRepeated(TOKENIZER_COMMANDS[tag & 0b11], 1);
+                }
+                case SHORT_RUN -> session.executeRepeated(TOKENIZER_COMMANDS[tag >>> 4 & 0b11], (tag & 0b1111) + 1);
+                case LONG_RUN -> {
+                    var count = getVarint(input);
+
+                    if (count < 0) {
+                        input.position(start);
+                        return;
+                    }
+
+                    session.executeRepeated(TOKENIZER_COMMANDS[tag >>> 4 & 0b11], count);
+                }
+                default -> {
+                    if (tag == LINE) {
+                        var length = getVarint(input);
+
+                        if (length < 0 || input.remaining() < length) {
+                            input.position(start);
+                            return;
+                        }
+
+                        if (input.hasArray()) {
+                            var from = input.arrayOffset() + input.position();
+                            session.executeLine(input.array(), from, from + (int) length);
+                        } else {
+                            if (line == null || line.length < length) {
+                                line = new byte[(int) Math.max(length, 1 << 10)];
+                            }
+
+                            input.get(input.position(), line, 0, (int) length);
+                            session.executeLine(line, 0, (int) length);
+                        }
+
+                        input.position(input.position() + (int) length);
+                    } else if (tag < LINE) {
+                        var x = getVarint(input);
+                        var y = getVarint(input);
+
+                        if (x < 0 || y < 0) {
+                            input.position(start);
+                            return;
+                        }
+
+                        var faceDirection = FaceDirection.values()[tag & 0b11];
+
+                        session.executePendingRun();
+
+                        if ((tag & ~0b11) == PLACE) {
+                            session.place((int) x, (int) y, faceDirection);
+                        } else {
+                            session.goTo((int) x, (int) y, faceDirection);
+                        }
+                    } else {
+                        throw new IllegalArgumentException("Invalid binary command record " + Integer.toHexString(tag)
+                            + " at " + start);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the value, or -1 if the varint is cut short
+     */
+    private static long getVarint(ByteBuffer input) {
+        var value = 0L;
+
+        for (var shift = 0; shift < 64 && input.hasRemaining(); shift += 7) {
+            var b = input.get();
+            value |= (long) (b & 0x7F) << shift;
+
+            if (b >= 0) {
+                return value;
+            }
+        }
+
+        return -1;
+    }
+
+    private static final class Encoder {
+        private final OutputStream output;
+        private final CommandTokenizer tokenizer = new CommandTokenizer();
+        private final byte[] record = new byte[MAX_POSE_RECORD_SIZE];
+
+        // the current run of one simple command, and up to two single commands before it
+        private int runCommand = -1;
+        private long runLength;
+        private final int[] singles = new int[2];
+        private int singleCount;
+
+        Encoder(OutputStream output) {
+            this.output = output;
+        }
+
+        boolean line(byte[] line, int from, int to) {
+            var command = tokenizer.tokenize(line, from, to);
+
+            try {
+                switch (command) {
+                    case CommandTokenizer.MOVE -> simpleCommand(MOVE);
+                    case CommandTokenizer.LEFT -> simpleCommand(LEFT);
+                    case CommandTokenizer.RIGHT -> simpleCommand(RIGHT);
+                    case CommandTokenizer.REPORT -> simpleCommand(REPORT);
+                    case CommandTokenizer.PLACE, CommandTokenizer.GOTO -> {
+                        flushSimpleCommands();
+
+                        var tag = command == CommandTokenizer.PLACE ? PLACE : GOTO;
+                        record[0] = (byte) (tag | tokenizer.faceDirection().ordinal());
+
+                        var length = putVarint(record, 1, tokenizer.x() & 0xFFFF_FFFFL);
+                        length = putVarint(record, length, tokenizer.y() & 0xFFFF_FFFFL);
+                        output.write(record, 0, length);
+                    }
+                    default -> {
+                        flushSimpleCommands();
+
+                        record[0] = (byte) LINE;
+                        output.write(record, 0, putVarint(record, 1, to - from));
+                        output.write(line, from, to - from);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            return true;
+        }
+
+        private void simpleCommand(int command) throws IOException {
+            if (command == runCommand) {
+                runLength++;
+                return;
+            }
+
+            if (runLength == 1 && singleCount < 2) {
+                // the run so far is a single command, which may still be packed with others
+                singles[singleCount++] = runCommand;
+            } else {
+                flushSimpleCommands();
+            }
+
+            if (singleCount == 2) {
+                output.write(PACKED << 6 | singles[0] << 4 | singles[1] << 2 | command);
+                singleCount = 0;
+                runCommand = -1;
+                runLength = 0;
+                return;
+            }
+
+            runCommand = command;
+            runLength = 1;
+        }
+
+        void flushSimpleCommands() throws IOException {
+            for (var i = 0; i < singleCount; i++) {
+                output.write(SHORT_RUN << 6 | singles[i] << 4);
+            }
+
+            singleCount = 0;
+
+            if (runLength == 0) {
+                return;
+            }
+
+            if (runLength <= SHORT_RUN_LIMIT) {
+                output.write(SHORT_RUN << 6 | runCommand << 4 | (int) (runLength - 1));
+            } else {
+                record[0] = (byte) (LONG_RUN << 6 | runCommand << 4);
+                output.write(record, 0, putVarint(record, 1, runLength));
+            }
+
+            runCommand = -1;
+            runLength = 0;
+        }
+
+        void writeInt(int value) throws IOException {
+            output.write(value >>> 24);
+            output.write(value >>> 16);
+            output.write(value >>> 8);
+            output.write(value);
+        }
+
+        // unsigned LEB128, 7 bits per byte, lowest first
+        private static int putVarint(byte[] bytes, int offset, long value) {
+            var i = offset;
+
+            while ((value & ~0x7FL) != 0) {
+                bytes[i++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+
+            bytes[i++] = (byte) value;
+            return i;
+        }
+    }
+}
@@ -1,150 +1,179 @@
 package io.afaruqi.gogobot.application;
 
-import io.afaruqi.gogobot.domain.common.Coordinate;
-import io.afaruqi.gogobot.domain.robot.FaceDirection;
-import io.afaruqi.gogobot.domain.robot.Robot;
-import io.afaruqi.gogobot.domain.robot.RobotException;
 import io.afaruqi.gogobot.domain.robot.RobotService;
 
-import java.util.Scanner;
-import java.util.regex.Pattern;
-
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The interactive mode: commands from stdin, replies to stdout.
+ * <p>
+ * The input is never decoded: lines are split and tokenized straight from the bytes read, like the {@link BatchCli}
+ * does it, see {@link CommandSession#feed}. The replies and error messages are the same as those of the regular
+ * expressions it used before, see {@code RegexCommandParser} in the test sources.
+ * <p>
+ * With a {@link CommandQueue}, stdin is read on a thread of its own that queues every line, and the lines are executed
+ * in batches of up to {@value #BATCH_SIZE}, so a burst of input is buffered up to the queue's capacity and shed beyond
+ * it by its {@link CommandQueue.Backpressure} policy, instead of being read only as fast as it is executed.
+ */
 public class Cli {
-    private static final Pattern VALID_COMMANDS_REGEX = Pattern.compile("^(PLACE?.+|MOVE|LEFT|RIGHT|REPORT)$");
-    private static final Pattern PLACE_COMMAND_REGEX = Pattern.compile("^(PLACE) (?<xCoordinate>\\d),(?<yCoordinate>\\d),(?<faceDirection>NORTH|SOUTH|EAST|WEST)$");
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private static final int BATCH_SIZE = 1024;
 
     private final RobotService robotService;
-    private Robot robot;
+    private final CommandMetrics metrics;
+    private final CommandJournal journal;
+    private final CommandQueue queue;
 
     public Cli(RobotService robotService) {
-        System.setProperty("line.separator", "\n");
-        this.robotService = robotService;
+        this(robotService, CommandMetrics.DISABLED);
     }
 
-    public void run() {
-        System.out.println("Blip blop, welcome to Gogobot! Where you can move a robot around.");
-        System.out.println("Type 'HELP' to see all available commands.");
+    public Cli(RobotService robotService, CommandMetrics metrics) {
+        this(robotService, metrics, CommandJournal.DISABLED);
+    }
 
-        var scanner = new Scanner(System.in);
+    public Cli(RobotService robotService, CommandMetrics metrics, CommandJournal journal) {
+        this(robotService, metrics, journal, null);
+    }
 
-        while (scanner.hasNextLine()) {
-            var command = scanner.nextLine();
+    /**
+     * @param queue where the lines read wait to be executed, {@code null} to execute them as they are read
+     */
+    public Cli(RobotService robotService, CommandMetrics metrics, CommandJournal journal, CommandQueue queue) {
+        this.robotService = robotService;
+        this.metrics = metrics;
+        this.journal = journal;
+        this.queue = queue;
+    }
 
-            if (command.equals("EXIT")) {
-                break;
-            }
+    /**
+     * Replies are written to stdout through an {@link AsyncOutputStream}, which is flushed whenever no more input is
+     * waiting, i.e. before blocking on the next bytes, and at {@code EXIT} or the end of the input. The journal is
+     * committed right before, so no reply is seen before its command is journaled. With a queue, the same happens
+     * after every batch.
+     */
+    public void run() {
+        var output = new AsyncOutputStream(System.out);
+        var session = new CommandSession(robotService, output, metrics, journal);
+        session.welcome();
 
-            if (command.equals("HELP")) {
-                printHelp();
-                continue;
+        try {
+            if (queue != null) {
+                readQueued(System.in, session, output);
+            } else {
+                read(System.in, session, output);
             }
 
-            translateCommand(command);
+            session.goodbye();
+            output.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        System.out.println("Goodbye!");
+    // whatever input is waiting is executed at once, a trailing incomplete line is kept for the next read
+    private static void read(InputStream input, CommandSession session, AsyncOutputStream output) throws IOException {
+        var buffer = new byte[READ_BUFFER_SIZE];
+        var length = 0;
+        var endOfInput = false;
 
-        scanner.close();
-    }
+        while (!endOfInput && !session.isExited()) {
+            if (input.available() == 0) {
+                session.commit();
+                output.flush();
+            }
 
-    private void printHelp() {
-        System.out.println("Type 'PLACE <x,y,NORTH|SOUTH|EAST|WEST>' to place the robot in x & y coordinate with face direction (e.g. PLACE 1,1,NORTH).");
-        System.out.println("Type 'MOVE' to move the robot one unit forward in a direction the robot is facing.");
-        System.out.println("Type 'LEFT' to turn the face direction to the left.");
-        System.out.println("Type 'RIGHT' to turn the face direction to the right.");
-        System.out.println("Type 'REPORT' to announce the robot's current coordinate and its face direction.");
-        System.out.println("Type 'EXIT' to exit the program.");
-    }
+            var read = input.read(buffer, length, buffer.length - length);
+            endOfInput = read < 0;
+            length += Math.max(read, 0);
 
-    private void translateCommand(String command) {
-        if (command.isBlank())
-            System.out.println("Command is blank");
+            var consumed = session.feed(buffer, 0, length, endOfInput);
 
-        var commandMatcher = VALID_COMMANDS_REGEX.matcher(command);
+            System.arraycopy(buffer, consumed, buffer, 0, length - consumed);
+            length -= consumed;
 
-        if (commandMatcher.matches()) {
-            executeCommand(command);
-        } else {
-            System.out.println("Unknown command '" + command + "', type 'HELP' to see available commands.");
+            if (length == buffer.length) {
+                // a single line does not fit into the buffer
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
         }
     }
 
-    private void executeCommand(String command) {
-        if (command.startsWith("PLACE")) {
-            executePlaceCommand(command);
-        } else if (command.equals("MOVE")) {
-            executeMoveCommand();
-        } else if (command.equals("LEFT")) {
-            executeLeftCommand();
-        } else if (command.equals("RIGHT")) {
-            executeRightCommand();
-        } else if (command.equals("REPORT")) {
-            executeReportCommand();
-        }
-    }
+    // the reader thread queues the lines, this one executes them and tells the operator how many were rejected
+    private void readQueued(InputStream input, CommandSession session, AsyncOutputStream output) throws IOException {
+        var failure = new AtomicReference<IOException>();
+        Thread.ofVirtual().name("gogobot-input").start(() -> {
+            try {
+                queue(input);
+            } catch (IOException e) {
+                failure.set(e);
+            } finally {
+                queue.close();
+            }
+        });
 
-    private void executePlaceCommand(String command) {
-        try {
-            var matcher = PLACE_COMMAND_REGEX.matcher(command);
+        var batch = new CommandQueue.Batch(BATCH_SIZE);
+        var reported = new long[]{queue.rejected()};
 
-            if (matcher.matches()) {
-                var xCoordinate = Integer.parseInt(matcher.group("xCoordinate"));
-                var yCoordinate = Integer.parseInt(matcher.group("yCoordinate"));
-                var coordinate = new Coordinate(xCoordinate, yCoordinate);
-                var faceDirection = FaceDirection.valueOf(matcher.group("faceDirection"));
+        while (!session.isExited() && queue.take(batch)) {
+            reportRejected(session, reported);
 
-                robot = robotService.place(coordinate, faceDirection);
-            } else {
-                System.out.println("Invalid PLACE arguments: '" + command + "'");
-                System.out.println("Hint: PLACE <x coordinate>,<v coordinate>,<face direction: NORTH, SOUTH, EAST, WEST>");
+            for (var i = 0; i < batch.size() && !session.isExited(); i++) {
+                session.executeLine(batch.bytes(), batch.from(i), batch.to(i));
             }
-        } catch (RobotException e) {
-            System.out.println(e.getMessage());
-        }
-    }
 
-    private void executeMoveCommand() {
-        try {
-            validateRobot();
-            robot = robotService.move(robot);
-        } catch (Exception e) {
-            System.out.println(e.getMessage());
+            session.commit();
+            output.flush();
         }
-    }
 
-    private void executeLeftCommand() {
-        try {
-            validateRobot();
-            robot = robotService.left(robot);
-        } catch (Exception e) {
-            System.out.println(e.getMessage());
+        // the reader may still be blocked on stdin, it stops at its next line
+        queue.close();
+
+        if (!session.isExited()) {
+            reportRejected(session, reported);
         }
-    }
 
-    private void executeRightCommand() {
-        try {
-            validateRobot();
-            robot = robotService.right(robot);
-        } catch (Exception e) {
-            System.out.println(e.getMessage());
+        if (failure.get() != null) {
+            throw failure.get();
         }
     }
 
-    private void executeReportCommand() {
-        try {
-            validateRobot();
-            var message = robotService.report(robot);
-            System.out.println(message);
-        } catch (Exception e) {
-            System.out.println(e.getMessage());
+    private void queue(InputStream input) throws IOException {
+        var buffer = new byte[READ_BUFFER_SIZE];
+        var length = 0;
+        var endOfInput = false;
+        var closed = false;
+
+        while (!endOfInput && !closed) {
+            var read = input.read(buffer, length, buffer.length - length);
+            endOfInput = read < 0;
+            length += Math.max(read, 0);
+
+            var open = new boolean[]{true};
+            var consumed = LineReader.split(buffer, 0, length, endOfInput,
+                (line, from, to) -> open[0] = queue.offer(line, from, to) != CommandQueue.CLOSED);
+            closed = !open[0];
+
+            System.arraycopy(buffer, consumed, buffer, 0, length - consumed);
+            length -= consumed;
+
+            if (length == buffer.length) {
+                // a single line does not fit into the buffer
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
         }
     }
 
-    /**
-     * this is to ensure robot is initialized before any commands is executed (except PLACE command).
-     */
-    private void validateRobot() {
-        if (robot == null)
-            throw new RuntimeException("Please place a robot first with 'PLACE' command.");
+    private void reportRejected(CommandSession session, long[] reported) {
+        var rejected = queue.rejected();
+
+        if (rejected > reported[0]) {
+            session.rejected(rejected - reported[0]);
+            reported[0] = rejected;
+        }
     }
 }
@@ -0,0 +1,442 @@
+package io.afaruqi.gogobot.application;
+
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of the commands a {@link CommandSession} applied to its robot, with periodic snapshots
+ * of the robot, so the robot survives the process.
+ * <p>
+ * Records are collected in a buffer and written to the journal file in one go (group commit) when the buffer is full
+ * or on {@link #commit}, which also forces them to the disk according to the {@link FsyncPolicy}. Every
+ * {@code snapshotInterval} records a commit writes a snapshot of the robot together with the journal length it
+ * covers, so {@link #open} only replays the journal tail after the latest snapshot. A record cut short by a crash is
+ * dropped on recovery.
+ * <p>
+ * Records are a tag byte followed by the packed robot (PLACE), a varint of steps (MOVE) or a byte of right turns
+ * (TURN). Only commands that changed the robot are journaled, e.g. a MOVE run records the distance it really moved.
+ * <p>
+ * A journal is not thread-safe, it belongs to one session.
+ */
+public final class CommandJournal implements AutoCloseable {
+    public static final String JOURNAL_FILE = "journal.bin";
+    public static final String SNAPSHOT_FILE = "snapshot.bin";
+
+    public static final CommandJournal DISABLED = new CommandJournal();
+
+    static final byte PLACE = 1;
+    static final byte MOVE = 2;
+    static final byte TURN = 3;
+
+    private static final int JOURNAL_MAGIC = 0x4747_424A; // GGBJ
+    private static final int SNAPSHOT_MAGIC = 0x4747_4253; // GGBS
+    // magic, journal length, placed, robot, CRC32 of the preceding bytes
+    private static final int SNAPSHOT_SIZE = 4 + 8 + 1 + 8 + 4;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+    // the longest record: a tag and a 10 byte varint
+    private static final int MAX_RECORD_SIZE = 11;
+
+    public enum FsyncPolicy {
+        /**
+         * Never forces the journal, the operating system writes it back when it sees fit: a process crash loses
+         * nothing that was committed, a power loss may.
+         */
+        NEVER,
+        /**
+         * Forces the journal once per commit that wrote records, i.e. once per group of records.
+         */
+        GROUP,
+        /**
+         * Forces the journal after every record, which is then written on its own.
+         */
+        ALWAYS
+    }
+
+    private final boolean enabled;
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final int snapshotInterval;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    private long robot;
+    private boolean robotPlaced;
+    private long recordsSinceSnapshot;
+    // records were written since the journal was last forced
+    private boolean unforced;
+
+    private CommandJournal() {
+        this.enabled = false;
+        this.directory = null;
+        this.fsyncPolicy = FsyncPolicy.NEVER;
+        this.snapshotInterval = Integer.MAX_VALUE;
+        this.channel = null;
+        this.buffer = null;
+    }
+
+    private CommandJournal(Path directory, FsyncPolicy fsyncPolicy, int snapshotInterval, FileChannel channel) {
+        this.enabled = true;
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.snapshotInterval = snapshotInterval;
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    }
+
+    /**
+     * Opens the journal in {@code directory}, creating it if needed, and recovers the robot from the latest snapshot
+     * and the journal tail after it. The recovered robot is then snapshotted right away.
+     *
+     * @param planeService the plane the journaled commands were applied on
+     */
+    public static CommandJournal open(Path directory, FsyncPolicy fsyncPolicy, int snapshotInterval, PlaneService planeService) {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be positive: " + snapshotInterval);
+        }
+
+        try {
+            Files.createDirectories(directory);
+
+            var channel = FileChannel.open(directory.resolve(JOURNAL_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            var journal = new CommandJournal(directory, fsyncPolicy, snapshotInterval, channel);
+
+            try {
+                journal.recover(new RobotService(planeService));
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+
+            return journal;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the robot as of the last journaled command
+     */
+    public long robot() {
+        return robot;
+    }
+
+    public boolean isRobotPlaced() {
+        return robotPlaced;
+    }
+
+    void place(long robot) {
+        if (!enabled) {
+            return;
+        }
+
+        reserve();
+        buffer.put(PLACE).putLong(robot);
+        appended(robot);
+    }
+
+    /**
+     * @param robot the robot after the steps
+     */
+    void move(long steps, long robot) {
+        if (!enabled) {
+            return;
+        }
+
+        reserve();
+        buffer.put(MOVE);
+        putVarint(buffer, steps);
+        appended(robot);
+    }
+
+    /**
+     * @param robot the robot after the turns
+     */
+    void turn(int rightTurns, long robot) {
+        if (!enabled) {
+            return;
+        }
+
+        reserve();
+        buffer.put(TURN).put((byte) rightTurns);
+        appended(robot);
+    }
+
+    /**
+     * Writes the buffered records, forces them unless the policy is {@link FsyncPolicy#NEVER}, and writes a snapshot
+     * if enough records were journaled since the last one.
+     */
+    public void commit() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            write();
+
+            if (unforced && fsyncPolicy != FsyncPolicy.NEVER) {
+                channel.force(false);
+                unforced = false;
+            }
+
+            if (recordsSinceSnapshot >= snapshotInterval) {
+                snapshot();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Commits the buffered records and closes the journal file.
+     */
+    @Override
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+
+        try (channel) {
+            commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void reserve() {
+        if (buffer.remaining() < MAX_RECORD_SIZE) {
+            try {
+                write();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void appended(long robot) {
+        this.robot = robot;
+        robotPlaced = true;
+        recordsSinceSnapshot++;
+
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            commit();
+        }
+    }
+
+    private void write() throws IOException {
+        buffer.flip();
+        unforced |= buffer.hasRemaining();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        buffer.clear();
+    }
+
+    private void recover(RobotService robotService) throws IOException {
+        var length = readSnapshot();
+
+        if (channel.size() == 0) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, JOURNAL_MAGIC));
+        } else if (channel.size() < 4 || readInt(0) != JOURNAL_MAGIC) {
+            throw new IOException("Not a journal file: " + directory.resolve(JOURNAL_FILE));
+        }
+
+        if (length < 4 || length > channel.size()) {
+            // no snapshot, or one that is ahead of a journal that was cut short: replay everything
+            length = 4;
+            robot = 0;
+            robotPlaced = false;
+        }
+
+        var end = replay(robotService, length);
+
+        channel.truncate(end);
+        channel.position(end);
+        channel.force(true);
+        snapshot();
+    }
+
+    /**
+     * @return the journal length covered by the snapshot, or 0 if there is no valid snapshot
+     */
+    private long readSnapshot() throws IOException {
+        var file = directory.resolve(SNAPSHOT_FILE);
+
+        if (!Files.exists(file)) {
+            return 0;
+        }
+
+        var bytes = Files.readAllBytes(file);
+
+        if (bytes.length != SNAPSHOT_SIZE) {
+            return 0;
+        }
+
+        var snapshot = ByteBuffer.wrap(bytes);
+        var crc = new CRC32();
+        crc.update(bytes, 0, SNAPSHOT_SIZE - 4);
+
+        if (snapshot.getInt() != SNAPSHOT_MAGIC || snapshot.getInt(SNAPSHOT_SIZE - 4) != (int) crc.getValue()) {
+            return 0;
+        }
+
+        var length = snapshot.getLong();
+        robotPlaced = snapshot.get() != 0;
+        robot = snapshot.getLong();
+
+        return length;
+    }
+
+    /**
+     * @return the end of the last complete record
+     */
+    private long replay(RobotService robotService, long from) throws IOException {
+        var input = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        var position = from;
+        var end = from;
+
+        while (true) {
+            var read = channel.read(input, position);
+
+            if (read > 0) {
+                position += read;
+            }
+
+            input.flip();
+
+            while (input.remaining() >= MAX_RECORD_SIZE || read < 0 && input.hasRemaining()) {
+                var start = input.position();
+
+                if (!replayRecord(robotService, input)) {
+                    return end;
+                }
+
+                end += input.position() - start;
+            }
+
+            if (read < 0) {
+                return end;
+            }
+
+            input.compact();
+        }
+    }
+
+    /**
+     * @return false if the record is cut short or not a record at all
+     */
+    private boolean replayRecord(RobotService robotService, ByteBuffer input) {
+        var tag = input.get();
+
+        switch (tag) {
+            case PLACE -> {
+                if (input.remaining() < 8) {
+                    return false;
+                }
+
+                robot = input.getLong();
+                robotPlaced = true;
+            }
+            case MOVE -> {
+                var steps = getVarint(input);
+
+                if (steps < 0 || !robotPlaced) {
+                    return false;
+                }
+
+                robot = robotService.move(robot, steps);
+            }
+            case TURN -> {
+                if (!input.hasRemaining() || !robotPlaced) {
+                    return false;
+                }
+
+                robot = robotService.turn(robot, input.get() & 3);
+            }
+            default -> {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // written to a temporary file first and moved over the old one, so there always is a complete snapshot
+    private void snapshot() throws IOException {
+        var snapshot = ByteBuffer.allocate(SNAPSHOT_SIZE)
+            .putInt(SNAPSHOT_MAGIC)
+            .putLong(channel.position())
+            .put((byte) (robotPlaced ? 1 : 0))
+            .putLong(robot);
+        var crc = new CRC32();
+        crc.update(snapshot.array(), 0, SNAPSHOT_SIZE - 4);
+        snapshot.putInt((int) crc.getValue()).flip();
+
+        var temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+
+        try (var file = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (snapshot.hasRemaining()) {
+                file.write(snapshot);
+            }
+
+            if (fsyncPolicy != FsyncPolicy.NEVER) {
+                file.force(false);
+            }
+        }
+
+        Files.move(temporary, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+        recordsSinceSnapshot = 0;
+    }
+
+    private int readInt(long position) throws IOException {
+        var bytes = ByteBuffer.allocate(4);
+        channel.read(bytes, position);
+        return bytes.getInt(0);
+    }
+
+    // unsigned LEB128, 7 bits per byte, lowest first
+    private static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+
+        buffer.put((byte) value);
+    }
+
+    /**
+     * @return the value, or -1 if the varint is cut short
+     */
+    private static long getVarint(ByteBuffer buffer) {
+        var value = 0L;
+
+        for (var shift = 0; shift < 64 && buffer.hasRemaining(); shift += 7) {
+            var b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+
+            if (b >= 0) {
+                return value;
+            }
+        }
+
+        return -1;
+    }
+}
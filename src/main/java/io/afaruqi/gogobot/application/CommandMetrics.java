@@ -0,0 +1,158 @@
+package io.afaruqi.gogobot.application;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the commands executed by {@link CommandSession}s, dumped by the {@code STATS}
+ * command and on exit.
+ * <p>
+ * Recording is lock-free (counters are {@link LongAdder}s, histograms have one atomic counter per power of two
+ * nanoseconds), so many sessions can share one instance. {@link #DISABLED} does not even read the clock, every
+ * recording method returns after a check of a final field, and it allocates no counters, so a session without
+ * metrics does not pay for them at startup either.
+ */
+public final class CommandMetrics {
+    static final int PLACE = 0;
+    static final int MOVE = 1;
+    static final int LEFT = 2;
+    static final int RIGHT = 3;
+    static final int REPORT = 4;
+
+    private static final String[] COMMAND_NAMES = {"PLACE", "MOVE", "LEFT", "RIGHT", "REPORT"};
+    private static final int BUCKETS = 64;
+
+    // after the constants above, which the constructor needs
+    public static final CommandMetrics DISABLED = new CommandMetrics(false);
+
+    private final boolean enabled;
+    // all null if disabled
+    private final LongAdder[] commands;
+    // bucket b of a command counts the executions that took [2^b, 2^(b+1)) ns
+    private final AtomicLongArray latencies;
+    private final LongAdder rejectedMoves;
+    private final LongAdder invalidCommands;
+    private final LongAdder unplacedRobots;
+
+    public CommandMetrics() {
+        this(true);
+    }
+
+    private CommandMetrics(boolean enabled) {
+        this.enabled = enabled;
+
+        if (!enabled) {
+            commands = null;
+            latencies = null;
+            rejectedMoves = null;
+            invalidCommands = null;
+            unplacedRobots = null;
+            return;
+        }
+
+        commands = new LongAdder[COMMAND_NAMES.length];
+        latencies = new AtomicLongArray(COMMAND_NAMES.length * BUCKETS);
+        rejectedMoves = new LongAdder();
+        invalidCommands = new LongAdder();
+        unplacedRobots = new LongAdder();
+
+        for (var i = 0; i < commands.length; i++) {
+            commands[i] = new LongAdder();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the start time to pass to {@link #record}
+     */
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    void record(int command, long startTime) {
+        record(command, 1, startTime);
+    }
+
+    /**
+     * Records {@code count} commands executed at once, e.g. a collapsed run of MOVE lines, as a single latency sample.
+     */
+    void record(int command, long count, long startTime) {
+        if (!enabled) {
+            return;
+        }
+
+        var latency = Math.max(System.nanoTime() - startTime, 1);
+
+        commands[command].add(count);
+        latencies.incrementAndGet(command * BUCKETS + 63 - Long.numberOfLeadingZeros(latency));
+    }
+
+    void rejectedMoves(long count) {
+        if (enabled) {
+            rejectedMoves.add(count);
+        }
+    }
+
+    void invalidCommand() {
+        if (enabled) {
+            invalidCommands.increment();
+        }
+    }
+
+    void unplacedRobot(long count) {
+        if (enabled) {
+            unplacedRobots.add(count);
+        }
+    }
+
+    /**
+     * @return the metrics as a table, latencies are the upper bounds of their histogram buckets
+     * @throws IllegalStateException if the metrics are {@link #DISABLED}
+     */
+    public String dump() {
+        if (!enabled) {
+            throw new IllegalStateException("Metrics are disabled");
+        }
+
+        var text = new StringBuilder(String.format("%-8s %12s %12s %12s %12s\n", "Command", "Count", "p50 (ns)", "p99 (ns)", "max (ns)"));
+
+        for (var command = 0; command < COMMAND_NAMES.length; command++) {
+            text.append(String.format("%-8s %12d %12s %12s %12s\n", COMMAND_NAMES[command], commands[command].sum(),
+                percentile(command, 0.5), percentile(command, 0.99), percentile(command, 1)));
+        }
+
+        return text
+            .append("Rejected moves: ").append(rejectedMoves.sum()).append('\n')
+            .append("Invalid commands: ").append(invalidCommands.sum()).append('\n')
+            .append("Unplaced robot errors: ").append(unplacedRobots.sum()).append('\n')
+            .toString();
+    }
+
+    private String percentile(int command, double percentile) {
+        var samples = 0L;
+
+        for (var bucket = 0; bucket < BUCKETS; bucket++) {
+            samples += latencies.get(command * BUCKETS + bucket);
+        }
+
+        if (samples == 0) {
+            return "-";
+        }
+
+        var rank = (long) Math.ceil(samples * percentile);
+        var seen = 0L;
+
+        for (var bucket = 0; bucket < BUCKETS - 2; bucket++) {
+            seen += latencies.get(command * BUCKETS + bucket);
+
+            if (seen >= rank) {
+                return "< " + (1L << (bucket + 1));
+            }
+        }
+
+        return "< " + Long.MAX_VALUE;
+    }
+}
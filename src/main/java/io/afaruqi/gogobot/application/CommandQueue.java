@@ -0,0 +1,357 @@
+package io.afaruqi.gogobot.application;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded queue of command lines between the threads that read them and the one that executes them, so a burst of
+ * input is buffered up to the capacity and shed beyond it rather than piling up without bound.
+ * <p>
+ * A ring buffer of slots with a sequence number each (D. Vyukov's bounded queue): a producer claims the slot at the
+ * tail with a CAS, copies the line into the slot's own buffer and publishes it by advancing the slot's sequence, the
+ * consumer takes lines from the head the same way. Lines are copied into buffers that are kept and reused, so a queue
+ * that has seen its longest lines no longer allocates. When the queue is full a producer blocks, drops the oldest
+ * line or is rejected, see {@link Backpressure}.
+ * <p>
+ * Any number of threads may {@link #offer}, one thread may {@link #take}. Dropping the oldest line takes it from the
+ * head like the consumer does, which the CAS on the head makes safe.
+ */
+public final class CommandQueue implements AutoCloseable {
+    public static final int ACCEPTED = 0;
+    // accepted, and the oldest line was dropped to make room for it
+    public static final int DROPPED_OLDEST = 1;
+    public static final int REJECTED = 2;
+    // closed, nothing is accepted any more
+    public static final int CLOSED = 3;
+
+    private static final int BUCKETS = 64;
+    private static final int SPINS = 64;
+    private static final long MAX_PARK_NANOS = 1_000_000;
+
+    private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle HEAD;
+    private static final VarHandle TAIL;
+
+    static {
+        try {
+            var lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(CommandQueue.class, "head", long.class);
+            TAIL = lookup.findVarHandle(CommandQueue.class, "tail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * What {@link #offer} does when the queue is full.
+     */
+    public enum Backpressure {
+        // waits until the consumer makes room
+        BLOCK,
+        // drops the oldest line, so the freshest input is executed
+        DROP_OLDEST,
+        // rejects the line, the consumer tells the operator how many were, see Cli
+        REJECT
+    }
+
+    private final Backpressure backpressure;
+    private final int mask;
+    // the position a slot is free for, or one past the position it holds a line of
+    private final long[] sequences;
+    private final byte[][] lines;
+    private final int[] lengths;
+    private final long[] enqueueTimes;
+
+    @SuppressWarnings("unused") // through HEAD
+    private volatile long head;
+    @SuppressWarnings("unused") // through TAIL
+    private volatile long tail;
+    private volatile boolean closed;
+    private volatile Thread waitingConsumer;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile long maxDepth;
+    // bucket b counts the lines that waited [2^b, 2^(b+1)) ns, recorded by the consumer
+    private final AtomicLongArray waits = new AtomicLongArray(BUCKETS);
+
+    /**
+     * @param capacity the most lines the queue holds, rounded up to a power of two
+     */
+    public CommandQueue(int capacity, Backpressure backpressure) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("A command queue holds 1 to 2^30 lines: " + capacity);
+        }
+
+        var slots = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+
+        this.backpressure = backpressure;
+        this.mask = slots - 1;
+        this.sequences = new long[slots];
+        this.lines = new byte[slots][];
+        this.lengths = new int[slots];
+        this.enqueueTimes = new long[slots];
+
+        for (var i = 0; i < slots; i++) {
+            sequences[i] = i;
+            lines[i] = new byte[16];
+        }
+    }
+
+    /**
+     * Queues a copy of {@code line[from, to)}.
+     *
+     * @return {@link #ACCEPTED}, {@link #DROPPED_OLDEST}, {@link #REJECTED} or {@link #CLOSED}
+     */
+    public int offer(byte[] line, int from, int to) {
+        var status = ACCEPTED;
+        var spins = 0;
+        var parkNanos = 1_000L;
+
+        while (!closed) {
+            var position = (long) TAIL.getVolatile(this);
+            var slot = (int) position & mask;
+            var difference = (long) SEQUENCES.getVolatile(sequences, slot) - position;
+
+            if (difference == 0) {
+                if (TAIL.compareAndSet(this, position, position + 1)) {
+                    publish(slot, position, line, from, to);
+                    return status;
+                }
+            } else if (difference < 0) {
+                // full
+                switch (backpressure) {
+                    case REJECT -> {
+                        rejected.increment();
+                        return REJECTED;
+                    }
+                    case DROP_OLDEST -> {
+                        if (poll(null)) {
+                            dropped.increment();
+                            status = DROPPED_OLDEST;
+                        }
+                    }
+                    default -> {
+                        if (++spins < SPINS) {
+                            Thread.onSpinWait();
+                        } else {
+                            LockSupport.parkNanos(parkNanos);
+                            parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+                        }
+                    }
+                }
+            }
+            // otherwise another producer took the slot, try the next one
+        }
+
+        return CLOSED;
+    }
+
+    /**
+     * Waits until there is at least one line or the queue is closed, and moves up to the batch's capacity of lines
+     * into it.
+     *
+     * @return false once the queue is closed and empty
+     */
+    public boolean take(Batch batch) {
+        batch.clear();
+
+        while (true) {
+            while (batch.size < batch.capacity && poll(batch)) {
+                // drains what is there
+            }
+
+            if (batch.size > 0) {
+                return true;
+            } else if (closed && isEmpty()) {
+                return false;
+            }
+
+            waitingConsumer = Thread.currentThread();
+
+            if (isEmpty() && !closed) {
+                LockSupport.park(this);
+            }
+
+            waitingConsumer = null;
+        }
+    }
+
+    /**
+     * Accepts no more lines, {@link #take} still returns those queued.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(waitingConsumer);
+    }
+
+    /**
+     * @return the lines queued right now
+     */
+    public int depth() {
+        return (int) Math.max((long) TAIL.getVolatile(this) - (long) HEAD.getVolatile(this), 0);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return the queue depth, the lines accepted, dropped and rejected, and how long the executed lines waited in the
+     * queue; wait times are the upper bounds of their histogram buckets
+     */
+    public String dump() {
+        return String.format(Locale.ROOT, """
+                Queue depth: %d (max %d of %d)
+                Queued lines: %d accepted, %d dropped, %d rejected
+                Queue wait (ns): p50 %s, p99 %s, max %s
+                """, depth(), maxDepth, capacity(), accepted.sum(), dropped.sum(), rejected.sum(),
+            percentile(0.5), percentile(0.99), percentile(1));
+    }
+
+    private void publish(int slot, long position, byte[] line, int from, int to) {
+        var length = to - from;
+
+        if (lines[slot].length < length) {
+            lines[slot] = new byte[Math.max(length, lines[slot].length * 2)];
+        }
+
+        System.arraycopy(line, from, lines[slot], 0, length);
+        lengths[slot] = length;
+        enqueueTimes[slot] = System.nanoTime();
+        SEQUENCES.setVolatile(sequences, slot, position + 1);
+
+        accepted.increment();
+
+        var depth = position + 1 - (long) HEAD.getVolatile(this);
+
+        if (depth > maxDepth) {
+            // a racy maximum, close enough for a gauge
+            maxDepth = depth;
+        }
+
+        var consumer = waitingConsumer;
+
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    // takes the line at the head into the batch, or drops it if there is no batch
+    private boolean poll(Batch batch) {
+        while (true) {
+            var position = (long) HEAD.getVolatile(this);
+            var slot = (int) position & mask;
+            var difference = (long) SEQUENCES.getVolatile(sequences, slot) - (position + 1);
+
+            if (difference < 0) {
+                return false;
+            }
+
+            if (difference == 0 && HEAD.compareAndSet(this, position, position + 1)) {
+                if (batch != null) {
+                    batch.add(lines[slot], lengths[slot]);
+
+                    var wait = Math.max(System.nanoTime() - enqueueTimes[slot], 1);
+                    waits.incrementAndGet(63 - Long.numberOfLeadingZeros(wait));
+                }
+
+                SEQUENCES.setVolatile(sequences, slot, position + mask + 1);
+                return true;
+            }
+        }
+    }
+
+    private boolean isEmpty() {
+        return (long) HEAD.getVolatile(this) >= (long) TAIL.getVolatile(this);
+    }
+
+    private String percentile(double percentile) {
+        var samples = 0L;
+
+        for (var bucket = 0; bucket < BUCKETS; bucket++) {
+            samples += waits.get(bucket);
+        }
+
+        if (samples == 0) {
+            return "-";
+        }
+
+        var rank = (long) Math.ceil(samples * percentile);
+        var seen = 0L;
+
+        for (var bucket = 0; bucket < BUCKETS - 2; bucket++) {
+            seen += waits.get(bucket);
+
+            if (seen >= rank) {
+                return "< " + (1L << (bucket + 1));
+            }
+        }
+
+        return "< " + Long.MAX_VALUE;
+    }
+
+    /**
+     * The lines of one {@link #take}, copied one after another into a buffer that is kept and reused.
+     */
+    public static final class Batch {
+        private final int capacity;
+        private final int[] ends;
+        private byte[] bytes = new byte[1 << 12];
+        private int size;
+
+        /**
+         * @param capacity the most lines a batch takes
+         */
+        public Batch(int capacity) {
+            this.capacity = capacity;
+            this.ends = new int[capacity];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public byte[] bytes() {
+            return bytes;
+        }
+
+        public int from(int line) {
+            return line == 0 ? 0 : ends[line - 1];
+        }
+
+        public int to(int line) {
+            return ends[line];
+        }
+
+        private void clear() {
+            size = 0;
+        }
+
+        private void add(byte[] line, int length) {
+            var from = from(size);
+
+            if (bytes.length - from < length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, from + length));
+            }
+
+            System.arraycopy(line, 0, bytes, from, length);
+            ends[size++] = from + length;
+        }
+    }
+}
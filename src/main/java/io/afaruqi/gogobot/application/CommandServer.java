@@ -0,0 +1,155 @@
+package io.afaruqi.gogobot.application;
+
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the interactive text protocol over TCP, every connection being a session with a robot of its own.
+ * <p>
+ * Each connection runs on a virtual thread. Clients may pipeline commands: whatever has arrived is read in one go and
+ * executed like {@link BatchCli} does it, and the replies are written once that is done, so a client that sends
+ * thousands of commands without waiting gets its replies in a few large writes. The replies are the same as those of
+ * {@link Cli} for the same input, welcome and goodbye included; the connection is closed after {@code EXIT} or when
+ * the client shuts its output down. A line longer than {@value #MAX_LINE_LENGTH} bytes is answered with an error and the
+ * connection is closed, so a client cannot make the server buffer a line without end.
+ */
+public class CommandServer implements AutoCloseable {
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+    private static final int MAX_LINE_LENGTH = 1 << 20;
+    private static final byte[] LINE_TOO_LONG = ("Line too long, at most " + MAX_LINE_LENGTH
+        + " bytes per line, closing the connection.\n").getBytes(StandardCharsets.UTF_8);
+
+    private final PlaneService planeService;
+    private final CommandMetrics metrics;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<SocketChannel> clients = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Binds the server, use port 0 for any free port.
+     */
+    public CommandServer(PlaneService planeService, CommandMetrics metrics, InetSocketAddress address) {
+        this.planeService = planeService;
+        this.metrics = metrics;
+
+        try {
+            serverChannel = ServerSocketChannel.open().bind(address);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public InetSocketAddress address() {
+        try {
+            return (InetSocketAddress) serverChannel.getLocalAddress();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Accepts connections until the server is closed.
+     */
+    public void serve() {
+        while (serverChannel.isOpen()) {
+            SocketChannel client;
+
+            try {
+                client = serverChannel.accept();
+            } catch (AsynchronousCloseException e) {
+                return;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            clients.add(client);
+            connections.execute(() -> serve(client));
+        }
+    }
+
+    /**
+     * Stops accepting connections, closes the open ones and waits for their sessions to end.
+     */
+    @Override
+    public void close() {
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        for (var client : clients) {
+            closeQuietly(client);
+        }
+
+        connections.close();
+    }
+
+    private void serve(SocketChannel client) {
+        try (client) {
+            var output = new BufferedOutputStream(Channels.newOutputStream(client), WRITE_BUFFER_SIZE);
+            var session = new CommandSession(new RobotService(planeService), output, metrics);
+            var buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            var endOfInput = false;
+
+            session.welcome();
+            output.flush();
+
+            while (!endOfInput && !session.isExited()) {
+                endOfInput = client.read(buffer) < 0;
+
+                var consumed = session.feed(buffer.array(), 0, buffer.position(), endOfInput);
+
+                buffer.flip().position(consumed);
+                buffer.compact();
+
+                if (!buffer.hasRemaining()) {
+                    if (buffer.capacity() >= MAX_LINE_LENGTH) {
+                        session.executePendingRun();
+                        output.write(LINE_TOO_LONG);
+                        output.flush();
+                        return;
+                    }
+
+                    // a single line does not fit into the buffer
+                    buffer = ByteBuffer.allocate(Math.min(buffer.capacity() * 2, MAX_LINE_LENGTH)).put(buffer.flip());
+                }
+
+                // the client may be waiting for these replies before it sends anything else
+                session.executePendingRun();
+                output.flush();
+            }
+
+            session.goodbye();
+            output.flush();
+        } catch (IOException | UncheckedIOException e) {
+            // the client went away, its session ends with it; replies fail as UncheckedIOException
+        } finally {
+            clients.remove(client);
+        }
+    }
+
+    private static void closeQuietly(SocketChannel client) {
+        try {
+            client.close();
+        } catch (IOException e) {
+            // it is being closed anyway
+        }
+    }
+}
@@ -0,0 +1,669 @@
+package io.afaruqi.gogobot.application;
+
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+import io.afaruqi.gogobot.domain.robot.PackedRobot;
+import io.afaruqi.gogobot.domain.robot.RobotMacro;
+import io.afaruqi.gogobot.domain.robot.RobotPath;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import io.afaruqi.gogobot.domain.robot.RobotStatus;
+import io.afaruqi.gogobot.domain.robot.Trajectories;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Holds the state of one operator session (the robot) and executes its commands, writing every reply to the given
+ * output as bytes.
+ * <p>
+ * It is shared by the interactive {@link Cli} and the {@link BatchCli}, so both produce exactly the same output.
+ * Commands can be given either one by one as already recognised commands, or as raw bytes through {@link #feed}.
+ * <p>
+ * Lines given as raw bytes are optimised before execution: a run of MOVE lines becomes a single jump, and a run of
+ * LEFT and RIGHT lines a single turn modulo 4. A run is held back until the next other line, the end of the input
+ * ({@link #feed} or {@link #goodbye}) or {@link #executePendingRun}; the replies are the same as step by step.
+ * <p>
+ * Macros of MOVE, LEFT and RIGHT commands are defined per session with {@code DEFINE <name> <commands>} and run with
+ * {@code RUN <name> [times]}. The robot ends up as with their commands one by one, but the rejected commands of a run
+ * are answered with one line and their count. A run goes through the {@link RobotMacro} compiled for the plane, so it
+ * takes about as long for any number of times, except on a plane with obstacles or an occupancy index, which need
+ * every move checked, while trajectories are recorded, which need every run of moves, or while visits are counted in
+ * a heatmap, which needs every move.
+ */
+public class CommandSession {
+    private static final byte[] GREETING = bytes("""
+        Blip blop, welcome to Gogobot! Where you can move a robot around.
+        Type 'HELP' to see all available commands.
+        """);
+    private static final byte[] HELP = bytes("""
+        Type 'PLACE <x,y,NORTH|SOUTH|EAST|WEST>' to place the robot in x & y coordinate with face direction (e.g. PLACE 1,1,NORTH).
+        Type 'MOVE' to move the robot one unit forward in a direction the robot is facing.
+        Type 'LEFT' to turn the face direction to the left.
+        Type 'RIGHT' to turn the face direction to the right.
+        Type 'REPORT' to announce the robot's current coordinate and its face direction.
+        Type 'GOTO <x,y,NORTH|SOUTH|EAST|WEST>' to print the shortest commands that take the robot to x & y coordinate with face direction, without moving it.
+        Type 'DEFINE <name> <MOVE|LEFT|RIGHT ...>' to define a macro of up to %d commands separated by spaces (e.g. DEFINE patrol MOVE MOVE RIGHT).
+        Type 'RUN <name> [times]' to run a macro once or the given number of times (e.g. RUN patrol 1000).
+        """.formatted(RobotMacro.MAX_COMMANDS));
+    // listed only with metrics, without them STATS is an unknown command
+    private static final byte[] HELP_STATS = bytes("Type 'STATS' to print the command counts and latencies so far.\n");
+    private static final byte[] HELP_EXIT = bytes("Type 'EXIT' to exit the program.\n");
+    private static final byte[] GOODBYE = bytes("Goodbye!\n");
+    private static final byte[] BLANK_COMMAND = bytes("Command is blank\n");
+    private static final byte[] UNKNOWN_COMMAND_PREFIX = bytes("Unknown command '");
+    private static final byte[] UNKNOWN_COMMAND_SUFFIX = bytes("', type 'HELP' to see available commands.\n");
+    private static final byte[] INVALID_PLACE_PREFIX = bytes("Invalid PLACE arguments: '");
+    private static final byte[] INVALID_PLACE_SUFFIX = bytes("""
+        '
+        Hint: PLACE <x coordinate>,<v coordinate>,<face direction: NORTH, SOUTH, EAST, WEST>
+        """);
+    private static final byte[] INVALID_GOTO_PREFIX = bytes("Invalid GOTO arguments: '");
+    private static final byte[] INVALID_GOTO_SUFFIX = bytes("""
+        '
+        Hint: GOTO <x coordinate>,<y coordinate>,<face direction: NORTH, SOUTH, EAST, WEST>
+        """);
+    private static final byte[] PATH_PREFIX = bytes("Path: ");
+    private static final byte[] ALREADY_THERE = bytes("Robot is already there.\n");
+    private static final byte[] CANNOT_REACH = bytes("Robot cannot reach there.\n");
+    private static final byte[] SEARCH_LIMIT_REACHED = bytes("Path search gave up, the robot may still reach there.\n");
+    private static final byte[] CANNOT_MOVE = bytes("Robot cannot move there.\n");
+    private static final byte[] ROBOT_NOT_PLACED = bytes("Please place a robot first with 'PLACE' command.\n");
+    private static final byte[] INVALID_DEFINE_PREFIX = bytes("Invalid DEFINE arguments: '");
+    private static final byte[] INVALID_DEFINE_SUFFIX = bytes("""
+        '
+        Hint: DEFINE <name> <up to %d of MOVE, LEFT, RIGHT separated by spaces>
+        """.formatted(RobotMacro.MAX_COMMANDS));
+    private static final byte[] INVALID_RUN_PREFIX = bytes("Invalid RUN arguments: '");
+    private static final byte[] INVALID_RUN_SUFFIX = bytes("""
+        '
+        Hint: RUN <name> <optional number of times>
+        """);
+    private static final byte[] UNKNOWN_MACRO_PREFIX = bytes("Unknown macro '");
+    private static final byte[] UNKNOWN_MACRO_SUFFIX = bytes("', define it first with 'DEFINE'.\n");
+    // the ID of the session's robot in the recorded trajectories
+    private static final long ROBOT_ID = 0;
+
+    private final RobotService robotService;
+    private final OutputStream output;
+    private final CommandMetrics metrics;
+    private final CommandJournal journal;
+    private final Trajectories trajectories;
+    private final CommandTokenizer tokenizer = new CommandTokenizer();
+    private final byte[] report = new byte[RobotService.MAX_REPORT_LENGTH + 1];
+
+    private long robot;
+    private boolean robotPlaced;
+    private boolean exited;
+    // the commands of the macros by name, created by the first DEFINE
+    private Map<String, byte[]> macros;
+
+    // the run of MOVE lines, or the run of LEFT and RIGHT lines, that is not executed yet
+    private long pendingMoves;
+    private long pendingLeftTurns;
+    private long pendingRightTurns;
+
+    // while a macro runs one by one, its rejected commands are counted instead of answered, see #writeCounted
+    private boolean countingReplies;
+    private byte[] countedReply;
+    private long countedReplies;
+
+    public CommandSession(RobotService robotService, OutputStream output) {
+        this(robotService, output, CommandMetrics.DISABLED);
+    }
+
+    public CommandSession(RobotService robotService, OutputStream output, CommandMetrics metrics) {
+        this(robotService, output, metrics, CommandJournal.DISABLED);
+    }
+
+    /**
+     * @param journal journals every command that changes the robot, the session starts with the robot recovered by it
+     */
+    public CommandSession(RobotService robotService, OutputStream output, CommandMetrics metrics, CommandJournal journal) {
+        this.robotService = robotService;
+        this.output = output;
+        this.metrics = metrics;
+        this.journal = journal;
+        this.trajectories = robotService.trajectories();
+        this.robot = journal.robot();
+        this.robotPlaced = journal.isRobotPlaced();
+    }
+
+    /**
+     * Executes every complete line in {@code buffer[from, to)} until the session is exited, see
+     * {@link LineReader#split}.
+     *
+     * @return the index of the first byte that was not consumed
+     */
+    public int feed(byte[] buffer, int from, int to, boolean endOfInput) {
+        var consumed = LineReader.split(buffer, from, to, endOfInput, this::acceptLine);
+
+        if (endOfInput) {
+            executePendingRun();
+        }
+
+        return consumed;
+    }
+
+    /**
+     * Executes a single line (without its line terminator).
+     */
+    public void executeLine(byte[] line, int from, int to) {
+        var command = tokenizer.tokenize(line, from, to);
+
+        if (command != CommandTokenizer.MOVE && command != CommandTokenizer.LEFT && command != CommandTokenizer.RIGHT) {
+            executePendingRun();
+        }
+
+        switch (command) {
+            case CommandTokenizer.EXIT -> exit();
+            case CommandTokenizer.HELP -> help();
+            case CommandTokenizer.BLANK -> {
+                blank();
+                unknown(line, from, to);
+            }
+            case CommandTokenizer.UNKNOWN -> unknown(line, from, to);
+            case CommandTokenizer.PLACE -> place(tokenizer.x(), tokenizer.y(), tokenizer.faceDirection());
+            case CommandTokenizer.INVALID_PLACE -> invalidPlace(line, from, to);
+            case CommandTokenizer.GOTO -> goTo(tokenizer.x(), tokenizer.y(), tokenizer.faceDirection());
+            case CommandTokenizer.INVALID_GOTO -> invalidGoTo(line, from, to);
+            case CommandTokenizer.DEFINE -> define(name(line), tokenizer.macroCommands());
+            case CommandTokenizer.INVALID_DEFINE -> invalidDefine(line, from, to);
+            case CommandTokenizer.RUN -> run(name(line), tokenizer.times());
+            case CommandTokenizer.INVALID_RUN -> invalidRun(line, from, to);
+            case CommandTokenizer.MOVE -> queueMoves(1);
+            case CommandTokenizer.LEFT -> queueTurns(-1, 1);
+            case CommandTokenizer.RIGHT -> queueTurns(1, 1);
+            case CommandTokenizer.REPORT -> report();
+            case CommandTokenizer.STATS -> {
+                if (metrics.isEnabled()) {
+                    stats();
+                } else {
+                    unknown(line, from, to);
+                }
+            }
+            default -> {
+                // a 'PLAC...' line that no command handles, it is silently ignored
+            }
+        }
+    }
+
+    /**
+     * Executes {@code count} MOVE, LEFT, RIGHT or REPORT lines at once, given as {@link CommandTokenizer} constants;
+     * runs of MOVE, LEFT and RIGHT are held back like single lines.
+     */
+    void executeRepeated(int command, long count) {
+        switch (command) {
+            case CommandTokenizer.MOVE -> queueMoves(count);
+            case CommandTokenizer.LEFT -> queueTurns(-1, count);
+            case CommandTokenizer.RIGHT -> queueTurns(1, count);
+            default -> {
+                executePendingRun();
+
+                for (var i = 0L; i < count; i++) {
+                    report();
+                }
+            }
+        }
+    }
+
+    /**
+     * Executes a single line, see {@link LineReader.LineHandler}.
+     */
+    boolean acceptLine(byte[] line, int from, int to) {
+        executeLine(line, from, to);
+        return !exited;
+    }
+
+    /**
+     * Executes the run of MOVE, LEFT or RIGHT lines held back by {@link #executeLine}, if there is one.
+     */
+    public void executePendingRun() {
+        executePendingMoves();
+        executePendingTurns();
+    }
+
+    /**
+     * Executes the held back run and commits the journal, see {@link CommandJournal#commit}.
+     */
+    public void commit() {
+        executePendingRun();
+        journal.commit();
+    }
+
+    public boolean isExited() {
+        return exited;
+    }
+
+    public void welcome() {
+        write(GREETING);
+    }
+
+    public void help() {
+        write(HELP);
+
+        if (metrics.isEnabled()) {
+            write(HELP_STATS);
+        }
+
+        write(HELP_EXIT);
+    }
+
+    public void stats() {
+        write(bytes(metrics.dump()));
+    }
+
+    public void exit() {
+        exited = true;
+    }
+
+    public void goodbye() {
+        commit();
+        write(GOODBYE);
+    }
+
+    public void blank() {
+        write(BLANK_COMMAND);
+    }
+
+    /**
+     * Tells the operator that commands were not executed because the {@link CommandQueue} was full.
+     */
+    public void rejected(long commands) {
+        writeLine("Too many commands, " + commands + (commands == 1 ? " was" : " were") + " rejected.");
+    }
+
+    void unknown(String command) {
+        var bytes = bytes(command);
+        unknown(bytes, 0, bytes.length);
+    }
+
+    void invalidPlace(String command) {
+        var bytes = bytes(command);
+        invalidPlace(bytes, 0, bytes.length);
+    }
+
+    void invalidGoTo(String command) {
+        var bytes = bytes(command);
+        invalidGoTo(bytes, 0, bytes.length);
+    }
+
+    void invalidDefine(String command) {
+        var bytes = bytes(command);
+        invalidDefine(bytes, 0, bytes.length);
+    }
+
+    void invalidRun(String command) {
+        var bytes = bytes(command);
+        invalidRun(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Defines the macro, or replaces the one of the same name.
+     *
+     * @param commands {@link RobotPath#MOVE}, {@link RobotPath#LEFT} and {@link RobotPath#RIGHT}, at most
+     *                 {@link RobotMacro#MAX_COMMANDS}
+     */
+    public void define(String name, byte[] commands) {
+        if (macros == null) {
+            macros = new HashMap<>();
+        }
+
+        macros.put(name, commands.clone());
+    }
+
+    /**
+     * Same as the macro's commands {@code times} times one by one, except for the replies: the rejected commands of a
+     * run are answered with a single line and their count, e.g. {@code Robot cannot move there. (x1000000)}, so the
+     * output of a run is as bounded as its time.
+     */
+    public void run(String name, long times) {
+        var commands = macros == null ? null : macros.get(name);
+
+        if (commands == null) {
+            metrics.invalidCommand();
+            write(UNKNOWN_MACRO_PREFIX);
+            write(bytes(name));
+            write(UNKNOWN_MACRO_SUFFIX);
+            return;
+        }
+
+        if (trajectories.isEnabled()) {
+            runOneByOne(commands, times);
+            return;
+        }
+
+        var macro = robotService.macro(commands);
+        var moves = macro.moves() * times;
+        var leftTurns = macro.leftTurns() * times;
+        var rightTurns = macro.rightTurns() * times;
+        var startTime = metrics.start();
+
+        if (!robotPlaced) {
+            writeCounted(ROBOT_NOT_PLACED, moves + leftTurns + rightTurns);
+            metrics.unplacedRobot(moves + leftTurns + rightTurns);
+        } else {
+            var run = robotService.run(robot, macro, times);
+
+            writeCounted(CANNOT_MOVE, run.rejectedMoves());
+            metrics.rejectedMoves(run.rejectedMoves());
+
+            if (run.robot() != robot) {
+                // a run is no straight line, the journal takes the robot it ends up as
+                robot = run.robot();
+                journal.place(robot);
+            }
+        }
+
+        if (moves > 0) {
+            metrics.record(CommandMetrics.MOVE, moves, startTime);
+        }
+
+        if (leftTurns > 0) {
+            metrics.record(CommandMetrics.LEFT, leftTurns, startTime);
+        }
+
+        if (rightTurns > 0) {
+            metrics.record(CommandMetrics.RIGHT, rightTurns, startTime);
+        }
+    }
+
+    public void place(int xCoordinate, int yCoordinate, FaceDirection faceDirection) {
+        var startTime = metrics.start();
+        var status = robotService.checkPlace(xCoordinate, yCoordinate);
+
+        if (status != RobotStatus.OK) {
+            writeLine(robotService.message(status));
+        } else {
+            robot = PackedRobot.pack(xCoordinate, yCoordinate, faceDirection);
+            robotPlaced = true;
+            journal.place(robot);
+            trajectories.placed(ROBOT_ID, robot);
+            robotService.placed(robot);
+        }
+
+        metrics.record(CommandMetrics.PLACE, startTime);
+    }
+
+    public void move() {
+        var startTime = metrics.start();
+
+        if (isRobotPlaced()) {
+            var movedRobot = robotService.move(robot);
+
+            if (movedRobot == robot) {
+                write(CANNOT_MOVE);
+                metrics.rejectedMoves(1);
+            } else {
+                journal.move(1, movedRobot);
+                trajectories.moved(ROBOT_ID, movedRobot, 1);
+            }
+
+            robot = movedRobot;
+        }
+
+        metrics.record(CommandMetrics.MOVE, startTime);
+    }
+
+    public void left() {
+        var startTime = metrics.start();
+
+        if (isRobotPlaced()) {
+            robot = robotService.left(robot);
+            journal.turn(3, robot);
+            trajectories.turned(ROBOT_ID, robot);
+        }
+
+        metrics.record(CommandMetrics.LEFT, startTime);
+    }
+
+    public void right() {
+        var startTime = metrics.start();
+
+        if (isRobotPlaced()) {
+            robot = robotService.right(robot);
+            journal.turn(1, robot);
+            trajectories.turned(ROBOT_ID, robot);
+        }
+
+        metrics.record(CommandMetrics.RIGHT, startTime);
+    }
+
+    /**
+     * Prints the shortest command sequence to the given pose, without moving the robot.
+     */
+    public void goTo(int xCoordinate, int yCoordinate, FaceDirection faceDirection) {
+        if (!isRobotPlaced()) {
+            return;
+        }
+
+        var path = robotService.pathTo(robot, xCoordinate, yCoordinate, faceDirection);
+
+        if (path == null) {
+            write(CANNOT_REACH);
+        } else if (path == RobotPath.SEARCH_LIMIT_REACHED) {
+            write(SEARCH_LIMIT_REACHED);
+        } else if (path.runs() == 0) {
+            write(ALREADY_THERE);
+        } else {
+            write(PATH_PREFIX);
+            writeLine(path.toString());
+        }
+    }
+
+    public void report() {
+        var startTime = metrics.start();
+
+        if (isRobotPlaced()) {
+            var end = robotService.report(robot, report, 0);
+            report[end] = '\n';
+            write(report, 0, end + 1);
+        }
+
+        metrics.record(CommandMetrics.REPORT, startTime);
+    }
+
+    private void queueMoves(long count) {
+        if (pendingLeftTurns + pendingRightTurns > 0) {
+            executePendingTurns();
+        }
+
+        pendingMoves += count;
+    }
+
+    private void queueTurns(int rightTurns, long count) {
+        if (pendingMoves > 0) {
+            executePendingMoves();
+        }
+
+        if (rightTurns < 0) {
+            pendingLeftTurns += count;
+        } else {
+            pendingRightTurns += count;
+        }
+    }
+
+    // once the robot stops, every remaining move of the run is rejected
+    private void executePendingMoves() {
+        var moves = pendingMoves;
+
+        if (moves == 0) {
+            return;
+        }
+
+        pendingMoves = 0;
+        var startTime = metrics.start();
+
+        if (!robotPlaced) {
+            repeat(ROBOT_NOT_PLACED, moves);
+            metrics.unplacedRobot(moves);
+        } else {
+            var movedRobot = robotService.move(robot, moves);
+            var distance = Math.abs((long) PackedRobot.x(movedRobot) - PackedRobot.x(robot))
+                + Math.abs((long) PackedRobot.y(movedRobot) - PackedRobot.y(robot));
+
+            repeat(CANNOT_MOVE, moves - distance);
+            metrics.rejectedMoves(moves - distance);
+            robot = movedRobot;
+
+            if (distance > 0) {
+                journal.move(distance, robot);
+                trajectories.moved(ROBOT_ID, robot, distance);
+            }
+        }
+
+        metrics.record(CommandMetrics.MOVE, moves, startTime);
+    }
+
+    private void executePendingTurns() {
+        var leftTurns = pendingLeftTurns;
+        var rightTurns = pendingRightTurns;
+
+        if (leftTurns + rightTurns == 0) {
+            return;
+        }
+
+        pendingLeftTurns = 0;
+        pendingRightTurns = 0;
+        var startTime = metrics.start();
+        var turns = (int) ((rightTurns - leftTurns) & 3);
+
+        if (!robotPlaced) {
+            repeat(ROBOT_NOT_PLACED, leftTurns + rightTurns);
+            metrics.unplacedRobot(leftTurns + rightTurns);
+        } else if (turns != 0) {
+            robot = robotService.turn(robot, turns);
+            journal.turn(turns, robot);
+            trajectories.turned(ROBOT_ID, robot);
+        }
+
+        if (leftTurns > 0) {
+            metrics.record(CommandMetrics.LEFT, leftTurns, startTime);
+        }
+
+        if (rightTurns > 0) {
+            metrics.record(CommandMetrics.RIGHT, rightTurns, startTime);
+        }
+    }
+
+    // through the pending runs, so every run of moves is recorded as it happened; their replies are counted
+    private void runOneByOne(byte[] commands, long times) {
+        executePendingRun();
+        countedReplies = 0;
+        countingReplies = true;
+
+        try {
+            for (var i = 0L; i < times; i++) {
+                for (var command : commands) {
+                    switch (command) {
+                        case RobotPath.MOVE -> queueMoves(1);
+                        case RobotPath.LEFT -> queueTurns(-1, 1);
+                        default -> queueTurns(1, 1);
+                    }
+                }
+            }
+
+            executePendingRun();
+        } finally {
+            countingReplies = false;
+        }
+
+        writeCounted(countedReply, countedReplies);
+    }
+
+    private String name(byte[] line) {
+        return new String(line, tokenizer.nameFrom(), tokenizer.nameTo() - tokenizer.nameFrom(), StandardCharsets.US_ASCII);
+    }
+
+    private void invalidDefine(byte[] line, int from, int to) {
+        metrics.invalidCommand();
+        write(INVALID_DEFINE_PREFIX);
+        write(line, from, to - from);
+        write(INVALID_DEFINE_SUFFIX);
+    }
+
+    private void invalidRun(byte[] line, int from, int to) {
+        metrics.invalidCommand();
+        write(INVALID_RUN_PREFIX);
+        write(line, from, to - from);
+        write(INVALID_RUN_SUFFIX);
+    }
+
+    private void unknown(byte[] line, int from, int to) {
+        metrics.invalidCommand();
+        write(UNKNOWN_COMMAND_PREFIX);
+        write(line, from, to - from);
+        write(UNKNOWN_COMMAND_SUFFIX);
+    }
+
+    private void invalidGoTo(byte[] line, int from, int to) {
+        metrics.invalidCommand();
+        write(INVALID_GOTO_PREFIX);
+        write(line, from, to - from);
+        write(INVALID_GOTO_SUFFIX);
+    }
+
+    private void invalidPlace(byte[] line, int from, int to) {
+        metrics.invalidCommand();
+        write(INVALID_PLACE_PREFIX);
+        write(line, from, to - from);
+        write(INVALID_PLACE_SUFFIX);
+    }
+
+    /**
+     * this is to ensure robot is initialized before any commands is executed (except PLACE command).
+     */
+    private boolean isRobotPlaced() {
+        if (!robotPlaced) {
+            write(ROBOT_NOT_PLACED);
+            metrics.unplacedRobot(1);
+            return false;
+        }
+
+        return true;
+    }
+
+    private void repeat(byte[] bytes, long times) {
+        if (countingReplies) {
+            countedReply = bytes;
+            countedReplies += times;
+            return;
+        }
+
+        for (var i = 0L; i < times; i++) {
+            write(bytes);
+        }
+    }
+
+    // the reply once, with the count before its line terminator if there is more than one
+    private void writeCounted(byte[] reply, long count) {
+        if (count == 1) {
+            write(reply);
+        } else if (count > 1) {
+            write(reply, 0, reply.length - 1);
+            writeLine(" (x" + count + ")");
+        }
+    }
+
+    private void writeLine(String message) {
+        write(bytes(message + "\n"));
+    }
+
+    private void write(byte[] bytes) {
+        write(bytes, 0, bytes.length);
+    }
+
+    private void write(byte[] bytes, int offset, int length) {
+        try {
+            output.write(bytes, offset, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,403 @@
+package io.afaruqi.gogobot.application;
+
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+import io.afaruqi.gogobot.domain.robot.RobotMacro;
+import io.afaruqi.gogobot.domain.robot.RobotPath;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Byte-level counterpart of the command regexes in {@code RegexCommandParser} (in the test sources).
+ * <p>
+ * It classifies a single line (without its line terminator) straight from the input bytes, so batch input never
+ * has to be decoded into {@code String}s. The classification follows the regexes exactly, including their quirks,
+ * e.g. {@code PLACX} is a "valid" command that does nothing.
+ */
+final class CommandTokenizer {
+    static final int EXIT = 0;
+    static final int HELP = 1;
+    static final int BLANK = 2;
+    static final int UNKNOWN = 3;
+    static final int PLACE = 4;
+    static final int INVALID_PLACE = 5;
+    static final int MOVE = 6;
+    static final int LEFT = 7;
+    static final int RIGHT = 8;
+    static final int REPORT = 9;
+    // matches VALID_COMMANDS_REGEX ('PLAC' followed by anything) but no command handles it
+    static final int IGNORED = 10;
+    // only a command while metrics are enabled, see CommandMetrics
+    static final int STATS = 11;
+    // 'GOTO' followed by anything, with the same arguments as PLACE
+    static final int GOTO = 12;
+    static final int INVALID_GOTO = 13;
+    // 'DEFINE' followed by anything, a name and up to RobotMacro.MAX_COMMANDS of MOVE, LEFT and RIGHT
+    static final int DEFINE = 14;
+    static final int INVALID_DEFINE = 15;
+    // 'RUN' followed by anything, a macro name and optionally how many times
+    static final int RUN = 16;
+    static final int INVALID_RUN = 17;
+
+    // a PLACE coordinate beyond Integer.MAX_VALUE, which no plane contains
+    static final int OUT_OF_RANGE = -1;
+
+    private static final byte[] EXIT_BYTES = {'E', 'X', 'I', 'T'};
+    private static final byte[] HELP_BYTES = {'H', 'E', 'L', 'P'};
+    private static final byte[] MOVE_BYTES = {'M', 'O', 'V', 'E'};
+    private static final byte[] LEFT_BYTES = {'L', 'E', 'F', 'T'};
+    private static final byte[] RIGHT_BYTES = {'R', 'I', 'G', 'H', 'T'};
+    private static final byte[] REPORT_BYTES = {'R', 'E', 'P', 'O', 'R', 'T'};
+    private static final byte[] PLACE_BYTES = {'P', 'L', 'A', 'C', 'E'};
+    private static final byte[] STATS_BYTES = {'S', 'T', 'A', 'T', 'S'};
+    private static final byte[] GOTO_BYTES = {'G', 'O', 'T', 'O'};
+    private static final byte[] DEFINE_BYTES = {'D', 'E', 'F', 'I', 'N', 'E'};
+    private static final byte[] RUN_BYTES = {'R', 'U', 'N'};
+    private static final byte[][] DIRECTION_BYTES = directionBytes();
+
+    private int x;
+    private int y;
+    private FaceDirection faceDirection;
+    private int nameFrom;
+    private int nameTo;
+    private byte[] macroCommands;
+    private int times;
+
+    /**
+     * @return one of the command constants; for {@link #PLACE} and {@link #GOTO} the arguments are available via
+     * {@link #x()}, {@link #y()} and {@link #faceDirection()} until the next call, for {@link #DEFINE} and {@link #RUN}
+     * via {@link #nameFrom()}, {@link #nameTo()} and {@link #macroCommands()} or {@link #times()}
+     */
+    int tokenize(byte[] line, int from, int to) {
+        var length = to - from;
+
+        if (length == 0) {
+            return BLANK;
+        }
+
+        switch (line[from]) {
+            case 'M':
+                if (equals(line, from, to, MOVE_BYTES)) return MOVE;
+                break;
+            case 'L':
+                if (equals(line, from, to, LEFT_BYTES)) return LEFT;
+                break;
+            case 'R':
+                if (equals(line, from, to, RIGHT_BYTES)) return RIGHT;
+                if (equals(line, from, to, REPORT_BYTES)) return REPORT;
+                if (isKeyword(line, from, to, RUN_BYTES)) {
+                    return tokenizeRun(line, from + RUN_BYTES.length, to);
+                }
+                break;
+            case 'D':
+                if (isKeyword(line, from, to, DEFINE_BYTES)) {
+                    return tokenizeDefine(line, from + DEFINE_BYTES.length, to);
+                }
+                break;
+            case 'E':
+                if (equals(line, from, to, EXIT_BYTES)) return EXIT;
+                break;
+            case 'H':
+                if (equals(line, from, to, HELP_BYTES)) return HELP;
+                break;
+            case 'S':
+                if (equals(line, from, to, STATS_BYTES)) return STATS;
+                break;
+            case 'P':
+                // 'PLACE?.+' means 'PLAC' followed by at least one more character
+                if (length > 4 && line[from + 1] == 'L' && line[from + 2] == 'A' && line[from + 3] == 'C') {
+                    if (line[from + 4] != 'E') return IGNORED;
+                    return tokenizePose(line, from + PLACE_BYTES.length, to, PLACE, INVALID_PLACE);
+                }
+                break;
+            case 'G':
+                if (isKeyword(line, from, to, GOTO_BYTES)) {
+                    return tokenizePose(line, from + GOTO_BYTES.length, to, GOTO, INVALID_GOTO);
+                }
+                break;
+            default:
+                break;
+        }
+
+        return isBlank(line, from, to) ? BLANK : UNKNOWN;
+    }
+
+    int x() {
+        return x;
+    }
+
+    int y() {
+        return y;
+    }
+
+    FaceDirection faceDirection() {
+        return faceDirection;
+    }
+
+    int nameFrom() {
+        return nameFrom;
+    }
+
+    int nameTo() {
+        return nameTo;
+    }
+
+    /**
+     * @return {@link RobotPath#MOVE}, {@link RobotPath#LEFT} and {@link RobotPath#RIGHT}, a new array for every line
+     */
+    byte[] macroCommands() {
+        return macroCommands;
+    }
+
+    int times() {
+        return times;
+    }
+
+    // DEFINE <name>( MOVE| LEFT| RIGHT)+, from is right after the command name
+    private int tokenizeDefine(byte[] line, int from, int to) {
+        var i = tokenizeName(line, from, to);
+
+        if (i < 0 || i == to) {
+            return INVALID_DEFINE;
+        }
+
+        var commands = new byte[RobotMacro.MAX_COMMANDS];
+        var count = 0;
+
+        while (i < to) {
+            var end = i + 1;
+
+            while (end < to && line[end] != ' ') {
+                end++;
+            }
+
+            byte command;
+
+            if (line[i] != ' ') {
+                return INVALID_DEFINE;
+            } else if (equals(line, i + 1, end, MOVE_BYTES)) {
+                command = RobotPath.MOVE;
+            } else if (equals(line, i + 1, end, LEFT_BYTES)) {
+                command = RobotPath.LEFT;
+            } else if (equals(line, i + 1, end, RIGHT_BYTES)) {
+                command = RobotPath.RIGHT;
+            } else {
+                return INVALID_DEFINE;
+            }
+
+            if (count == commands.length) {
+                return INVALID_DEFINE;
+            }
+
+            commands[count++] = command;
+            i = end;
+        }
+
+        macroCommands = Arrays.copyOf(commands, count);
+        return DEFINE;
+    }
+
+    // RUN <name>[ <digits>], from is right after the command name
+    private int tokenizeRun(byte[] line, int from, int to) {
+        var i = tokenizeName(line, from, to);
+
+        if (i < 0) {
+            return INVALID_RUN;
+        }
+
+        if (i == to) {
+            times = 1;
+            return RUN;
+        }
+
+        var end = skipDigits(line, i + 1, to);
+
+        if (line[i] != ' ' || end == i + 1 || end != to) {
+            return INVALID_RUN;
+        }
+
+        times = parseCoordinate(line, i + 1, end);
+        return times == OUT_OF_RANGE ? INVALID_RUN : RUN;
+    }
+
+    // a space and a name of letters, digits and underscores
+    private int tokenizeName(byte[] line, int from, int to) {
+        if (from >= to || line[from] != ' ') {
+            return -1;
+        }
+
+        var i = from + 1;
+
+        while (i < to && isNameByte(line[i])) {
+            i++;
+        }
+
+        if (i == from + 1) {
+            return -1;
+        }
+
+        nameFrom = from + 1;
+        nameTo = i;
+        return i;
+    }
+
+    private static boolean isNameByte(byte b) {
+        return isDigit(b) || (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z') || b == '_';
+    }
+
+    // <command> <digits>,<digits>,<NORTH|SOUTH|EAST|WEST>, from is right after the command name
+    private int tokenizePose(byte[] line, int from, int to, int command, int invalidCommand) {
+        var i = from;
+
+        if (i >= to || line[i] != ' ') {
+            return invalidCommand;
+        }
+
+        var xEnd = skipDigits(line, i + 1, to);
+
+        if (xEnd == i + 1 || xEnd >= to || line[xEnd] != ',') {
+            return invalidCommand;
+        }
+
+        var yEnd = skipDigits(line, xEnd + 1, to);
+
+        if (yEnd == xEnd + 1 || yEnd >= to || line[yEnd] != ',') {
+            return invalidCommand;
+        }
+
+        var direction = direction(line, yEnd + 1, to);
+
+        if (direction == null) {
+            return invalidCommand;
+        }
+
+        x = parseCoordinate(line, i + 1, xEnd);
+        y = parseCoordinate(line, xEnd + 1, yEnd);
+        faceDirection = direction;
+
+        return command;
+    }
+
+    /**
+     * Parses the decimal digits in {@code line[from, to)} without allocating or overflowing.
+     *
+     * @return the coordinate, or {@link #OUT_OF_RANGE} if it does not fit into an {@code int}
+     */
+    static int parseCoordinate(byte[] line, int from, int to) {
+        var coordinate = 0;
+
+        for (var i = from; i < to; i++) {
+            var digit = line[i] - '0';
+
+            if (coordinate > (Integer.MAX_VALUE - digit) / 10) {
+                return OUT_OF_RANGE;
+            }
+
+            coordinate = coordinate * 10 + digit;
+        }
+
+        return coordinate;
+    }
+
+    static int skipDigits(byte[] line, int from, int to) {
+        var i = from;
+
+        while (i < to && isDigit(line[i])) {
+            i++;
+        }
+
+        return i;
+    }
+
+    // the four directions have distinct first letters, so the first byte alone picks the only candidate
+    static FaceDirection direction(byte[] line, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+
+        var candidate = switch (line[from]) {
+            case 'N' -> FaceDirection.NORTH;
+            case 'S' -> FaceDirection.SOUTH;
+            case 'E' -> FaceDirection.EAST;
+            case 'W' -> FaceDirection.WEST;
+            default -> null;
+        };
+
+        if (candidate == null || !equals(line, from, to, DIRECTION_BYTES[candidate.ordinal()])) {
+            return null;
+        }
+
+        return candidate;
+    }
+
+    private static byte[][] directionBytes() {
+        var directions = FaceDirection.values();
+        var bytes = new byte[directions.length][];
+
+        for (var direction : directions) {
+            bytes[direction.ordinal()] = direction.name().getBytes(StandardCharsets.US_ASCII);
+        }
+
+        return bytes;
+    }
+
+    static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    static boolean equals(byte[] line, int from, int to, byte[] expected) {
+        if (to - from != expected.length) {
+            return false;
+        }
+
+        for (var i = 0; i < expected.length; i++) {
+            if (line[from + i] != expected[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // the line starts with the keyword, followed by its arguments after a space or nothing, e.g. not 'RUNNER'
+    private static boolean isKeyword(byte[] line, int from, int to, byte[] keyword) {
+        var end = from + keyword.length;
+        return to >= end && equals(line, from, end, keyword) && (to == end || line[end] == ' ');
+    }
+
+    /**
+     * Same as {@link String#isBlank()} on the UTF-8 decoded line.
+     */
+    static boolean isBlank(byte[] line, int from, int to) {
+        var i = from;
+
+        while (i < to) {
+            var b = line[i];
+
+            if (b == ' ' || (b >= '\t' && b <= '\r') || (b >= 0x1C && b <= 0x1F)) {
+                i++;
+            } else if (b == (byte) 0xE1 && i + 2 < to && line[i + 1] == (byte) 0x9A && line[i + 2] == (byte) 0x80) {
+                // U+1680
+                i += 3;
+            } else if (b == (byte) 0xE2 && i + 2 < to && isGeneralPunctuationSpace(line[i + 1], line[i + 2])) {
+                i += 3;
+            } else if (b == (byte) 0xE3 && i + 2 < to && line[i + 1] == (byte) 0x80 && line[i + 2] == (byte) 0x80) {
+                // U+3000
+                i += 3;
+            } else {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // U+2000..U+2006, U+2008..U+200A and U+205F (U+2007 and U+202F are non-breaking, thus not whitespace)
+    private static boolean isGeneralPunctuationSpace(byte second, byte third) {
+        if (second == (byte) 0x80) {
+            return third >= (byte) 0x80 && third <= (byte) 0x8A && third != (byte) 0x87;
+        }
+
+        return second == (byte) 0x81 && third == (byte) 0x9F;
+    }
+}
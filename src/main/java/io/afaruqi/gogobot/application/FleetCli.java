@@ -0,0 +1,229 @@
+package io.afaruqi.gogobot.application;
+
+import io.afaruqi.gogobot.domain.fleet.FleetCommands;
+import io.afaruqi.gogobot.domain.fleet.FleetService;
+import io.afaruqi.gogobot.domain.plane.Plane;
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+import io.afaruqi.gogobot.domain.robot.PackedRobot;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Replays a command file for a whole fleet of robots, see {@link FleetCommandTokenizer} for the protocol.
+ * <p>
+ * Commands are collected into batches that the {@link FleetService} executes in parallel, the replies are written in
+ * input order once a batch is done, so the output does not depend on the number of threads.
+ */
+public class FleetCli {
+    private static final int BATCH_SIZE = 1 << 16;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private static final byte[] OUTPUT_PREFIX = bytes("Output: ");
+    private static final byte[] ROBOT_PREFIX = bytes("Robot ");
+    private static final byte[] NOT_WITHIN_PLANE = bytes(" is not placed within ");
+    private static final byte[] CANNOT_MOVE = bytes(" cannot move there.\n");
+    private static final byte[] BLOCKED = bytes(" cannot be placed on an obstacle.\n");
+    private static final byte[] OCCUPIED = bytes(" cannot be placed on another robot.\n");
+    private static final byte[] NOT_PLACED_PREFIX = bytes("Please place robot ");
+    private static final byte[] NOT_PLACED_SUFFIX = bytes(" first with 'PLACE' command.\n");
+    private static final byte[] UNKNOWN_COMMAND_PREFIX = bytes("Unknown command '");
+    private static final byte[] UNKNOWN_COMMAND_SUFFIX = bytes("', fleet commands are 'PLACE <id> <x>,<y>,<face direction>', 'MOVE <id>', 'LEFT <id>', 'RIGHT <id>' and 'REPORT <id>'.\n");
+    private static final byte[] INVALID_PLACE_PREFIX = bytes("Invalid PLACE arguments: '");
+    private static final byte[] INVALID_PLACE_SUFFIX = bytes("""
+        '
+        Hint: PLACE <robot id> <x coordinate>,<y coordinate>,<face direction: NORTH, SOUTH, EAST, WEST>
+        """);
+    private static final byte[][] FACE_DIRECTIONS = Arrays.stream(FaceDirection.values())
+        .map(faceDirection -> bytes(faceDirection.name()))
+        .toArray(byte[][]::new);
+
+    private final FleetService fleetService;
+    private final byte[] plane;
+
+    public FleetCli(FleetService fleetService, Plane plane) {
+        this.fleetService = fleetService;
+        this.plane = bytes(plane + "\n");
+    }
+
+    public void run(Path commandFile) {
+        var output = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), WRITE_BUFFER_SIZE);
+
+        try (var channel = FileChannel.open(commandFile, StandardOpenOption.READ)) {
+            replay(channel, output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Executes all commands read from {@code input} and flushes {@code output} once they are done.
+     */
+    public void replay(ReadableByteChannel input, OutputStream output) throws IOException {
+        var replay = new Replay(output);
+
+        LineReader.read(input, replay::acceptLine);
+
+        replay.executeBatch();
+        output.flush();
+    }
+
+    private class Replay {
+        private final OutputStream output;
+        private final FleetCommandTokenizer tokenizer = new FleetCommandTokenizer();
+        private final FleetCommands commands = new FleetCommands(BATCH_SIZE);
+        // replies to the lines that are not executed (FleetCommands.NONE), in input order
+        private final List<byte[]> rejectedLines = new ArrayList<>();
+        private final byte[] digits = new byte[20];
+
+        Replay(OutputStream output) {
+            this.output = output;
+        }
+
+        boolean acceptLine(byte[] line, int from, int to) {
+            var operation = tokenizer.tokenize(line, from, to);
+
+            switch (operation) {
+                case FleetCommandTokenizer.EXIT -> {
+                    return false;
+                }
+                case FleetCommandTokenizer.UNKNOWN -> reject(UNKNOWN_COMMAND_PREFIX, line, from, to, UNKNOWN_COMMAND_SUFFIX);
+                case FleetCommandTokenizer.INVALID_PLACE -> reject(INVALID_PLACE_PREFIX, line, from, to, INVALID_PLACE_SUFFIX);
+                case FleetCommands.PLACE -> commands.addPlace(tokenizer.id(), tokenizer.x(), tokenizer.y(), tokenizer.faceDirection());
+                default -> commands.add(operation, tokenizer.id());
+            }
+
+            if (commands.size() == BATCH_SIZE) {
+                executeBatch();
+            }
+
+            return true;
+        }
+
+        void executeBatch() {
+            fleetService.execute(commands);
+
+            var rejectedLine = 0;
+
+            for (var i = 0; i < commands.size(); i++) {
+                if (commands.operation(i) == FleetCommands.NONE) {
+                    write(rejectedLines.get(rejectedLine++));
+                } else {
+                    writeReply(i);
+                }
+            }
+
+            commands.clear();
+            rejectedLines.clear();
+        }
+
+        private void reject(byte[] prefix, byte[] line, int from, int to, byte[] suffix) {
+            var reply = new byte[prefix.length + (to - from) + suffix.length];
+
+            System.arraycopy(prefix, 0, reply, 0, prefix.length);
+            System.arraycopy(line, from, reply, prefix.length, to - from);
+            System.arraycopy(suffix, 0, reply, prefix.length + (to - from), suffix.length);
+
+            rejectedLines.add(reply);
+            commands.add(FleetCommands.NONE, 0);
+        }
+
+        private void writeReply(int index) {
+            var id = commands.id(index);
+
+            switch (commands.status(index)) {
+                case FleetCommands.NOT_PLACED -> {
+                    write(NOT_PLACED_PREFIX);
+                    writeNumber(id);
+                    write(NOT_PLACED_SUFFIX);
+                }
+                case FleetCommands.NOT_WITHIN_PLANE -> {
+                    write(ROBOT_PREFIX);
+                    writeNumber(id);
+                    write(NOT_WITHIN_PLANE);
+                    write(plane);
+                }
+                case FleetCommands.CANNOT_MOVE -> {
+                    write(ROBOT_PREFIX);
+                    writeNumber(id);
+                    write(CANNOT_MOVE);
+                }
+                case FleetCommands.BLOCKED -> {
+                    write(ROBOT_PREFIX);
+                    writeNumber(id);
+                    write(BLOCKED);
+                }
+                case FleetCommands.OCCUPIED -> {
+                    write(ROBOT_PREFIX);
+                    writeNumber(id);
+                    write(OCCUPIED);
+                }
+                default -> {
+                    if (commands.operation(index) == FleetCommands.REPORT) {
+                        writeReport(id, commands.robot(index));
+                    }
+                }
+            }
+        }
+
+        // Output: <id> <x>,<y>,<face direction>
+        private void writeReport(long id, long robot) {
+            write(OUTPUT_PREFIX);
+            writeNumber(id);
+            writeByte(' ');
+            writeNumber(PackedRobot.x(robot));
+            writeByte(',');
+            writeNumber(PackedRobot.y(robot));
+            writeByte(',');
+            write(FACE_DIRECTIONS[PackedRobot.direction(robot)]);
+            writeByte('\n');
+        }
+
+        private void writeNumber(long number) {
+            var i = digits.length;
+
+            do {
+                digits[--i] = (byte) ('0' + number % 10);
+                number /= 10;
+            } while (number > 0);
+
+            write(digits, i, digits.length - i);
+        }
+
+        private void writeByte(int b) {
+            try {
+                output.write(b);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void write(byte[] bytes) {
+            write(bytes, 0, bytes.length);
+        }
+
+        private void write(byte[] bytes, int offset, int length) {
+            try {
+                output.write(bytes, offset, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,160 @@
+package io.afaruqi.gogobot.application;
+
+import io.afaruqi.gogobot.domain.fleet.FleetCommands;
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+
+/**
+ * Byte-level tokenizer for the fleet protocol, where every command names the robot it is meant for:
+ * <pre>
+ * PLACE &lt;id&gt; &lt;x&gt;,&lt;y&gt;,&lt;NORTH|SOUTH|EAST|WEST&gt;
+ * MOVE &lt;id&gt;
+ * LEFT &lt;id&gt;
+ * RIGHT &lt;id&gt;
+ * REPORT &lt;id&gt;
+ * EXIT
+ * </pre>
+ * Robot IDs are non-negative numbers.
+ */
+final class FleetCommandTokenizer {
+    static final int EXIT = -1;
+    static final int UNKNOWN = -2;
+    static final int INVALID_PLACE = -3;
+
+    private static final byte[] EXIT_BYTES = {'E', 'X', 'I', 'T'};
+    private static final byte[][] COMMAND_BYTES = {
+        {'P', 'L', 'A', 'C', 'E'},
+        {'M', 'O', 'V', 'E'},
+        {'L', 'E', 'F', 'T'},
+        {'R', 'I', 'G', 'H', 'T'},
+        {'R', 'E', 'P', 'O', 'R', 'T'}
+    };
+
+    private long id;
+    private int x;
+    private int y;
+    private FaceDirection faceDirection;
+
+    // the last parsed number and the position right after it
+    private long parsedNumber;
+    private int position;
+
+    /**
+     * @return one of the {@link FleetCommands} operations, or {@link #EXIT}, {@link #UNKNOWN} or
+     * {@link #INVALID_PLACE}; the arguments are available via the accessors until the next call
+     */
+    int tokenize(byte[] line, int from, int to) {
+        if (CommandTokenizer.equals(line, from, to, EXIT_BYTES)) {
+            return EXIT;
+        }
+
+        var separator = indexOf(line, from, to, (byte) ' ');
+
+        if (separator < 0) {
+            return UNKNOWN;
+        }
+
+        var operation = operation(line, from, separator);
+
+        if (operation < 0) {
+            return UNKNOWN;
+        }
+
+        var argumentsValid = parseNumber(line, separator + 1, to, Long.MAX_VALUE);
+        id = argumentsValid ? parsedNumber : -1;
+
+        if (operation != FleetCommands.PLACE) {
+            return argumentsValid && position == to ? operation : UNKNOWN;
+        }
+
+        return tokenizePlaceArguments(argumentsValid, line, to) ? FleetCommands.PLACE : INVALID_PLACE;
+    }
+
+    long id() {
+        return id;
+    }
+
+    int x() {
+        return x;
+    }
+
+    int y() {
+        return y;
+    }
+
+    FaceDirection faceDirection() {
+        return faceDirection;
+    }
+
+    // ' <x>,<y>,<direction>' after the robot ID
+    private boolean tokenizePlaceArguments(boolean idValid, byte[] line, int to) {
+        if (!idValid || position >= to || line[position] != ' ') {
+            return false;
+        }
+
+        var xStart = position + 1;
+        var xEnd = CommandTokenizer.skipDigits(line, xStart, to);
+
+        if (xEnd == xStart || xEnd >= to || line[xEnd] != ',') {
+            return false;
+        }
+
+        var yStart = xEnd + 1;
+        var yEnd = CommandTokenizer.skipDigits(line, yStart, to);
+
+        if (yEnd == yStart || yEnd >= to || line[yEnd] != ',') {
+            return false;
+        }
+
+        x = CommandTokenizer.parseCoordinate(line, xStart, xEnd);
+        y = CommandTokenizer.parseCoordinate(line, yStart, yEnd);
+        faceDirection = CommandTokenizer.direction(line, yEnd + 1, to);
+
+        return faceDirection != null;
+    }
+
+    /**
+     * Parses the decimal digits starting at {@code from} into {@link #parsedNumber} without overflowing.
+     *
+     * @return false if there are no digits or the number exceeds {@code max}
+     */
+    private boolean parseNumber(byte[] line, int from, int to, long max) {
+        var i = from;
+        var number = 0L;
+
+        while (i < to && CommandTokenizer.isDigit(line[i])) {
+            var digit = line[i] - '0';
+
+            if (number > (max - digit) / 10) {
+                return false;
+            }
+
+            number = number * 10 + digit;
+            i++;
+        }
+
+        position = i;
+        parsedNumber = number;
+
+        return i > from;
+    }
+
+    private static int operation(byte[] line, int from, int to) {
+        for (var operation = 0; operation < COMMAND_BYTES.length; operation++) {
+            if (CommandTokenizer.equals(line, from, to, COMMAND_BYTES[operation])) {
+                return operation;
+            }
+        }
+
+        return -1;
+    }
+
+    private static int indexOf(byte[] line, int from, int to, byte b) {
+        for (var i = from; i < to; i++) {
+            if (line[i] == b) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
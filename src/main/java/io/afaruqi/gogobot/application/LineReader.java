@@ -0,0 +1,126 @@
+package io.afaruqi.gogobot.application;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Splits raw input bytes into lines the same way {@link java.util.Scanner#nextLine()} does it: on {@code \n},
+ * {@code \r\n}, {@code \r} and the UTF-8 encoded NEL (U+0085), LINE SEPARATOR (U+2028) and PARAGRAPH SEPARATOR
+ * (U+2029), with a last line that has no terminator only if it is not empty.
+ */
+final class LineReader {
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+
+    private LineReader() {
+    }
+
+    @FunctionalInterface
+    interface LineHandler {
+        /**
+         * @return false to stop reading any further line
+         */
+        boolean line(byte[] buffer, int from, int to);
+    }
+
+    /**
+     * Reads {@code input} through a large buffer until it ends or the handler stops it.
+     */
+    static void read(ReadableByteChannel input, LineHandler handler) throws IOException {
+        var buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        var stopped = new boolean[1];
+        LineHandler stoppableHandler = (bytes, from, to) -> {
+            stopped[0] = !handler.line(bytes, from, to);
+            return !stopped[0];
+        };
+        var endOfInput = false;
+
+        while (!endOfInput && !stopped[0]) {
+            endOfInput = input.read(buffer) < 0;
+
+            var consumed = split(buffer.array(), 0, buffer.position(), endOfInput, stoppableHandler);
+
+            buffer.flip().position(consumed);
+            buffer.compact();
+
+            if (!buffer.hasRemaining()) {
+                // a single line does not fit into the buffer
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+            }
+        }
+    }
+
+    /**
+     * Hands every complete line in {@code buffer[from, to)} to the handler. Unless {@code endOfInput} is set,
+     * a trailing incomplete line is left unconsumed, so the caller can split it again together with the next bytes.
+     *
+     * @return the index of the first byte that was not consumed
+     */
+    static int split(byte[] buffer, int from, int to, boolean endOfInput, LineHandler handler) {
+        var lineStart = from;
+        var i = from;
+
+        while (i < to) {
+            var b = buffer[i];
+            int separatorLength;
+
+            if (b == '\n') {
+                separatorLength = 1;
+            } else if (b == '\r') {
+                if (i + 1 == to && !endOfInput) {
+                    // it might be the first half of '\r\n'
+                    break;
+                }
+
+                separatorLength = (i + 1 < to && buffer[i + 1] == '\n') ? 2 : 1;
+            } else if (b == (byte) 0xC2 || b == (byte) 0xE2) {
+                separatorLength = unicodeLineSeparatorLength(buffer, i, to);
+
+                if (separatorLength < 0) {
+                    if (!endOfInput) {
+                        break;
+                    }
+
+                    separatorLength = 0;
+                }
+            } else {
+                separatorLength = 0;
+            }
+
+            if (separatorLength == 0) {
+                i++;
+                continue;
+            }
+
+            var proceed = handler.line(buffer, lineStart, i);
+            i += separatorLength;
+            lineStart = i;
+
+            if (!proceed) {
+                return i;
+            }
+        }
+
+        if (endOfInput && lineStart < to) {
+            handler.line(buffer, lineStart, to);
+            return to;
+        }
+
+        return lineStart;
+    }
+
+    /**
+     * @return the length of the separator at {@code i}, 0 if there is none, or -1 if the buffer ends before it can be
+     * decided
+     */
+    private static int unicodeLineSeparatorLength(byte[] buffer, int i, int to) {
+        if (buffer[i] == (byte) 0xC2) {
+            if (i + 1 >= to) return -1;
+            return buffer[i + 1] == (byte) 0x85 ? 2 : 0;
+        }
+
+        if (i + 2 >= to) return -1;
+
+        return buffer[i + 1] == (byte) 0x80 && (buffer[i + 2] == (byte) 0xA8 || buffer[i + 2] == (byte) 0xA9) ? 3 : 0;
+    }
+}
@@ -0,0 +1,67 @@
+package io.afaruqi.gogobot.application;
+
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Loads obstacles into a plane from a text file with one {@code <x>,<y>} cell per line. Blank lines (as for
+ * {@link String#isBlank()}) and lines starting with {@code #} are skipped, spaces and tabs around a cell are ignored.
+ */
+public final class ObstacleFile {
+    private ObstacleFile() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if a line is not a cell within the plane
+     */
+    public static void load(Path obstacleFile, PlaneService planeService) {
+        var lineNumber = new int[1];
+
+        try (var channel = FileChannel.open(obstacleFile, StandardOpenOption.READ)) {
+            LineReader.read(channel, (line, from, to) -> {
+                lineNumber[0]++;
+                loadLine(planeService, line, from, to, lineNumber[0]);
+                return true;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void loadLine(PlaneService planeService, byte[] line, int from, int to, int lineNumber) {
+        while (from < to && (line[from] == ' ' || line[from] == '\t')) {
+            from++;
+        }
+
+        while (to > from && (line[to - 1] == ' ' || line[to - 1] == '\t')) {
+            to--;
+        }
+
+        if (from == to || line[from] == '#' || CommandTokenizer.isBlank(line, from, to)) {
+            return;
+        }
+
+        var xEnd = CommandTokenizer.skipDigits(line, from, to);
+        var yEnd = CommandTokenizer.skipDigits(line, xEnd + 1, to);
+
+        if (xEnd == from || xEnd >= to || line[xEnd] != ',' || yEnd == xEnd + 1 || yEnd != to) {
+            throw new IllegalArgumentException("Invalid obstacle on line " + lineNumber + ": '"
+                + new String(line, from, to - from, StandardCharsets.UTF_8) + "', expected '<x>,<y>'");
+        }
+
+        var x = CommandTokenizer.parseCoordinate(line, from, xEnd);
+        var y = CommandTokenizer.parseCoordinate(line, xEnd + 1, yEnd);
+
+        try {
+            planeService.addObstacle(x, y);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid obstacle on line " + lineNumber + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package io.afaruqi.gogobot.application;
+
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+/**
+ * Replays many independent session files concurrently, each one like {@link BatchCli} with a robot of its own, and
+ * writes the output of every session to {@code <output directory>/<session file name>.out} together with a
+ * {@code summary.txt}.
+ * <p>
+ * Sessions only share the (read-only) plane, so their output is the same as replaying them one by one.
+ */
+public class ReplayRunner {
+    public static final String SUMMARY_FILE = "summary.txt";
+
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final PlaneService planeService;
+    private final int parallelism;
+
+    public ReplayRunner(PlaneService planeService, int parallelism) {
+        this.planeService = planeService;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param sessions either a directory, whose regular files are all sessions, or a manifest file listing one session
+     *                 file per line (relative to the manifest, blank lines and {@code #} comments are skipped)
+     * @return the session files in name (directory) or manifest order
+     */
+    public static List<Path> sessionFiles(Path sessions) {
+        try {
+            if (Files.isDirectory(sessions)) {
+                try (Stream<Path> files = Files.list(sessions)) {
+                    return files.filter(Files::isRegularFile).sorted().toList();
+                }
+            }
+
+            var directory = sessions.toAbsolutePath().getParent();
+
+            return Files.readAllLines(sessions, StandardCharsets.UTF_8).stream()
+                .map(String::strip)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .map(directory::resolve)
+                .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Replays all sessions, a session that fails (e.g. a missing file) is reported in the summary and does not stop
+     * the others.
+     *
+     * @throws IllegalArgumentException if two sessions have the same file name, as their output would collide
+     */
+    public Summary run(List<Path> sessions, Path outputDirectory) {
+        var names = new HashSet<String>();
+
+        for (var session : sessions) {
+            if (!names.add(session.getFileName().toString())) {
+                throw new IllegalArgumentException("Duplicate session name '" + session.getFileName() + "'");
+            }
+        }
+
+        var startTime = System.nanoTime();
+        var tasks = new ArrayList<Callable<Result>>(sessions.size());
+
+        for (var session : sessions) {
+            tasks.add(() -> replay(session, outputDirectory.resolve(session.getFileName() + ".out")));
+        }
+
+        try (var pool = new ForkJoinPool(parallelism)) {
+            Files.createDirectories(outputDirectory);
+
+            var results = new ArrayList<Result>(sessions.size());
+
+            for (var future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+
+            var summary = new Summary(results, (System.nanoTime() - startTime) / 1_000_000);
+            Files.writeString(outputDirectory.resolve(SUMMARY_FILE), summary.toString(), StandardCharsets.UTF_8);
+
+            return summary;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private Result replay(Path session, Path output) {
+        try (var input = FileChannel.open(session, StandardOpenOption.READ);
+             var out = new BufferedOutputStream(Files.newOutputStream(output), WRITE_BUFFER_SIZE)) {
+            new BatchCli(new RobotService(planeService)).replay(input, out);
+        } catch (IOException | RuntimeException e) {
+            // any failure of a session is reported in the summary, the other sessions are still replayed
+            return new Result(session, output, -1, -1, e.toString());
+        }
+
+        try {
+            return new Result(session, output, Files.size(session), Files.size(output), null);
+        } catch (IOException e) {
+            return new Result(session, output, -1, -1, e.toString());
+        }
+    }
+
+    /**
+     * @param error why the session failed, {@code null} when it was replayed
+     */
+    public record Result(
+        Path session,
+        Path output,
+        long inputBytes,
+        long outputBytes,
+        String error
+    ) {
+        public boolean failed() {
+            return error != null;
+        }
+    }
+
+    /**
+     * @param results one per session, in session order
+     */
+    public record Summary(
+        List<Result> results,
+        long elapsedMillis
+    ) {
+        public long failures() {
+            return results.stream().filter(Result::failed).count();
+        }
+
+        @Override
+        public String toString() {
+            var text = new StringBuilder();
+            var inputBytes = 0L;
+            var outputBytes = 0L;
+
+            for (var result : results) {
+                text.append(result.session().getFileName()).append(": ");
+
+                if (result.failed()) {
+                    text.append("FAILED ").append(result.error());
+                } else {
+                    text.append("OK ").append(result.inputBytes()).append(" bytes in, ")
+                        .append(result.outputBytes()).append(" bytes out");
+                    inputBytes += result.inputBytes();
+                    outputBytes += result.outputBytes();
+                }
+
+                text.append('\n');
+            }
+
+            return text.append("Replayed ").append(results.size()).append(" sessions, ")
+                .append(failures()).append(" failed, ")
+                .append(inputBytes).append(" bytes in, ")
+                .append(outputBytes).append(" bytes out in ")
+                .append(elapsedMillis).append(" ms\n")
+                .toString();
+        }
+    }
+}
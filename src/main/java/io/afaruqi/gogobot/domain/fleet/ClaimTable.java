@@ -0,0 +1,97 @@
+package io.afaruqi.gogobot.domain.fleet;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Open addressing map from a cell to the lowest robot ID that claimed it, filled by any number of threads at once.
+ * <p>
+ * A cell is inserted with a compare-and-set on its slot and the ID is lowered with a compare-and-set loop, so the
+ * winner of a cell is the same whatever order the claims arrive in. Every cell sits next to its ID in one array, so a
+ * claim touches a single cache line. {@link #winner} and {@link #clear} are only
+ * called once all claims are in, e.g. after the threads that claimed were joined.
+ */
+final class ClaimTable {
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final long EMPTY = -1L;
+
+    // the cell of slot i at 2 * i, the lowest ID that claimed it at 2 * i + 1
+    private final long[] slots;
+
+    /**
+     * @param capacity a power of two, above the number of cells claimed between two clears
+     */
+    ClaimTable(int capacity) {
+        slots = new long[capacity * 2];
+        clear(0, capacity);
+    }
+
+    /**
+     * @param cell a non-negative cell key
+     * @param id   a non-negative robot ID
+     */
+    void claim(long cell, long id) {
+        var mask = capacity() - 1;
+        var index = hash(cell) & mask;
+
+        while (true) {
+            var key = (long) SLOTS.getVolatile(slots, 2 * index);
+
+            if (key == EMPTY) {
+                key = (long) SLOTS.compareAndExchange(slots, 2 * index, EMPTY, cell);
+                key = key == EMPTY ? cell : key;
+            }
+
+            if (key == cell) {
+                var current = (long) SLOTS.getVolatile(slots, 2 * index + 1);
+
+                while (id < current) {
+                    var witness = (long) SLOTS.compareAndExchange(slots, 2 * index + 1, current, id);
+
+                    if (witness == current) {
+                        break;
+                    }
+
+                    current = witness;
+                }
+
+                return;
+            }
+
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * @return the lowest ID that claimed the cell
+     */
+    long winner(long cell) {
+        var mask = capacity() - 1;
+        var index = hash(cell) & mask;
+
+        while (slots[2 * index] != cell) {
+            index = (index + 1) & mask;
+        }
+
+        return slots[2 * index + 1];
+    }
+
+    /**
+     * Empties the slots from {@code from} to {@code to}, exclusive.
+     */
+    void clear(int from, int to) {
+        for (var i = 2 * from; i < 2 * to; i += 2) {
+            slots[i] = EMPTY;
+            slots[i + 1] = Long.MAX_VALUE;
+        }
+    }
+
+    int capacity() {
+        return slots.length / 2;
+    }
+
+    private static int hash(long cell) {
+        var hash = cell * 0x9E37_79B9_7F4A_7C15L;
+        return (int) (hash ^ hash >>> 32);
+    }
+}
@@ -0,0 +1,135 @@
+package io.afaruqi.gogobot.domain.fleet;
+
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+import io.afaruqi.gogobot.domain.robot.RobotStatus;
+
+import java.util.Arrays;
+
+/**
+ * A batch of fleet commands in input order, kept column-wise in primitive arrays, together with the outcome of each
+ * command once the batch is executed by {@link FleetService}.
+ */
+public final class FleetCommands {
+    public static final int PLACE = 0;
+    public static final int MOVE = 1;
+    public static final int LEFT = 2;
+    public static final int RIGHT = 3;
+    public static final int REPORT = 4;
+    // a slot that keeps its place in the input order but is not executed, e.g. an unknown command
+    public static final int NONE = 5;
+
+    public static final int OK = RobotStatus.OK;
+    public static final int NOT_PLACED = RobotStatus.NOT_PLACED;
+    public static final int NOT_WITHIN_PLANE = RobotStatus.NOT_WITHIN_PLANE;
+    public static final int CANNOT_MOVE = RobotStatus.CANNOT_MOVE;
+    public static final int BLOCKED = RobotStatus.BLOCKED;
+    public static final int OCCUPIED = RobotStatus.OCCUPIED;
+
+    private static final FaceDirection[] FACE_DIRECTIONS = FaceDirection.values();
+
+    private byte[] operations;
+    private long[] ids;
+    private int[] xCoordinates;
+    private int[] yCoordinates;
+    private byte[] directions;
+    private byte[] statuses;
+    private long[] robots;
+    private int size;
+
+    public FleetCommands(int initialCapacity) {
+        operations = new byte[initialCapacity];
+        ids = new long[initialCapacity];
+        xCoordinates = new int[initialCapacity];
+        yCoordinates = new int[initialCapacity];
+        directions = new byte[initialCapacity];
+        statuses = new byte[initialCapacity];
+        robots = new long[initialCapacity];
+    }
+
+    /**
+     * @param operation one of {@link #MOVE}, {@link #LEFT}, {@link #RIGHT}, {@link #REPORT} or {@link #NONE}
+     * @return the index of the command within the batch
+     */
+    public int add(int operation, long id) {
+        ensureCapacity();
+
+        operations[size] = (byte) operation;
+        ids[size] = id;
+
+        return size++;
+    }
+
+    public int addPlace(long id, int x, int y, FaceDirection faceDirection) {
+        var index = add(PLACE, id);
+
+        xCoordinates[index] = x;
+        yCoordinates[index] = y;
+        directions[index] = (byte) faceDirection.ordinal();
+
+        return index;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int operation(int index) {
+        return operations[index];
+    }
+
+    public long id(int index) {
+        return ids[index];
+    }
+
+    public int x(int index) {
+        return xCoordinates[index];
+    }
+
+    public int y(int index) {
+        return yCoordinates[index];
+    }
+
+    public FaceDirection faceDirection(int index) {
+        return FACE_DIRECTIONS[directions[index]];
+    }
+
+    /**
+     * @return one of {@link #OK}, {@link #NOT_PLACED}, {@link #NOT_WITHIN_PLANE}, {@link #CANNOT_MOVE},
+     * {@link #BLOCKED} (placed on an obstacle) or {@link #OCCUPIED} (placed on another robot)
+     */
+    public int status(int index) {
+        return statuses[index];
+    }
+
+    /**
+     * @return the packed robot after the command, for a {@link #REPORT}
+     */
+    public long robot(int index) {
+        return robots[index];
+    }
+
+    void complete(int index, int status, long robot) {
+        statuses[index] = (byte) status;
+        robots[index] = robot;
+    }
+
+    private void ensureCapacity() {
+        if (size < operations.length) {
+            return;
+        }
+
+        var capacity = Math.max(16, operations.length * 2);
+
+        operations = Arrays.copyOf(operations, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        xCoordinates = Arrays.copyOf(xCoordinates, capacity);
+        yCoordinates = Arrays.copyOf(yCoordinates, capacity);
+        directions = Arrays.copyOf(directions, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        robots = Arrays.copyOf(robots, capacity);
+    }
+}
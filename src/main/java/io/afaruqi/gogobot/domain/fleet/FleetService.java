@@ -0,0 +1,212 @@
+package io.afaruqi.gogobot.domain.fleet;
+
+import io.afaruqi.gogobot.domain.robot.PackedRobot;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import io.afaruqi.gogobot.domain.robot.Trajectories;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Keeps a fleet of robots keyed by ID and executes batches of {@link FleetCommands} against it.
+ * <p>
+ * Robots are striped by ID over a number of {@link RobotTable}s. Within a batch every stripe is executed by one
+ * thread, in input order, so the commands of different robots run in parallel without any locking while the commands
+ * of one robot keep their order. The outcome of a batch is therefore the same for any parallelism.
+ * <p>
+ * With a {@link RobotService} that keeps an occupancy index, robots cannot be placed or moved onto each other. The
+ * index is claimed atomically, so robots of different stripes racing for a cell never end up on it together, but which
+ * of them gets it depends on the timing of the stripes: only batches without such races keep the same outcome.
+ */
+public class FleetService implements AutoCloseable {
+    private final RobotService robotService;
+    private final Trajectories trajectories;
+    private final RobotTable[] stripes;
+    private final ForkJoinPool pool;
+
+    private final int[] stripeOffsets;
+    private int[] stripeOrder = new int[0];
+
+    public FleetService(RobotService robotService, int parallelism) {
+        this.robotService = robotService;
+        this.trajectories = robotService.trajectories();
+        this.stripes = new RobotTable[parallelism];
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        this.stripeOffsets = new int[parallelism + 1];
+
+        for (var i = 0; i < parallelism; i++) {
+            stripes[i] = new RobotTable();
+        }
+    }
+
+    public void execute(FleetCommands commands) {
+        if (pool == null) {
+            executeStripe(commands, 0, 0, commands.size(), false);
+            return;
+        }
+
+        groupByStripe(commands);
+
+        var tasks = new ArrayList<Callable<Void>>(stripes.length);
+
+        for (var i = 0; i < stripes.length; i++) {
+            var stripe = i;
+            tasks.add(() -> {
+                executeStripe(commands, stripe, stripeOffsets[stripe], stripeOffsets[stripe + 1], true);
+                return null;
+            });
+        }
+
+        for (var future : pool.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * @return the number of robots that were ever placed
+     */
+    public int size() {
+        var size = 0;
+
+        for (var stripe : stripes) {
+            size += stripe.size();
+        }
+
+        return size;
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    // counting sort of the command indices by stripe, which keeps the input order within every stripe
+    private void groupByStripe(FleetCommands commands) {
+        var size = commands.size();
+
+        if (stripeOrder.length < size) {
+            stripeOrder = new int[Math.max(size, stripeOrder.length * 2)];
+        }
+
+        var offsets = stripeOffsets;
+        Arrays.fill(offsets, 0);
+
+        for (var i = 0; i < size; i++) {
+            offsets[stripeOf(commands.id(i)) + 1]++;
+        }
+
+        for (var i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+
+        var next = offsets.clone();
+
+        for (var i = 0; i < size; i++) {
+            stripeOrder[next[stripeOf(commands.id(i))]++] = i;
+        }
+    }
+
+    private void executeStripe(FleetCommands commands, int stripe, int from, int to, boolean grouped) {
+        var table = stripes[stripe];
+
+        for (var i = from; i < to; i++) {
+            execute(commands, grouped ? stripeOrder[i] : i, table);
+        }
+    }
+
+    private void execute(FleetCommands commands, int index, RobotTable table) {
+        var operation = commands.operation(index);
+
+        if (operation == FleetCommands.NONE) {
+            return;
+        }
+
+        var id = commands.id(index);
+
+        if (operation == FleetCommands.PLACE) {
+            var x = commands.x(index);
+            var y = commands.y(index);
+
+            var slot = table.find(id);
+            // placing a robot on its own cell only turns it, it keeps holding the cell
+            var onItsCell = slot >= 0 && PackedRobot.x(table.robotAt(slot)) == x && PackedRobot.y(table.robotAt(slot)) == y;
+            var status = onItsCell ? FleetCommands.OK : robotService.claimPlace(x, y);
+
+            if (status == FleetCommands.OK) {
+                var robot = PackedRobot.pack(x, y, commands.faceDirection(index));
+
+                if (slot < 0) {
+                    table.put(id, robot);
+                } else {
+                    if (!onItsCell) {
+                        robotService.release(table.robotAt(slot));
+                    }
+
+                    table.setRobotAt(slot, robot);
+                }
+
+                trajectories.placed(id, robot);
+                commands.complete(index, status, robot);
+            } else {
+                commands.complete(index, status, 0);
+            }
+
+            return;
+        }
+
+        var slot = table.find(id);
+
+        if (slot < 0) {
+            commands.complete(index, FleetCommands.NOT_PLACED, 0);
+            return;
+        }
+
+        var robot = table.robotAt(slot);
+        var status = FleetCommands.OK;
+
+        switch (operation) {
+            case FleetCommands.MOVE -> {
+                var movedRobot = robotService.move(robot);
+
+                if (movedRobot == robot) {
+                    status = FleetCommands.CANNOT_MOVE;
+                } else {
+                    trajectories.moved(id, movedRobot, 1);
+                }
+
+                robot = movedRobot;
+            }
+            case FleetCommands.LEFT -> {
+                robot = robotService.left(robot);
+                trajectories.turned(id, robot);
+            }
+            case FleetCommands.RIGHT -> {
+                robot = robotService.right(robot);
+                trajectories.turned(id, robot);
+            }
+            default -> {
+                // REPORT only hands out the robot
+            }
+        }
+
+        table.setRobotAt(slot, robot);
+        commands.complete(index, status, robot);
+    }
+
+    private int stripeOf(long id) {
+        var hash = id * 0xC2B2_AE3D_27D4_EB4FL;
+        return (int) ((hash >>> 32) * stripes.length >>> 32);
+    }
+}
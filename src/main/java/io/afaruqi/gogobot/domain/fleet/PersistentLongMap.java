@@ -0,0 +1,241 @@
+package io.afaruqi.gogobot.domain.fleet;
+
+/**
+ * Immutable map from {@code long} to {@code long}, e.g. robot IDs to {@link io.afaruqi.gogobot.domain.robot.PackedRobot}s,
+ * where {@link #put} returns a new map that shares all but the O(log32 n) nodes on the path to the changed entry.
+ * Keeping an old version is thus free, and any number of threads may read and extend the same version.
+ * <p>
+ * A compressed hash-array mapped trie (CHAMP): every node has up to 32 slots, picked by 5 bits of the key's hash,
+ * holding either an entry, kept in primitive arrays, or a child node. The hash is a bijection of the key, so two keys
+ * always part within the 64 bits and there are no collision nodes.
+ */
+final class PersistentLongMap {
+    static final PersistentLongMap EMPTY = new PersistentLongMap(Node.EMPTY, 0);
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private final Node root;
+    private final int size;
+
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(long key, long value);
+    }
+
+    private PersistentLongMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @return the value of the key, or {@code missing} if there is none
+     */
+    long get(long key, long missing) {
+        return root.get(key, hash(key), 0, missing);
+    }
+
+    boolean containsKey(long key) {
+        return root.find(key, hash(key), 0);
+    }
+
+    /**
+     * @return a map with the key set to the value, this map if it already was
+     */
+    PersistentLongMap put(long key, long value) {
+        var hash = hash(key);
+        var added = !root.find(key, hash, 0);
+        var newRoot = root.put(key, value, hash, 0);
+
+        return newRoot == root ? this : new PersistentLongMap(newRoot, added ? size + 1 : size);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Hands every entry to the consumer, in no particular order.
+     */
+    void forEach(EntryConsumer consumer) {
+        root.forEach(consumer);
+    }
+
+    /**
+     * @return the keys, in no particular order
+     */
+    long[] keys() {
+        var keys = new long[size];
+        var count = new int[1];
+
+        forEach((key, value) -> keys[count[0]++] = key);
+        return keys;
+    }
+
+    // multiplying by an odd constant and folding the high half in are both invertible
+    private static long hash(long key) {
+        var hash = key * 0x9E37_79B9_7F4A_7C15L;
+        return hash ^ hash >>> 32;
+    }
+
+    private static final class Node {
+        private static final long[] NO_LONGS = new long[0];
+        private static final Node[] NO_NODES = new Node[0];
+
+        static final Node EMPTY = new Node(0, 0, NO_LONGS, NO_LONGS, NO_NODES);
+
+        // which of the 32 slots hold an entry and which a child, the arrays are in slot order
+        private final int entryMap;
+        private final int childMap;
+        private final long[] keys;
+        private final long[] values;
+        private final Node[] children;
+
+        private Node(int entryMap, int childMap, long[] keys, long[] values, Node[] children) {
+            this.entryMap = entryMap;
+            this.childMap = childMap;
+            this.keys = keys;
+            this.values = values;
+            this.children = children;
+        }
+
+        long get(long key, long hash, int shift, long missing) {
+            var node = this;
+
+            while (true) {
+                var bit = bit(hash, shift);
+
+                if ((node.entryMap & bit) != 0) {
+                    var index = index(node.entryMap, bit);
+                    return node.keys[index] == key ? node.values[index] : missing;
+                } else if ((node.childMap & bit) == 0) {
+                    return missing;
+                }
+
+                node = node.children[index(node.childMap, bit)];
+                shift += BITS;
+            }
+        }
+
+        boolean find(long key, long hash, int shift) {
+            var node = this;
+
+            while (true) {
+                var bit = bit(hash, shift);
+
+                if ((node.entryMap & bit) != 0) {
+                    return node.keys[index(node.entryMap, bit)] == key;
+                } else if ((node.childMap & bit) == 0) {
+                    return false;
+                }
+
+                node = node.children[index(node.childMap, bit)];
+                shift += BITS;
+            }
+        }
+
+        Node put(long key, long value, long hash, int shift) {
+            var bit = bit(hash, shift);
+
+            if ((entryMap & bit) != 0) {
+                var index = index(entryMap, bit);
+
+                if (keys[index] == key) {
+                    if (values[index] == value) {
+                        return this;
+                    }
+
+                    var newValues = values.clone();
+                    newValues[index] = value;
+                    return new Node(entryMap, childMap, keys, newValues, children);
+                }
+
+                // the slot's entry and the new one move down into a child of their own
+                var child = pair(keys[index], values[index], hash(keys[index]), key, value, hash, shift + BITS);
+                return withoutEntry(bit, index).withChild(bit, child);
+            } else if ((childMap & bit) != 0) {
+                var index = index(childMap, bit);
+                var child = children[index].put(key, value, hash, shift + BITS);
+
+                if (child == children[index]) {
+                    return this;
+                }
+
+                var newChildren = children.clone();
+                newChildren[index] = child;
+                return new Node(entryMap, childMap, keys, values, newChildren);
+            }
+
+            var index = index(entryMap, bit);
+            return new Node(entryMap | bit, childMap, insert(keys, index, key), insert(values, index, value), children);
+        }
+
+        void forEach(EntryConsumer consumer) {
+            for (var i = 0; i < keys.length; i++) {
+                consumer.accept(keys[i], values[i]);
+            }
+
+            for (var child : children) {
+                child.forEach(consumer);
+            }
+        }
+
+        private Node withoutEntry(int bit, int index) {
+            return new Node(entryMap & ~bit, childMap, remove(keys, index), remove(values, index), children);
+        }
+
+        private Node withChild(int bit, Node child) {
+            var index = index(childMap, bit);
+            var newChildren = new Node[children.length + 1];
+
+            System.arraycopy(children, 0, newChildren, 0, index);
+            newChildren[index] = child;
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+
+            return new Node(entryMap, childMap | bit, keys, values, newChildren);
+        }
+
+        // two entries whose hashes agree up to the shift, their hashes differ within the 64 bits
+        private static Node pair(long key1, long value1, long hash1, long key2, long value2, long hash2, int shift) {
+            var bit1 = bit(hash1, shift);
+            var bit2 = bit(hash2, shift);
+
+            if (bit1 == bit2) {
+                var child = pair(key1, value1, hash1, key2, value2, hash2, shift + BITS);
+                return new Node(0, bit1, NO_LONGS, NO_LONGS, new Node[]{child});
+            }
+
+            return Integer.compareUnsigned(bit1, bit2) < 0
+                ? new Node(bit1 | bit2, 0, new long[]{key1, key2}, new long[]{value1, value2}, NO_NODES)
+                : new Node(bit1 | bit2, 0, new long[]{key2, key1}, new long[]{value2, value1}, NO_NODES);
+        }
+
+        private static int bit(long hash, int shift) {
+            return 1 << ((int) (hash >>> shift) & MASK);
+        }
+
+        // the position of the slot among the slots of the map
+        private static int index(int map, int bit) {
+            return Integer.bitCount(map & (bit - 1));
+        }
+
+        private static long[] insert(long[] array, int index, long element) {
+            var copy = new long[array.length + 1];
+
+            System.arraycopy(array, 0, copy, 0, index);
+            copy[index] = element;
+            System.arraycopy(array, index, copy, index + 1, array.length - index);
+
+            return copy;
+        }
+
+        private static long[] remove(long[] array, int index) {
+            var copy = new long[array.length - 1];
+
+            System.arraycopy(array, 0, copy, 0, index);
+            System.arraycopy(array, index + 1, copy, index, array.length - index - 1);
+
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package io.afaruqi.gogobot.domain.fleet;
+
+/**
+ * Immutable list indexed from 0, where {@link #append}, {@link #take} and {@link #dropBefore} return a new list that
+ * shares all but the O(log32 n) nodes on the path to the changed index with this one, e.g. the steps of a
+ * {@link WhatIfBranch}.
+ * <p>
+ * A trie of 32 slot nodes, picked by 5 bits of the index, with the elements in the leaves. Lists that only differ in
+ * their last elements share the nodes of the elements before, so appending to a list taken from another one does not
+ * copy it.
+ */
+final class PersistentVector<T> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(new Object[WIDTH], 0, 0);
+
+    private final Object[] root;
+    // the bits of the index below the root's slot
+    private final int shift;
+    private final int size;
+
+    private PersistentVector(Object[] root, int shift, int size) {
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> PersistentVector<T> empty() {
+        return (PersistentVector<T>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the element, or {@code null} if it was dropped
+     */
+    @SuppressWarnings("unchecked")
+    T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " is not within 0 and " + (size - 1));
+        }
+
+        var node = root;
+
+        for (var level = shift; level > 0 && node != null; level -= BITS) {
+            node = (Object[]) node[index >>> level & MASK];
+        }
+
+        return node == null ? null : (T) node[index & MASK];
+    }
+
+    /**
+     * @return a list with the element added at the end
+     */
+    PersistentVector<T> append(T element) {
+        if (size == Integer.MAX_VALUE) {
+            throw new IllegalStateException("A list holds at most " + Integer.MAX_VALUE + " elements");
+        }
+
+        if (shift + BITS < Integer.SIZE - 1 && size == 1 << shift + BITS) {
+            // the root is full, it becomes the first child of a new one
+            var newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            return new PersistentVector<>(set(newRoot, shift + BITS, size, element), shift + BITS, size + 1);
+        }
+
+        return new PersistentVector<>(set(root, shift, size, element), shift, size + 1);
+    }
+
+    /**
+     * @return a list of the first {@code size} elements, which no longer keeps the elements after them
+     */
+    PersistentVector<T> take(int size) {
+        if (size < 0 || size > this.size) {
+            throw new IllegalArgumentException("Size " + size + " is not within 0 and " + this.size);
+        }
+
+        if (size == this.size) {
+            return this;
+        }
+
+        return new PersistentVector<>(clear(root, shift, size, false), shift, size);
+    }
+
+    /**
+     * @return a list of the same size whose elements before the index are dropped, i.e. {@code null}, so they are no
+     * longer kept by it
+     */
+    PersistentVector<T> dropBefore(int index) {
+        if (index < 0 || index > size) {
+            throw new IllegalArgumentException("Index " + index + " is not within 0 and " + size);
+        }
+
+        if (index == 0) {
+            return this;
+        }
+
+        return new PersistentVector<>(clear(root, shift, index, true), shift, size);
+    }
+
+    // a copy of the path to the index, with the element at its end
+    private static Object[] set(Object[] node, int level, int index, Object element) {
+        var copy = node == null ? new Object[WIDTH] : node.clone();
+        var slot = index >>> level & MASK;
+
+        copy[slot] = level == 0 ? element : set((Object[]) copy[slot], level - BITS, index, element);
+        return copy;
+    }
+
+    // a copy of the path to the index, without the elements before it, or from it on
+    private static Object[] clear(Object[] node, int level, int index, boolean before) {
+        if (node == null) {
+            return null;
+        }
+
+        var copy = node.clone();
+        var slot = index >>> level & MASK;
+
+        if (before) {
+            for (var i = 0; i < slot; i++) {
+                copy[i] = null;
+            }
+        } else {
+            for (var i = level == 0 ? slot : slot + 1; i < WIDTH; i++) {
+                copy[i] = null;
+            }
+        }
+
+        if (level > 0) {
+            copy[slot] = clear((Object[]) copy[slot], level - BITS, index, before);
+        }
+
+        return copy;
+    }
+}
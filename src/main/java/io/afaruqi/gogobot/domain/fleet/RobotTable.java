@@ -0,0 +1,97 @@
+package io.afaruqi.gogobot.domain.fleet;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from robot ID to {@link io.afaruqi.gogobot.domain.robot.PackedRobot}, or any other {@code long}
+ * such as an index, so a fleet of hundreds of thousands of robots is kept in two primitive arrays instead of boxed map
+ * entries.
+ * <p>
+ * Not thread-safe, every table is owned by a single fleet stripe.
+ */
+final class RobotTable {
+    private static final long EMPTY = -1L;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private long[] ids;
+    private long[] robots;
+    private int size;
+
+    RobotTable() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param id a non-negative robot ID
+     * @return the slot of the robot with the given ID, or -1 if it was never placed
+     */
+    int find(long id) {
+        var index = indexOf(id);
+        return ids[index] == id ? index : -1;
+    }
+
+    long robotAt(int slot) {
+        return robots[slot];
+    }
+
+    void setRobotAt(int slot, long robot) {
+        robots[slot] = robot;
+    }
+
+    void put(long id, long robot) {
+        var index = indexOf(id);
+
+        if (ids[index] != id) {
+            ids[index] = id;
+            size++;
+        }
+
+        robots[index] = robot;
+
+        if (size * 3L > ids.length * 2L) {
+            grow();
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    // linear probing, the table is never full so it always ends on the ID or on a free slot
+    private int indexOf(long id) {
+        var mask = ids.length - 1;
+        var index = hash(id) & mask;
+
+        while (ids[index] != id && ids[index] != EMPTY) {
+            index = (index + 1) & mask;
+        }
+
+        return index;
+    }
+
+    private void grow() {
+        var oldIds = ids;
+        var oldRobots = robots;
+
+        allocate(ids.length * 2);
+
+        for (var i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != EMPTY) {
+                var index = indexOf(oldIds[i]);
+                ids[index] = oldIds[i];
+                robots[index] = oldRobots[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        ids = new long[capacity];
+        robots = new long[capacity];
+        Arrays.fill(ids, EMPTY);
+    }
+
+    private static int hash(long id) {
+        var hash = id * 0x9E37_79B9_7F4A_7C15L;
+        return (int) (hash ^ hash >>> 32);
+    }
+}
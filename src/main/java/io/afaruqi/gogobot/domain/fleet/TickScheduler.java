@@ -0,0 +1,351 @@
+package io.afaruqi.gogobot.domain.fleet;
+
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+import io.afaruqi.gogobot.domain.robot.PackedRobot;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import io.afaruqi.gogobot.domain.robot.RobotStatus;
+import io.afaruqi.gogobot.domain.robot.Trajectories;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Time-stepped fleet simulation: every robot repeats a program of {@link FleetCommands#MOVE},
+ * {@link FleetCommands#LEFT}, {@link FleetCommands#RIGHT} and {@link FleetCommands#NONE} (wait) commands, one command
+ * per tick, and all robots execute their command of a tick at the same time.
+ * <p>
+ * A robot only moves into a cell that was free at the start of the tick, so it never follows another robot into the
+ * cell that robot leaves, and two robots never swap cells. Of the robots moving into the same free cell the one with
+ * the lowest ID gets it, the others stay where they are.
+ * <p>
+ * A tick runs in two phases over chunks of the robots on a fork-join pool: every robot first turns, or looks up its
+ * target cell and claims it in a {@link ClaimTable} if another robot is next to that cell, then every robot moves
+ * that has its target to itself or won the claim. Both phases only depend on the robots as of the start of the tick,
+ * so the outcome of any number of ticks is the same for any parallelism.
+ * <p>
+ * Robots are placed and programmed between runs, by one thread at a time.
+ */
+public class TickScheduler implements AutoCloseable {
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int INITIAL_CAPACITY = 1 << 4;
+
+    private static final byte STAYS = 0;
+    private static final byte MOVES = 1;
+    private static final byte CLAIMS = 2;
+
+    private final RobotService robotService;
+    private final Trajectories trajectories;
+    private final ForkJoinPool pool;
+    private final int chunks;
+    private final List<Callable<Void>> claimPhase = new ArrayList<>();
+    private final List<Callable<Void>> movePhase = new ArrayList<>();
+    private final long[] chunkRejectedMoves;
+
+    // robot ID to index into the columns below
+    private final RobotTable indices = new RobotTable();
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] robots = new long[INITIAL_CAPACITY];
+    private byte[][] programs = new byte[INITIAL_CAPACITY][];
+    private int[] cursors = new int[INITIAL_CAPACITY];
+    // the move of every robot between the two phases of a tick: STAYS, MOVES or CLAIMS its target
+    private long[] targets = new long[INITIAL_CAPACITY];
+    private byte[] moves = new byte[INITIAL_CAPACITY];
+    private int size;
+
+    // the claims of even and odd ticks, the table of the previous tick is cleared during the current one
+    private final ClaimTable[] claims = new ClaimTable[2];
+    private long ticks;
+    private long rejectedMoves;
+
+    /**
+     * @param robotService a robot service with an occupancy index, which keeps the cells of the robots
+     */
+    public TickScheduler(RobotService robotService, int parallelism) {
+        if (!robotService.hasOccupancy()) {
+            throw new IllegalArgumentException("The tick scheduler needs a robot service with an occupancy index");
+        }
+
+        this.robotService = robotService;
+        this.trajectories = robotService.trajectories();
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        this.chunks = parallelism > 1 ? parallelism * CHUNKS_PER_THREAD : 1;
+        this.chunkRejectedMoves = new long[chunks];
+
+        for (var i = 0; i < chunks; i++) {
+            var chunk = i;
+            claimPhase.add(() -> {
+                turnAndClaim(chunk);
+                return null;
+            });
+            movePhase.add(() -> {
+                move(chunk);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Places a new robot, or an existing one elsewhere, on a free cell. A robot keeps its program when it is placed
+     * again.
+     *
+     * @param id a non-negative robot ID
+     * @return {@link RobotStatus#OK}, {@link RobotStatus#NOT_WITHIN_PLANE}, {@link RobotStatus#BLOCKED} or
+     * {@link RobotStatus#OCCUPIED}
+     */
+    public int place(long id, int x, int y, FaceDirection faceDirection) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Robot IDs cannot be negative: " + id);
+        }
+
+        var slot = indices.find(id);
+        var index = slot >= 0 ? (int) indices.robotAt(slot) : -1;
+        var onItsCell = index >= 0 && PackedRobot.x(robots[index]) == x && PackedRobot.y(robots[index]) == y;
+        var status = onItsCell ? RobotStatus.OK : robotService.claimPlace(x, y);
+
+        if (status != RobotStatus.OK) {
+            return status;
+        }
+
+        if (index < 0) {
+            ensureCapacity();
+            index = size++;
+            ids[index] = id;
+            indices.put(id, index);
+        } else if (!onItsCell) {
+            robotService.release(robots[index]);
+        }
+
+        robots[index] = PackedRobot.pack(x, y, faceDirection);
+        trajectories.placed(id, robots[index]);
+
+        return RobotStatus.OK;
+    }
+
+    /**
+     * @param program the commands the robot repeats from the next tick on, kept as is rather than copied so robots
+     *                can share one program; empty to stop the robot
+     * @return {@link RobotStatus#OK}, or {@link RobotStatus#NOT_PLACED} for an unknown robot
+     */
+    public int program(long id, byte[] program) {
+        for (var command : program) {
+            if (command != FleetCommands.MOVE && command != FleetCommands.LEFT && command != FleetCommands.RIGHT
+                && command != FleetCommands.NONE) {
+                throw new IllegalArgumentException("Robot programs only MOVE, LEFT, RIGHT or wait: " + command);
+            }
+        }
+
+        var slot = indices.find(id);
+
+        if (slot < 0) {
+            return RobotStatus.NOT_PLACED;
+        }
+
+        var index = (int) indices.robotAt(slot);
+        programs[index] = program.length > 0 ? program : null;
+        cursors[index] = 0;
+
+        return RobotStatus.OK;
+    }
+
+    /**
+     * Runs the given number of ticks.
+     */
+    public void run(int ticks) {
+        ensureClaimTables();
+
+        for (var i = 0; i < ticks; i++) {
+            runPhase(claimPhase);
+            runPhase(movePhase);
+            this.ticks++;
+        }
+
+        for (var i = 0; i < chunks; i++) {
+            rejectedMoves += chunkRejectedMoves[i];
+            chunkRejectedMoves[i] = 0;
+        }
+    }
+
+    /**
+     * @return the packed robot
+     * @throws IllegalArgumentException if the robot was never placed
+     */
+    public long robot(long id) {
+        var slot = indices.find(id);
+
+        if (slot < 0) {
+            throw new IllegalArgumentException("Robot " + id + " is not placed");
+        }
+
+        return robots[(int) indices.robotAt(slot)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of ticks run so far
+     */
+    public long ticks() {
+        return ticks;
+    }
+
+    /**
+     * @return the moves so far that were rejected, by the edge of the plane, an obstacle or another robot
+     */
+    public long rejectedMoves() {
+        return rejectedMoves;
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    // phase one, it only changes the robots of its chunk and their claims
+    private void turnAndClaim(int chunk) {
+        var table = claims[(int) (ticks & 1)];
+        var rejected = 0L;
+
+        for (var i = from(chunk, size); i < from(chunk + 1, size); i++) {
+            var program = programs[i];
+
+            if (program == null) {
+                continue;
+            }
+
+            var command = program[cursors[i]];
+            cursors[i] = cursors[i] + 1 == program.length ? 0 : cursors[i] + 1;
+
+            switch (command) {
+                case FleetCommands.MOVE -> {
+                    var target = robotService.step(robots[i]);
+
+                    if (target == robots[i] || robotService.isOccupied(target)) {
+                        rejected++;
+                    } else if (isContested(target)) {
+                        targets[i] = target;
+                        moves[i] = CLAIMS;
+                        table.claim(cell(target), ids[i]);
+                    } else {
+                        moves[i] = MOVES;
+                    }
+                }
+                case FleetCommands.LEFT -> {
+                    robots[i] = robotService.left(robots[i]);
+                    trajectories.turned(ids[i], robots[i]);
+                }
+                case FleetCommands.RIGHT -> {
+                    robots[i] = robotService.right(robots[i]);
+                    trajectories.turned(ids[i], robots[i]);
+                }
+                default -> {
+                    // waits for a tick
+                }
+            }
+        }
+
+        chunkRejectedMoves[chunk] += rejected;
+    }
+
+    // phase two, every target cell has one winner so the moves never meet in the occupancy index
+    private void move(int chunk) {
+        var table = claims[(int) (ticks & 1)];
+        var previousTable = claims[(int) (ticks + 1 & 1)];
+        var rejected = 0L;
+
+        previousTable.clear(from(chunk, previousTable.capacity()), from(chunk + 1, previousTable.capacity()));
+
+        for (var i = from(chunk, size); i < from(chunk + 1, size); i++) {
+            var move = moves[i];
+
+            if (move == STAYS) {
+                continue;
+            }
+
+            moves[i] = STAYS;
+
+            if (move == MOVES || table.winner(cell(targets[i])) == ids[i]) {
+                robots[i] = robotService.move(robots[i]);
+                trajectories.moved(ids[i], robots[i], 1);
+            } else {
+                rejected++;
+            }
+        }
+
+        chunkRejectedMoves[chunk] += rejected;
+    }
+
+    // only a robot next to the target cell can head for it as well, most moves do not need to claim their target
+    private boolean isContested(long target) {
+        return isNextToRobot(target) || isNextToRobot(robotService.left(target)) || isNextToRobot(robotService.right(target));
+    }
+
+    private boolean isNextToRobot(long robot) {
+        var neighbour = robotService.step(robot);
+        return neighbour != robot && robotService.isOccupied(neighbour);
+    }
+
+    private void runPhase(List<Callable<Void>> tasks) {
+        if (pool == null) {
+            try {
+                tasks.get(0).call();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+
+            return;
+        }
+
+        for (var future : pool.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    // the start of a chunk of [0, length)
+    private int from(int chunk, int length) {
+        return (int) ((long) chunk * length / chunks);
+    }
+
+    private static long cell(long robot) {
+        return (long) PackedRobot.x(robot) << 32 | PackedRobot.y(robot);
+    }
+
+    // at most one claim per robot and tick, at a load of at most one half
+    private void ensureClaimTables() {
+        var capacity = Integer.highestOneBit(Math.max(size, 1)) * 4;
+
+        if (claims[0] == null || claims[0].capacity() < capacity) {
+            claims[0] = new ClaimTable(capacity);
+            claims[1] = new ClaimTable(capacity);
+        }
+    }
+
+    private void ensureCapacity() {
+        if (size < ids.length) {
+            return;
+        }
+
+        var capacity = ids.length * 2;
+
+        ids = Arrays.copyOf(ids, capacity);
+        robots = Arrays.copyOf(robots, capacity);
+        programs = Arrays.copyOf(programs, capacity);
+        cursors = Arrays.copyOf(cursors, capacity);
+        targets = Arrays.copyOf(targets, capacity);
+        moves = Arrays.copyOf(moves, capacity);
+    }
+}
@@ -0,0 +1,308 @@
+package io.afaruqi.gogobot.domain.fleet;
+
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+import io.afaruqi.gogobot.domain.robot.PackedRobot;
+import io.afaruqi.gogobot.domain.robot.RobotPath;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import io.afaruqi.gogobot.domain.robot.RobotStatus;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A session of fleet commands that can be forked at any of its steps, to try alternative commands from there on and
+ * compare the outcomes, see {@link #diff}.
+ * <p>
+ * Every command makes a new step, an immutable snapshot of the robots and of the obstacles added on the branch on top
+ * of the plane's, both kept in {@link PersistentLongMap}s: a command copies the few trie nodes it changes and shares
+ * everything else with the step before. The steps are kept in a {@link PersistentVector} by their number, so forking
+ * at the current step takes O(1) and at an earlier one O(log32 steps), and a fork shares the steps before it.
+ * <p>
+ * A branch is owned by one thread at a time, but its steps are immutable, so branches forked from each other run on
+ * threads of their own without any locking. The plane's own obstacles are shared by all branches and must not change
+ * while they run. As in a fleet without collisions, robots may share cells.
+ * <p>
+ * Every step is kept for later forks, a small object plus the trie nodes its command copied, so the memory of a branch
+ * grows with its commands. {@link #forgetBefore} drops the steps a branch no longer forks at; steps it shares with
+ * other branches are only freed once none of them keeps them.
+ */
+public final class WhatIfBranch {
+    /**
+     * What {@link #robot} returns for a robot that is not placed, no packed robot has its sign bit set.
+     */
+    public static final long NOT_PLACED = -1L;
+
+    private static final long NO_OBSTACLE = 0L;
+    private static final long OBSTACLE = 1L;
+
+    private final RobotService robotService;
+    private PersistentVector<Step> steps;
+    private int oldestStep;
+    private Step step;
+
+    /**
+     * @param robotService the plane and its obstacles shared by all branches, its occupancy index is not used
+     */
+    public WhatIfBranch(RobotService robotService) {
+        this(robotService, PersistentVector.<Step>empty()
+            .append(new Step(0, PersistentLongMap.EMPTY, PersistentLongMap.EMPTY)), 0);
+    }
+
+    private WhatIfBranch(RobotService robotService, PersistentVector<Step> steps, int oldestStep) {
+        this.robotService = robotService;
+        this.steps = steps;
+        this.oldestStep = oldestStep;
+        this.step = steps.get(steps.size() - 1);
+    }
+
+    /**
+     * @return a branch starting from the current step of this one
+     */
+    public WhatIfBranch fork() {
+        return new WhatIfBranch(robotService, steps, oldestStep);
+    }
+
+    /**
+     * @param step a step of this branch, from the oldest one kept, 0 (before the first command) unless
+     *             {@link #forgetBefore forgotten}, to the current {@link #step()}
+     * @return a branch starting from the given step of this one
+     */
+    public WhatIfBranch fork(int step) {
+        checkStep(step);
+        return new WhatIfBranch(robotService, steps.take(step + 1), oldestStep);
+    }
+
+    /**
+     * Drops the steps before the given one, so they are no longer kept for forks of this branch; its forks from then on
+     * start with the same oldest step.
+     *
+     * @param step a step from the oldest one kept to the current {@link #step()}
+     */
+    public void forgetBefore(int step) {
+        checkStep(step);
+        steps = steps.dropBefore(step);
+        oldestStep = step;
+    }
+
+    /**
+     * @return the number of commands executed on the branch, those before its fork included
+     */
+    public int step() {
+        return step.number;
+    }
+
+    /**
+     * @param id a non-negative robot ID
+     * @return {@link RobotStatus#OK}, {@link RobotStatus#NOT_WITHIN_PLANE} or {@link RobotStatus#BLOCKED}
+     */
+    public int place(long id, int x, int y, FaceDirection faceDirection) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Robot IDs cannot be negative: " + id);
+        }
+
+        var status = robotService.checkPlace(x, y);
+
+        if (status == RobotStatus.OK && isBlockedOnBranch(x, y)) {
+            status = RobotStatus.BLOCKED;
+        }
+
+        next(status == RobotStatus.OK ? step.robots.put(id, PackedRobot.pack(x, y, faceDirection)) : step.robots,
+            step.obstacles);
+
+        return status;
+    }
+
+    /**
+     * @return {@link RobotStatus#OK}, {@link RobotStatus#NOT_PLACED} or {@link RobotStatus#CANNOT_MOVE}
+     */
+    public int move(long id) {
+        var robot = step.robots.get(id, NOT_PLACED);
+
+        if (robot == NOT_PLACED) {
+            next(step.robots, step.obstacles);
+            return RobotStatus.NOT_PLACED;
+        }
+
+        var movedRobot = robotService.step(robot);
+
+        if (movedRobot == robot || isBlockedOnBranch(PackedRobot.x(movedRobot), PackedRobot.y(movedRobot))) {
+            next(step.robots, step.obstacles);
+            return RobotStatus.CANNOT_MOVE;
+        }
+
+        next(step.robots.put(id, movedRobot), step.obstacles);
+        return RobotStatus.OK;
+    }
+
+    /**
+     * @return {@link RobotStatus#OK} or {@link RobotStatus#NOT_PLACED}
+     */
+    public int left(long id) {
+        return turn(id, false);
+    }
+
+    /**
+     * @return {@link RobotStatus#OK} or {@link RobotStatus#NOT_PLACED}
+     */
+    public int right(long id) {
+        return turn(id, true);
+    }
+
+    /**
+     * Blocks a cell on this branch and the branches forked from it afterwards, a robot on it stays there.
+     *
+     * @return {@link RobotStatus#OK} or {@link RobotStatus#NOT_WITHIN_PLANE}
+     */
+    public int addObstacle(int x, int y) {
+        if (robotService.checkPlace(x, y) == RobotStatus.NOT_WITHIN_PLANE) {
+            next(step.robots, step.obstacles);
+            return RobotStatus.NOT_WITHIN_PLANE;
+        }
+
+        next(step.robots, step.obstacles.put(cell(x, y), OBSTACLE));
+        return RobotStatus.OK;
+    }
+
+    /**
+     * Runs {@link RobotPath#MOVE}, {@link RobotPath#LEFT} and {@link RobotPath#RIGHT} commands for one robot, one step
+     * each.
+     *
+     * @return the moves that were rejected
+     */
+    public long run(long id, byte[] commands) {
+        var rejectedMoves = 0L;
+
+        for (var command : commands) {
+            switch (command) {
+                case RobotPath.MOVE -> rejectedMoves += move(id) == RobotStatus.OK ? 0 : 1;
+                case RobotPath.LEFT -> left(id);
+                case RobotPath.RIGHT -> right(id);
+                default -> throw new IllegalArgumentException("Only MOVE, LEFT and RIGHT commands can be run: " + command);
+            }
+        }
+
+        return rejectedMoves;
+    }
+
+    /**
+     * @return the packed robot as of the current step, or {@link #NOT_PLACED}
+     */
+    public long robot(long id) {
+        return step.robots.get(id, NOT_PLACED);
+    }
+
+    /**
+     * @return the robots placed on the branch, those before its fork included
+     */
+    public int robots() {
+        return step.robots.size();
+    }
+
+    /**
+     * @return whether the cell is blocked by an obstacle of the plane or of the branch
+     */
+    public boolean isBlocked(int x, int y) {
+        return robotService.checkPlace(x, y) == RobotStatus.BLOCKED || isBlockedOnBranch(x, y);
+    }
+
+    /**
+     * Compares the robots of the branches as of their current steps.
+     *
+     * @return a line per robot whose pose is not the same on all branches, in ID order, with its pose on every branch
+     * in the given order, e.g. {@code Robot 7: 1,2,NORTH | 1,3,NORTH | not placed}; empty if all branches agree
+     */
+    public static String diff(List<WhatIfBranch> branches) {
+        var ids = new long[0];
+        var size = 0;
+
+        for (var branch : branches) {
+            var branchIds = branch.step.robots.keys();
+
+            ids = Arrays.copyOf(ids, size + branchIds.length);
+            System.arraycopy(branchIds, 0, ids, size, branchIds.length);
+            size += branchIds.length;
+        }
+
+        Arrays.sort(ids, 0, size);
+
+        var report = new StringBuilder();
+
+        for (var i = 0; i < size; i++) {
+            var id = ids[i];
+
+            if (i > 0 && ids[i - 1] == id) {
+                continue;
+            }
+
+            var first = branches.getFirst().robot(id);
+            var same = true;
+
+            for (var branch : branches) {
+                same &= branch.robot(id) == first;
+            }
+
+            if (same) {
+                continue;
+            }
+
+            report.append("Robot ").append(id).append(':');
+
+            for (var b = 0; b < branches.size(); b++) {
+                report.append(b == 0 ? " " : " | ");
+                appendPose(report, branches.get(b).robot(id));
+            }
+
+            report.append('\n');
+        }
+
+        return report.toString();
+    }
+
+    private int turn(long id, boolean right) {
+        var robot = step.robots.get(id, NOT_PLACED);
+
+        if (robot == NOT_PLACED) {
+            next(step.robots, step.obstacles);
+            return RobotStatus.NOT_PLACED;
+        }
+
+        next(step.robots.put(id, right ? robotService.right(robot) : robotService.left(robot)), step.obstacles);
+        return RobotStatus.OK;
+    }
+
+    private boolean isBlockedOnBranch(int x, int y) {
+        return step.obstacles.size() > 0 && step.obstacles.get(cell(x, y), NO_OBSTACLE) == OBSTACLE;
+    }
+
+    private void next(PersistentLongMap robots, PersistentLongMap obstacles) {
+        step = new Step(step.number + 1, robots, obstacles);
+        steps = steps.append(step);
+    }
+
+    private void checkStep(int step) {
+        if (step < oldestStep || step > this.step.number) {
+            throw new IllegalArgumentException("Step " + step + " is not within " + oldestStep + " and " + this.step.number);
+        }
+    }
+
+    private static long cell(int x, int y) {
+        return (long) x << 32 | y;
+    }
+
+    private static void appendPose(StringBuilder report, long robot) {
+        if (robot == NOT_PLACED) {
+            report.append("not placed");
+            return;
+        }
+
+        report.append(PackedRobot.x(robot)).append(',')
+            .append(PackedRobot.y(robot)).append(',')
+            .append(PackedRobot.faceDirection(robot));
+    }
+
+    /**
+     * The robots and the obstacles of the branch after a number of commands.
+     */
+    private record Step(int number, PersistentLongMap robots, PersistentLongMap obstacles) {
+    }
+}
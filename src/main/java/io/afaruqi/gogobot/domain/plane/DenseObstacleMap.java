@@ -0,0 +1,37 @@
+package io.afaruqi.gogobot.domain.plane;
+
+/**
+ * One bit per cell, row by row.
+ */
+final class DenseObstacleMap implements ObstacleMap {
+    private final int width;
+    private final long[] bits;
+    private long size;
+
+    DenseObstacleMap(int width, long cells) {
+        this.width = width;
+        this.bits = new long[(int) ((cells + 63) >>> 6)];
+    }
+
+    @Override
+    public boolean isBlocked(int x, int y) {
+        var cell = (long) y * width + x;
+        return (bits[(int) (cell >>> 6)] & 1L << cell) != 0;
+    }
+
+    @Override
+    public void block(int x, int y) {
+        var cell = (long) y * width + x;
+        var word = (int) (cell >>> 6);
+
+        if ((bits[word] & 1L << cell) == 0) {
+            bits[word] |= 1L << cell;
+            size++;
+        }
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+}
@@ -0,0 +1,42 @@
+package io.afaruqi.gogobot.domain.plane;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * One bit per cell, row by row, claimed and released with a single atomic OR / AND on its word, i.e. one
+ * {@code lock or} / {@code lock and} instruction on x86 and no retry loop.
+ */
+final class DenseOccupancyIndex implements OccupancyIndex {
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final int width;
+    private final long[] words;
+
+    DenseOccupancyIndex(int width, long cells) {
+        this.width = width;
+        this.words = new long[(int) ((cells + 63) >>> 6)];
+    }
+
+    @Override
+    public boolean claim(int x, int y) {
+        var cell = (long) y * width + x;
+        var bit = 1L << cell;
+
+        return ((long) WORDS.getAndBitwiseOr(words, (int) (cell >>> 6), bit) & bit) == 0;
+    }
+
+    @Override
+    public void release(int x, int y) {
+        var cell = (long) y * width + x;
+
+        WORDS.getAndBitwiseAnd(words, (int) (cell >>> 6), ~(1L << cell));
+    }
+
+    @Override
+    public boolean isOccupied(int x, int y) {
+        var cell = (long) y * width + x;
+
+        return ((long) WORDS.getVolatile(words, (int) (cell >>> 6)) & 1L << cell) != 0;
+    }
+}
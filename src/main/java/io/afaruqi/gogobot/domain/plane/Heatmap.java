@@ -0,0 +1,245 @@
+package io.afaruqi.gogobot.domain.plane;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * How often every cell of a {@link Plane} was visited, i.e. a robot was placed on it or moved onto it, counted while
+ * the commands are executed.
+ * <p>
+ * One {@code int} per cell, row by row, so it only exists for planes of up to {@link #MAX_CELLS} cells. A visit is an
+ * atomic add on its counter, so the robots of a fleet may be counted from any number of threads; a counter stops at
+ * {@link Integer#MAX_VALUE}. {@link #DISABLED} counts nothing and every method returns after a check of a final field.
+ * <p>
+ * It exports as a binary file, see {@link #writeBinary}, or as a PGM image, see {@link #writePgm}.
+ */
+public final class Heatmap {
+    // 512 MB of counters
+    public static final long MAX_CELLS = ObstacleMap.DENSE_CELL_LIMIT;
+    public static final int MAGIC = 0x4747_4248; // GGBH
+
+    public static final Heatmap DISABLED = new Heatmap(false, 0, 0);
+
+    private static final VarHandle COUNTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final boolean enabled;
+    private final int width;
+    private final int height;
+    private final int[] counts;
+
+    private Heatmap(boolean enabled, int width, int height) {
+        this.enabled = enabled;
+        this.width = width;
+        this.height = height;
+        this.counts = enabled ? new int[width * height] : null;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the plane has more than {@link #MAX_CELLS} cells
+     */
+    public static Heatmap forPlane(Plane plane) {
+        var cells = ((long) plane.xAxis() + 1) * ((long) plane.yAxis() + 1);
+
+        if (cells > MAX_CELLS) {
+            throw new IllegalArgumentException("A heatmap covers at most " + MAX_CELLS + " cells, not " + plane);
+        }
+
+        return new Heatmap(true, plane.xAxis() + 1, plane.yAxis() + 1);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param x a coordinate within the plane
+     * @param y a coordinate within the plane
+     */
+    public void visit(int x, int y) {
+        if (enabled) {
+            increment(y * width + x);
+        }
+    }
+
+    /**
+     * Visits the {@code cells} cells a robot passes after the given one, one unit step {@code (dx, dy)} each, e.g.
+     * on a run of moves.
+     */
+    public void visitRun(int x, int y, int dx, int dy, long cells) {
+        if (!enabled) {
+            return;
+        }
+
+        var cell = y * width + x;
+        var step = dy * width + dx;
+
+        for (var i = 0L; i < cells; i++) {
+            cell += step;
+            increment(cell);
+        }
+    }
+
+    public int visits(int x, int y) {
+        return enabled ? (int) COUNTS.getVolatile(counts, y * width + x) : 0;
+    }
+
+    /**
+     * @return the number of columns, i.e. the x axis + 1
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * @return the number of rows, i.e. the y axis + 1
+     */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Writes the magic {@code GGBH}, the width and the height as big-endian {@code int}s, and then for every visited
+     * cell row by row, from (0, 0) on, the number of unvisited cells before it and its count as unsigned LEB128
+     * varints. A session that visits a small part of a huge plane thus takes a few bytes per visited cell.
+     */
+    public void writeBinary(OutputStream output) throws IOException {
+        var data = new DataOutputStream(new BufferedOutputStream(output, WRITE_BUFFER_SIZE));
+
+        data.writeInt(MAGIC);
+        data.writeInt(width);
+        data.writeInt(height);
+
+        var unvisited = 0L;
+
+        for (var cell = 0; cell < width * height; cell++) {
+            var count = (int) COUNTS.getVolatile(counts, cell);
+
+            if (count == 0) {
+                unvisited++;
+                continue;
+            }
+
+            writeVarint(data, unvisited);
+            writeVarint(data, count);
+            unvisited = 0;
+        }
+
+        data.flush();
+    }
+
+    /**
+     * Reads a heatmap written by {@link #writeBinary} until the end of the input.
+     */
+    public static Heatmap readBinary(InputStream input) throws IOException {
+        var data = new DataInputStream(new BufferedInputStream(input, WRITE_BUFFER_SIZE));
+
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a heatmap");
+        }
+
+        var width = data.readInt();
+        var height = data.readInt();
+
+        if (width < 1 || height < 1 || (long) width * height > MAX_CELLS) {
+            throw new IOException("Invalid heatmap size " + width + " x " + height);
+        }
+
+        var heatmap = new Heatmap(true, width, height);
+        var cell = -1L;
+        long unvisited;
+
+        while ((unvisited = readVarint(data, true)) >= 0) {
+            cell += unvisited + 1;
+
+            if (cell >= heatmap.counts.length) {
+                throw new IOException("Heatmap cell " + cell + " beyond " + width + " x " + height);
+            }
+
+            heatmap.counts[(int) cell] = (int) Math.min(readVarint(data, false), Integer.MAX_VALUE);
+        }
+
+        return heatmap;
+    }
+
+    /**
+     * Writes a binary (P5) PGM image with one pixel per cell, north up, i.e. the row of the largest y first. Unvisited
+     * cells are black, the most visited ones white, and the others are scaled linearly in between, every visited cell
+     * at least 1.
+     */
+    public void writePgm(OutputStream output) throws IOException {
+        var buffered = new BufferedOutputStream(output, WRITE_BUFFER_SIZE);
+        var max = 1;
+
+        for (var cell = 0; cell < width * height; cell++) {
+            max = Math.max(max, (int) COUNTS.getVolatile(counts, cell));
+        }
+
+        buffered.write(("P5\n" + width + " " + height + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+
+        var row = new byte[width];
+
+        for (var y = height - 1; y >= 0; y--) {
+            for (var x = 0; x < width; x++) {
+                var count = (int) COUNTS.getVolatile(counts, y * width + x);
+                row[x] = (byte) (count == 0 ? 0 : count == max ? 255 : 1 + (long) (count - 1) * 254 / (max - 1));
+            }
+
+            buffered.write(row);
+        }
+
+        buffered.flush();
+    }
+
+    // saturates at Integer.MAX_VALUE rather than wrapping around to a negative count
+    private void increment(int cell) {
+        var count = (int) COUNTS.getVolatile(counts, cell);
+
+        while (count != Integer.MAX_VALUE && !COUNTS.weakCompareAndSet(counts, cell, count, count + 1)) {
+            count = (int) COUNTS.getVolatile(counts, cell);
+        }
+    }
+
+    private static void writeVarint(DataOutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+
+        output.write((int) value);
+    }
+
+    // -1 at the end of the input, if the end may come before the varint
+    private static long readVarint(DataInputStream input, boolean endAllowed) throws IOException {
+        var value = 0L;
+
+        for (var shift = 0; shift < 64; shift += 7) {
+            var b = input.read();
+
+            if (b < 0) {
+                if (endAllowed && shift == 0) {
+                    return -1;
+                }
+
+                throw new EOFException("Heatmap cut short");
+            }
+
+            value |= (long) (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Varint too long");
+    }
+}
@@ -0,0 +1,55 @@
+package io.afaruqi.gogobot.domain.plane;
+
+/**
+ * Blocked cells of a {@link Plane}. Lookups are O(1) and never allocate, so they can sit on the move hot path.
+ * <p>
+ * Obstacles are meant to be set up front, e.g. loaded at startup: blocking a cell is not thread-safe, while any number
+ * of threads may look cells up afterwards.
+ */
+public interface ObstacleMap {
+    // dense bitsets up to 2^27 cells, i.e. 16 MB
+    long DENSE_CELL_LIMIT = 1L << 27;
+
+    ObstacleMap NONE = new ObstacleMap() {
+        @Override
+        public boolean isBlocked(int x, int y) {
+            return false;
+        }
+
+        @Override
+        public void block(int x, int y) {
+            throw new UnsupportedOperationException("No obstacles can be added to NONE");
+        }
+
+        @Override
+        public long size() {
+            return 0;
+        }
+    };
+
+    /**
+     * @return a dense bitset for planes with at most {@link #DENSE_CELL_LIMIT} cells, a sparse tiled one otherwise
+     */
+    static ObstacleMap forPlane(Plane plane) {
+        var cells = ((long) plane.xAxis() + 1) * ((long) plane.yAxis() + 1);
+
+        if (cells <= DENSE_CELL_LIMIT) {
+            return new DenseObstacleMap(plane.xAxis() + 1, cells);
+        }
+
+        return new SparseObstacleMap();
+    }
+
+    /**
+     * @param x a coordinate within the plane
+     * @param y a coordinate within the plane
+     */
+    boolean isBlocked(int x, int y);
+
+    void block(int x, int y);
+
+    /**
+     * @return the number of blocked cells
+     */
+    long size();
+}
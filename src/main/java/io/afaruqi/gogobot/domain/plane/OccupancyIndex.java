@@ -0,0 +1,56 @@
+package io.afaruqi.gogobot.domain.plane;
+
+/**
+ * Cells of a {@link Plane} that are taken by a robot, so robots of a fleet never share a cell.
+ * <p>
+ * Unlike an {@link ObstacleMap} it changes all the time and is thread-safe: a cell is claimed atomically, so of any
+ * number of robots racing for one cell exactly one gets it, and none of them ever waits for a lock held by a robot on
+ * a far away cell.
+ */
+public interface OccupancyIndex {
+    OccupancyIndex NONE = new OccupancyIndex() {
+        @Override
+        public boolean claim(int x, int y) {
+            return true;
+        }
+
+        @Override
+        public void release(int x, int y) {
+        }
+
+        @Override
+        public boolean isOccupied(int x, int y) {
+            return false;
+        }
+    };
+
+    /**
+     * @return a dense atomic bitset for planes with at most {@link ObstacleMap#DENSE_CELL_LIMIT} cells, a sparse
+     * lock-striped one otherwise
+     */
+    static OccupancyIndex forPlane(Plane plane) {
+        var cells = ((long) plane.xAxis() + 1) * ((long) plane.yAxis() + 1);
+
+        if (cells <= ObstacleMap.DENSE_CELL_LIMIT) {
+            return new DenseOccupancyIndex(plane.xAxis() + 1, cells);
+        }
+
+        return new SparseOccupancyIndex();
+    }
+
+    /**
+     * Takes the cell if it is free.
+     *
+     * @param x a coordinate within the plane
+     * @param y a coordinate within the plane
+     * @return false if the cell is already taken
+     */
+    boolean claim(int x, int y);
+
+    /**
+     * Frees a cell taken by {@link #claim}, only to be called by the robot that claimed it.
+     */
+    void release(int x, int y);
+
+    boolean isOccupied(int x, int y);
+}
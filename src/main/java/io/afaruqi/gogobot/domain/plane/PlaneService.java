@@ -4,8 +4,13 @@ import io.afaruqi.gogobot.domain.common.Coordinate;
 
 public class PlaneService {
     private final Plane plane;
+    private ObstacleMap obstacles = ObstacleMap.NONE;
 
     private PlaneService(int xAxis, int yAxis) {
+        if (xAxis < 0 || yAxis < 0) {
+            throw new IllegalArgumentException("Plane axes cannot be negative: [x=" + xAxis + ", y=" + yAxis + "]");
+        }
+
         this.plane = new Plane(xAxis, yAxis);
     }
 
@@ -13,20 +18,59 @@ public class PlaneService {
         return new PlaneService(5, 5);
     }
 
-    // for custom plane size
+    // for custom plane size, up to Integer.MAX_VALUE per axis
     public static PlaneService init(int xAxis, int yAxis) {
         return new PlaneService(xAxis, yAxis);
     }
 
+    // the plane only ends where coordinates stop fitting into an int
+    public static PlaneService initUnbounded() {
+        return new PlaneService(Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
     public boolean isWithinPlane(Coordinate coordinate) {
         if (coordinate == null) {
             return false;
         }
 
-        return coordinate.x() >= 0
-                && coordinate.x() <= plane.xAxis()
-                && coordinate.y() >= 0
-                && coordinate.y() <= plane.yAxis();
+        return isWithinPlane(coordinate.x(), coordinate.y());
+    }
+
+    /**
+     * O(1) bounds check; a step past Integer.MAX_VALUE overflows to a negative coordinate, which is rejected as well.
+     */
+    public boolean isWithinPlane(int x, int y) {
+        return x >= 0
+                && x <= plane.xAxis()
+                && y >= 0
+                && y <= plane.yAxis();
+    }
+
+    /**
+     * O(1) and allocation free, only meaningful for coordinates {@link #isWithinPlane(int, int) within the plane}.
+     */
+    public boolean isBlocked(int x, int y) {
+        return obstacles.isBlocked(x, y);
+    }
+
+    public void addObstacle(int x, int y) {
+        if (!isWithinPlane(x, y)) {
+            throw new IllegalArgumentException("Obstacle " + x + "," + y + " is not within " + plane);
+        }
+
+        if (obstacles == ObstacleMap.NONE) {
+            obstacles = ObstacleMap.forPlane(plane);
+        }
+
+        obstacles.block(x, y);
+    }
+
+    public boolean hasObstacles() {
+        return obstacles != ObstacleMap.NONE;
+    }
+
+    public ObstacleMap getObstacles() {
+        return obstacles;
     }
 
     public Plane getPlane() {
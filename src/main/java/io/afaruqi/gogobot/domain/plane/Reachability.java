@@ -0,0 +1,216 @@
+package io.afaruqi.gogobot.domain.plane;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Which cells of a plane a robot can reach from a start cell, around the obstacles. A robot turns on the spot, so its
+ * direction does not matter: the reachable cells are the 4-connected free cells around the start.
+ * <p>
+ * A breadth-first search, level by level: the cells of the frontier are split into chunks expanded on a fork-join
+ * pool, every chunk into a next frontier of its own. A cell is visited by setting its bit in a bitset with an atomic
+ * OR, so of the chunks finding the same cell only one adds it to its next frontier. The frontiers are {@code int}
+ * cell numbers, so the search takes 1 bit per cell of the plane and at most 4 bytes per cell of its widest level,
+ * which limits it to planes of {@link #MAX_CELLS} cells. On a plane without obstacles every cell is reachable, which
+ * takes no search at all, on any plane.
+ * <p>
+ * The obstacles must not change during an analysis. Analyses run one at a time.
+ */
+public class Reachability implements AutoCloseable {
+    public static final long MAX_CELLS = Integer.MAX_VALUE;
+
+    private static final int CHUNKS_PER_THREAD = 4;
+    // smaller frontiers are expanded by the calling thread alone, a fork would take longer than the expansion
+    private static final int PARALLEL_FRONTIER = 1 << 12;
+    private static final VarHandle VISITED = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final PlaneService planeService;
+    private final ForkJoinPool pool;
+    private final int chunks;
+
+    public Reachability(PlaneService planeService, int parallelism) {
+        this.planeService = planeService;
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        this.chunks = parallelism > 1 ? parallelism * CHUNKS_PER_THREAD : 1;
+    }
+
+    /**
+     * @return the cells reachable from the given one, none if it is off the plane or blocked
+     * @throws IllegalArgumentException if the plane has obstacles and more than {@link #MAX_CELLS} cells
+     */
+    public ReachableCells from(int x, int y) {
+        var plane = planeService.getPlane();
+
+        if (!planeService.isWithinPlane(x, y) || planeService.isBlocked(x, y)) {
+            return ReachableCells.none(plane);
+        } else if (!planeService.hasObstacles()) {
+            return ReachableCells.all(plane);
+        }
+
+        var cells = ((long) plane.xAxis() + 1) * ((long) plane.yAxis() + 1);
+
+        if (cells > MAX_CELLS) {
+            throw new IllegalArgumentException("Reachability covers at most " + MAX_CELLS + " cells, not " + plane);
+        }
+
+        return new Search(plane, cells).run((int) ((long) y * (plane.xAxis() + 1L) + x));
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private void expandAll(List<Callable<Void>> tasks) {
+        if (pool == null) {
+            try {
+                tasks.get(0).call();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+
+            return;
+        }
+
+        for (var future : pool.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    private final class Search {
+        private final Plane plane;
+        private final long width;
+        private final long[] visited;
+        private final List<Callable<Void>> chunkTasks = new ArrayList<>();
+        private final List<Callable<Void>> singleTask;
+
+        private int[] frontier = new int[16];
+        private int frontierSize;
+        // the next frontier of every chunk
+        private final int[][] next;
+        private final int[] nextSizes;
+
+        Search(Plane plane, long cells) {
+            this.plane = plane;
+            this.width = plane.xAxis() + 1L;
+            this.visited = new long[(int) ((cells + 63) >>> 6)];
+            this.next = new int[chunks][16];
+            this.nextSizes = new int[chunks];
+
+            for (var i = 0; i < chunks; i++) {
+                var chunk = i;
+                chunkTasks.add(() -> {
+                    expand(chunk, (int) ((long) chunk * frontierSize / chunks),
+                        (int) ((long) (chunk + 1) * frontierSize / chunks));
+                    return null;
+                });
+            }
+
+            this.singleTask = List.of(() -> {
+                expand(0, 0, frontierSize);
+                return null;
+            });
+        }
+
+        ReachableCells run(int start) {
+            visit(start);
+            frontier[0] = start;
+            frontierSize = 1;
+
+            var count = 1L;
+
+            while (frontierSize > 0) {
+                var parallel = pool != null && frontierSize >= PARALLEL_FRONTIER;
+
+                expandAll(parallel ? chunkTasks : singleTask);
+
+                var size = 0L;
+
+                for (var i = 0; i < (parallel ? chunks : 1); i++) {
+                    size += nextSizes[i];
+                }
+
+                if (size > frontier.length) {
+                    frontier = new int[(int) Math.min(Math.max(size, 2L * frontier.length), Integer.MAX_VALUE - 8)];
+                }
+
+                frontierSize = 0;
+
+                for (var i = 0; i < (parallel ? chunks : 1); i++) {
+                    System.arraycopy(next[i], 0, frontier, frontierSize, nextSizes[i]);
+                    frontierSize += nextSizes[i];
+                    nextSizes[i] = 0;
+                }
+
+                count += frontierSize;
+            }
+
+            return new ReachableCells(plane, visited, count);
+        }
+
+        // the unvisited free neighbours of frontier[from, to) into the chunk's next frontier
+        private void expand(int chunk, int from, int to) {
+            for (var i = from; i < to; i++) {
+                var cell = frontier[i];
+                var y = (int) (cell / width);
+                var x = (int) (cell - y * width);
+
+                if (x > 0) {
+                    add(chunk, cell - 1, x - 1, y);
+                }
+
+                if (x < plane.xAxis()) {
+                    add(chunk, cell + 1, x + 1, y);
+                }
+
+                if (y > 0) {
+                    add(chunk, (int) (cell - width), x, y - 1);
+                }
+
+                if (y < plane.yAxis()) {
+                    add(chunk, (int) (cell + width), x, y + 1);
+                }
+            }
+        }
+
+        private void add(int chunk, int cell, int x, int y) {
+            // a plain read first, most neighbours of a frontier were visited before
+            if ((visited[cell >>> 6] & 1L << cell) != 0 || planeService.isBlocked(x, y) || !visit(cell)) {
+                return;
+            }
+
+            var cells = next[chunk];
+            var size = nextSizes[chunk];
+
+            if (size == cells.length) {
+                cells = Arrays.copyOf(cells, (int) Math.min(2L * size, Integer.MAX_VALUE - 8));
+                next[chunk] = cells;
+            }
+
+            cells[size] = cell;
+            nextSizes[chunk] = size + 1;
+        }
+
+        // whether the cell was not visited before
+        private boolean visit(int cell) {
+            var bit = 1L << cell;
+
+            return ((long) VISITED.getAndBitwiseOr(visited, cell >>> 6, bit) & bit) == 0;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package io.afaruqi.gogobot.domain.plane;
+
+/**
+ * The cells a robot can reach from a start cell, found by {@link Reachability}: one bit per cell, row by row, or no
+ * bits at all when every cell of the plane is reachable.
+ */
+public final class ReachableCells {
+    private final Plane plane;
+    // null when every cell is reachable
+    private final long[] cells;
+    private final long count;
+
+    ReachableCells(Plane plane, long[] cells, long count) {
+        this.plane = plane;
+        this.cells = cells;
+        this.count = count;
+    }
+
+    static ReachableCells none(Plane plane) {
+        return new ReachableCells(plane, new long[0], 0);
+    }
+
+    static ReachableCells all(Plane plane) {
+        return new ReachableCells(plane, null, ((long) plane.xAxis() + 1) * ((long) plane.yAxis() + 1));
+    }
+
+    public boolean isReachable(int x, int y) {
+        if (x < 0 || y < 0 || x > plane.xAxis() || y > plane.yAxis() || count == 0) {
+            return false;
+        } else if (cells == null) {
+            return true;
+        }
+
+        var cell = (long) y * (plane.xAxis() + 1L) + x;
+
+        return (cells[(int) (cell >>> 6)] & 1L << cell) != 0;
+    }
+
+    /**
+     * @return the number of reachable cells, the start cell included
+     */
+    public long count() {
+        return count;
+    }
+
+    public Plane plane() {
+        return plane;
+    }
+}
@@ -0,0 +1,97 @@
+package io.afaruqi.gogobot.domain.plane;
+
+import java.util.Arrays;
+
+/**
+ * Obstacles of huge planes, kept in 64 x 64 cell tiles that only exist where there is at least one obstacle.
+ * <p>
+ * A tile is a 4096-bit bitset ({@code long[64]}, one word per row) and tiles are found through an open addressing
+ * table keyed by the tile coordinate, so a lookup is one hash probe sequence plus one bit test.
+ */
+final class SparseObstacleMap implements ObstacleMap {
+    private static final int TILE_SHIFT = 6;
+    private static final int TILE_MASK = (1 << TILE_SHIFT) - 1;
+    private static final long EMPTY = -1L;
+    private static final int INITIAL_CAPACITY = 1 << 6;
+
+    private long[] keys;
+    private long[][] tiles;
+    private int tileCount;
+    private long size;
+
+    SparseObstacleMap() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    @Override
+    public boolean isBlocked(int x, int y) {
+        var tile = tiles[indexOf(key(x, y))];
+        return tile != null && (tile[y & TILE_MASK] & 1L << (x & TILE_MASK)) != 0;
+    }
+
+    @Override
+    public void block(int x, int y) {
+        var key = key(x, y);
+        var index = indexOf(key);
+
+        if (tiles[index] == null) {
+            keys[index] = key;
+            tiles[index] = new long[1 << TILE_SHIFT];
+            tileCount++;
+        }
+
+        var tile = tiles[index];
+        var bit = 1L << (x & TILE_MASK);
+
+        if ((tile[y & TILE_MASK] & bit) == 0) {
+            tile[y & TILE_MASK] |= bit;
+            size++;
+        }
+
+        if (tileCount * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    private static long key(int x, int y) {
+        return (long) (x >>> TILE_SHIFT) << 32 | y >>> TILE_SHIFT;
+    }
+
+    private int indexOf(long key) {
+        var mask = keys.length - 1;
+        var hash = key * 0x9E37_79B9_7F4A_7C15L;
+        var index = (int) (hash ^ hash >>> 32) & mask;
+
+        while (keys[index] != key && keys[index] != EMPTY) {
+            index = (index + 1) & mask;
+        }
+
+        return index;
+    }
+
+    private void grow() {
+        var oldKeys = keys;
+        var oldTiles = tiles;
+
+        allocate(keys.length * 2);
+
+        for (var i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                var index = indexOf(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                tiles[index] = oldTiles[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        tiles = new long[capacity][];
+        Arrays.fill(keys, EMPTY);
+    }
+}
@@ -0,0 +1,174 @@
+package io.afaruqi.gogobot.domain.plane;
+
+import java.util.Arrays;
+
+/**
+ * Occupied cells of huge planes, kept in 8 x 8 cell tiles of one {@code long} each that only exist while at least one
+ * of their cells is taken, so memory follows the number of robots rather than the plane.
+ * <p>
+ * Tiles are spread by hash over {@value #SEGMENTS} segments, each an open addressing table behind its own lock: robots
+ * on different segments never contend, and a claim holds its lock for one probe sequence. A tile is removed again
+ * when its last cell is released, with backward shift deletion, so the tables do not fill up as robots move on.
+ */
+final class SparseOccupancyIndex implements OccupancyIndex {
+    private static final int TILE_SHIFT = 3;
+    private static final int TILE_MASK = (1 << TILE_SHIFT) - 1;
+    private static final int SEGMENTS = 64;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    SparseOccupancyIndex() {
+        for (var i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    @Override
+    public boolean claim(int x, int y) {
+        var key = key(x, y);
+        return segmentOf(key).claim(key, bit(x, y));
+    }
+
+    @Override
+    public void release(int x, int y) {
+        var key = key(x, y);
+        segmentOf(key).release(key, bit(x, y));
+    }
+
+    @Override
+    public boolean isOccupied(int x, int y) {
+        var key = key(x, y);
+        return (segmentOf(key).word(key) & bit(x, y)) != 0;
+    }
+
+    private static long key(int x, int y) {
+        return (long) (x >>> TILE_SHIFT) << 32 | y >>> TILE_SHIFT;
+    }
+
+    private static long bit(int x, int y) {
+        return 1L << ((y & TILE_MASK) << TILE_SHIFT | x & TILE_MASK);
+    }
+
+    private static long hash(long key) {
+        var hash = key * 0x9E37_79B9_7F4A_7C15L;
+        return hash ^ hash >>> 32;
+    }
+
+    // the top bits pick the segment, the bottom bits the slot within it
+    private Segment segmentOf(long key) {
+        return segments[(int) (hash(key) >>> 58)];
+    }
+
+    private static final class Segment {
+        private static final long EMPTY = -1L;
+        private static final int INITIAL_CAPACITY = 1 << 4;
+
+        private long[] keys;
+        private long[] words;
+        private int size;
+
+        Segment() {
+            allocate(INITIAL_CAPACITY);
+        }
+
+        synchronized boolean claim(long key, long bit) {
+            var index = indexOf(key);
+
+            if (keys[index] == EMPTY) {
+                keys[index] = key;
+                words[index] = bit;
+
+                if (++size * 2 > keys.length) {
+                    grow();
+                }
+
+                return true;
+            }
+
+            if ((words[index] & bit) != 0) {
+                return false;
+            }
+
+            words[index] |= bit;
+            return true;
+        }
+
+        synchronized void release(long key, long bit) {
+            var index = indexOf(key);
+
+            if (keys[index] == EMPTY) {
+                return;
+            }
+
+            words[index] &= ~bit;
+
+            if (words[index] == 0) {
+                remove(index);
+            }
+        }
+
+        synchronized long word(long key) {
+            var index = indexOf(key);
+            return keys[index] == EMPTY ? 0 : words[index];
+        }
+
+        private int indexOf(long key) {
+            var mask = keys.length - 1;
+            var index = (int) hash(key) & mask;
+
+            while (keys[index] != key && keys[index] != EMPTY) {
+                index = (index + 1) & mask;
+            }
+
+            return index;
+        }
+
+        // moves the following entries of the probe sequence back into the gap, so no lookup stops early at it
+        private void remove(int gap) {
+            var mask = keys.length - 1;
+            var index = gap;
+
+            while (true) {
+                index = (index + 1) & mask;
+
+                if (keys[index] == EMPTY) {
+                    break;
+                }
+
+                var home = (int) hash(keys[index]) & mask;
+
+                // the entry may fill the gap unless its home slot lies cyclically in (gap, index]
+                if ((index - home & mask) >= (index - gap & mask)) {
+                    keys[gap] = keys[index];
+                    words[gap] = words[index];
+                    gap = index;
+                }
+            }
+
+            keys[gap] = EMPTY;
+            words[gap] = 0;
+            size--;
+        }
+
+        private void grow() {
+            var oldKeys = keys;
+            var oldWords = words;
+
+            allocate(keys.length * 2);
+
+            for (var i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    var index = indexOf(oldKeys[i]);
+                    keys[index] = oldKeys[i];
+                    words[index] = oldWords[i];
+                }
+            }
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            words = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.afaruqi.gogobot.domain.robot;
+
+import io.afaruqi.gogobot.domain.plane.Plane;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compiled {@link RobotMacro}s by their commands and plane, so sessions that send the same macro compile it only
+ * once. It keeps up to its capacity of macros and evicts the least recently used one beyond that.
+ * <p>
+ * Thread-safe, behind a single lock: a lookup is a hash map access, compiling is rare.
+ */
+public final class MacroCache {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final Map<Key, RobotMacro> macros;
+
+    public MacroCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("A macro cache needs room for at least one macro: " + capacity);
+        }
+
+        this.macros = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, RobotMacro> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param commands see {@link RobotMacro#compile}
+     * @return the cached macro, compiled on a miss
+     */
+    public synchronized RobotMacro compile(byte[] commands, Plane plane) {
+        // the commands are 0, 1 and 2, one char each
+        var key = new Key(new String(commands, StandardCharsets.ISO_8859_1), plane);
+        var macro = macros.get(key);
+
+        if (macro == null) {
+            macro = RobotMacro.compile(commands, plane);
+            macros.put(key, macro);
+        }
+
+        return macro;
+    }
+
+    public synchronized int size() {
+        return macros.size();
+    }
+
+    private record Key(String commands, Plane plane) {
+    }
+}
@@ -0,0 +1,95 @@
+package io.afaruqi.gogobot.domain.robot;
+
+import io.afaruqi.gogobot.domain.common.Coordinate;
+
+/**
+ * A robot packed into a single {@code long}, so the engine can keep and update robots without allocating.
+ * <p>
+ * Layout: x in bits 33-63, y in bits 2-32 and the {@link FaceDirection} ordinal in bits 0-1. Coordinates must be
+ * within {@code [0, Integer.MAX_VALUE]}, which every coordinate inside a {@link io.afaruqi.gogobot.domain.plane.Plane}
+ * is.
+ */
+public final class PackedRobot {
+    private static final FaceDirection[] DIRECTIONS = FaceDirection.values();
+
+    private static final int X_SHIFT = 33;
+    private static final int Y_SHIFT = 2;
+    private static final long COORDINATE_MASK = 0x7FFF_FFFFL;
+    private static final long DIRECTION_MASK = 0b11L;
+
+    // 2-bit lookup tables indexed by the direction ordinal (NORTH, SOUTH, EAST, WEST), highest index first
+    private static final int LEFT_TURNS = 0b01_00_10_11;    // WEST->SOUTH, EAST->NORTH, SOUTH->EAST, NORTH->WEST
+    private static final int RIGHT_TURNS = 0b00_01_11_10;   // WEST->NORTH, EAST->SOUTH, SOUTH->WEST, NORTH->EAST
+
+    private PackedRobot() {
+    }
+
+    public static long pack(int x, int y, FaceDirection faceDirection) {
+        return pack(x, y, faceDirection.ordinal());
+    }
+
+    public static long pack(int x, int y, int direction) {
+        return (long) x << X_SHIFT | (long) y << Y_SHIFT | direction;
+    }
+
+    public static long of(Robot robot) {
+        return pack(robot.coordinate().x(), robot.coordinate().y(), robot.faceDirection());
+    }
+
+    public static Robot toRobot(long robot) {
+        return new Robot(new Coordinate(x(robot), y(robot)), faceDirection(robot));
+    }
+
+    public static int x(long robot) {
+        return (int) (robot >>> X_SHIFT);
+    }
+
+    public static int y(long robot) {
+        return (int) (robot >>> Y_SHIFT & COORDINATE_MASK);
+    }
+
+    public static int direction(long robot) {
+        return (int) (robot & DIRECTION_MASK);
+    }
+
+    public static FaceDirection faceDirection(long robot) {
+        return DIRECTIONS[direction(robot)];
+    }
+
+    /**
+     * @return the x component (-1, 0 or 1) of a one unit step in the given direction
+     */
+    public static int dx(int direction) {
+        // EAST and WEST are the horizontal directions (ordinal 2 and 3), odd ordinals point to the negative side
+        return (direction >>> 1) * (1 - 2 * (direction & 1));
+    }
+
+    /**
+     * @return the y component (-1, 0 or 1) of a one unit step in the given direction
+     */
+    public static int dy(int direction) {
+        return (1 - (direction >>> 1)) * (1 - 2 * (direction & 1));
+    }
+
+    public static long left(long robot) {
+        return (robot & ~DIRECTION_MASK) | leftOf(direction(robot));
+    }
+
+    public static long right(long robot) {
+        return (robot & ~DIRECTION_MASK) | rightOf(direction(robot));
+    }
+
+    /**
+     * @return the direction ordinal on the left of the given one
+     */
+    public static int leftOf(int direction) {
+        return LEFT_TURNS >>> (direction << 1) & (int) DIRECTION_MASK;
+    }
+
+    /**
+     * @return the direction ordinal on the right of the given one
+     */
+    public static int rightOf(int direction) {
+        return RIGHT_TURNS >>> (direction << 1) & (int) DIRECTION_MASK;
+    }
+}
@@ -0,0 +1,457 @@
+package io.afaruqi.gogobot.domain.robot;
+
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+
+import java.util.Arrays;
+
+/**
+ * Finds the shortest MOVE/LEFT/RIGHT sequence, every command counting as one, from a robot to a target pose.
+ * <p>
+ * On a plane without obstacles the path is computed in closed form: it is one of the two L-shaped paths (horizontal
+ * leg first or vertical leg first), since the plane is a rectangle and any detour costs at least two more moves. With
+ * obstacles it runs A* over (x, y, direction) states, with the closed form cost as heuristic: it is the exact cost
+ * once the obstacles are ignored, hence admissible and consistent. States are the packed robots themselves, kept in
+ * primitive arrays (tiles of the plane, or a hash table for huge planes, and a bucket queue), so large searches do not
+ * allocate per state.
+ */
+final class PathPlanner {
+    // a search that has to reach more states than this gives up, about 100 MB of states and queue
+    static final int DEFAULT_STATE_LIMIT = 1 << 22;
+
+    private final PlaneService planeService;
+    private final RobotService robotService;
+    private final int stateLimit;
+
+    PathPlanner(PlaneService planeService, RobotService robotService, int stateLimit) {
+        this.planeService = planeService;
+        this.robotService = robotService;
+        this.stateLimit = stateLimit;
+    }
+
+    /**
+     * @return the shortest path, {@code null} if the target is off the plane, blocked or walled in, or
+     * {@link RobotPath#SEARCH_LIMIT_REACHED} if it needs more than the state limit to be found
+     */
+    RobotPath plan(long robot, int x, int y, FaceDirection faceDirection) {
+        if (!planeService.isWithinPlane(x, y) || planeService.isBlocked(x, y)) {
+            return null;
+        }
+
+        var target = PackedRobot.pack(x, y, faceDirection);
+
+        if (!planeService.hasObstacles()) {
+            return openPlanePath(robot, target);
+        }
+
+        return search(robot, target);
+    }
+
+    static RobotPath openPlanePath(long robot, long target) {
+        var path = new RobotPath();
+        var dx = (long) PackedRobot.x(target) - PackedRobot.x(robot);
+        var dy = (long) PackedRobot.y(target) - PackedRobot.y(robot);
+        var from = PackedRobot.direction(robot);
+        var to = PackedRobot.direction(target);
+        var horizontal = horizontal(dx);
+        var vertical = vertical(dy);
+
+        if (legsCost(from, horizontal, Math.abs(dx), vertical, Math.abs(dy), to)
+                <= legsCost(from, vertical, Math.abs(dy), horizontal, Math.abs(dx), to)) {
+            addLegs(path, from, horizontal, Math.abs(dx), vertical, Math.abs(dy), to);
+        } else {
+            addLegs(path, from, vertical, Math.abs(dy), horizontal, Math.abs(dx), to);
+        }
+
+        return path;
+    }
+
+    static long openPlaneCost(long robot, long target) {
+        var dx = (long) PackedRobot.x(target) - PackedRobot.x(robot);
+        var dy = (long) PackedRobot.y(target) - PackedRobot.y(robot);
+        var from = PackedRobot.direction(robot);
+        var to = PackedRobot.direction(target);
+        var horizontal = horizontal(dx);
+        var vertical = vertical(dy);
+
+        return Math.min(
+            legsCost(from, horizontal, Math.abs(dx), vertical, Math.abs(dy), to),
+            legsCost(from, vertical, Math.abs(dy), horizontal, Math.abs(dx), to)
+        );
+    }
+
+    private RobotPath search(long start, long target) {
+        var states = States.forPlane(planeService);
+        var open = new BucketQueue(openPlaneCost(start, target));
+
+        states.putIfShorter(start, 0, RobotPath.MOVE);
+        open.push(openPlaneCost(start, target), start);
+
+        while (!open.isEmpty()) {
+            var cost = open.peekPriority();
+            var state = open.pop();
+            var distance = states.distance(state);
+
+            if (state == target) {
+                return path(states, target);
+            }
+
+            // a stale queue entry, the state was reached more cheaply later
+            if (cost > distance + openPlaneCost(state, target)) {
+                continue;
+            }
+
+            if (states.size() > stateLimit) {
+                return RobotPath.SEARCH_LIMIT_REACHED;
+            }
+
+            var moved = robotService.step(state);
+
+            if (moved != state) {
+                visit(states, open, moved, distance + 1, RobotPath.MOVE, target);
+            }
+
+            visit(states, open, robotService.left(state), distance + 1, RobotPath.LEFT, target);
+            visit(states, open, robotService.right(state), distance + 1, RobotPath.RIGHT, target);
+        }
+
+        return null;
+    }
+
+    private static void visit(States states, BucketQueue open, long state, long distance, int command, long target) {
+        if (states.putIfShorter(state, distance, command)) {
+            open.push(distance + openPlaneCost(state, target), state);
+        }
+    }
+
+    // walks back from the target, undoing the command that reached each state
+    private static RobotPath path(States states, long target) {
+        var commands = new int[(int) states.distance(target)];
+        var state = target;
+
+        for (var i = commands.length - 1; i >= 0; i--) {
+            var command = states.command(state);
+            commands[i] = command;
+
+            state = switch (command) {
+                case RobotPath.LEFT -> PackedRobot.right(state);
+                case RobotPath.RIGHT -> PackedRobot.left(state);
+                default -> {
+                    var direction = PackedRobot.direction(state);
+                    yield PackedRobot.pack(PackedRobot.x(state) - PackedRobot.dx(direction),
+                        PackedRobot.y(state) - PackedRobot.dy(direction), direction);
+                }
+            };
+        }
+
+        var path = new RobotPath();
+
+        for (var command : commands) {
+            path.add(command, 1);
+        }
+
+        return path;
+    }
+
+    private static long legsCost(int from, int first, long firstMoves, int second, long secondMoves, int to) {
+        var cost = 0L;
+        var facing = from;
+
+        if (firstMoves > 0) {
+            cost += turns(facing, first) + firstMoves;
+            facing = first;
+        }
+
+        if (secondMoves > 0) {
+            cost += turns(facing, second) + secondMoves;
+            facing = second;
+        }
+
+        return cost + turns(facing, to);
+    }
+
+    private static void addLegs(RobotPath path, int from, int first, long firstMoves, int second, long secondMoves, int to) {
+        var facing = from;
+
+        if (firstMoves > 0) {
+            addTurns(path, facing, first);
+            path.add(RobotPath.MOVE, firstMoves);
+            facing = first;
+        }
+
+        if (secondMoves > 0) {
+            addTurns(path, facing, second);
+            path.add(RobotPath.MOVE, secondMoves);
+            facing = second;
+        }
+
+        addTurns(path, facing, to);
+    }
+
+    private static int turns(int from, int to) {
+        if (from == to) {
+            return 0;
+        }
+
+        // NORTH/SOUTH and EAST/WEST only differ in the lowest bit
+        return from >>> 1 == to >>> 1 ? 2 : 1;
+    }
+
+    private static void addTurns(RobotPath path, int from, int to) {
+        if (from == to) {
+            return;
+        }
+
+        if (PackedRobot.leftOf(from) == to) {
+            path.add(RobotPath.LEFT, 1);
+        } else {
+            path.add(RobotPath.RIGHT, turns(from, to));
+        }
+    }
+
+    private static int horizontal(long dx) {
+        return (dx > 0 ? FaceDirection.EAST : FaceDirection.WEST).ordinal();
+    }
+
+    private static int vertical(long dy) {
+        return (dy > 0 ? FaceDirection.NORTH : FaceDirection.SOUTH).ordinal();
+    }
+
+    /**
+     * Distance from the start and the command that reached it, per packed robot. A value is stored as
+     * {@code (distance + 1) << 2 | command}, so 0 marks a state that was not reached yet.
+     */
+    private interface States {
+        // dense tiles up to 2^20 tiles of 32 x 32 cells, i.e. an 8 MB tile index
+        long DENSE_TILE_LIMIT = 1L << 20;
+
+        /**
+         * @return dense tiles for planes with at most {@link #DENSE_TILE_LIMIT} tiles, a hash table otherwise
+         */
+        static States forPlane(PlaneService planeService) {
+            var plane = planeService.getPlane();
+            var tilesPerRow = ((long) plane.xAxis() >>> TiledStates.TILE_BITS) + 1;
+            var tiles = tilesPerRow * (((long) plane.yAxis() >>> TiledStates.TILE_BITS) + 1);
+
+            if (tiles <= DENSE_TILE_LIMIT) {
+                return new TiledStates((int) tilesPerRow, (int) tiles);
+            }
+
+            return new HashedStates();
+        }
+
+        /**
+         * @return the distance from the start, or -1 if the state was not reached yet
+         */
+        default long distance(long state) {
+            return (value(state) >>> 2) - 1;
+        }
+
+        default int command(long state) {
+            return (int) (value(state) & 0b11);
+        }
+
+        long value(long state);
+
+        /**
+         * @return whether the state was not reached yet, or only by a longer path
+         */
+        boolean putIfShorter(long state, long distance, int command);
+
+        int size();
+    }
+
+    /**
+     * Values in 32 x 32 cell tiles of the plane, allocated when the search first reaches them. A state and its
+     * neighbours mostly share a tile, which keeps a search on a bounded plane within a few cache lines at a time.
+     */
+    private static final class TiledStates implements States {
+        static final int TILE_BITS = 5;
+
+        private static final int TILE_MASK = (1 << TILE_BITS) - 1;
+
+        private final int tilesPerRow;
+        private final long[][] tiles;
+        private int size;
+
+        TiledStates(int tilesPerRow, int tiles) {
+            this.tilesPerRow = tilesPerRow;
+            this.tiles = new long[tiles][];
+        }
+
+        @Override
+        public long value(long state) {
+            var tile = tiles[tileOf(state)];
+            return tile == null ? 0 : tile[indexOf(state)];
+        }
+
+        @Override
+        public boolean putIfShorter(long state, long distance, int command) {
+            var tileIndex = tileOf(state);
+            var tile = tiles[tileIndex];
+
+            if (tile == null) {
+                tile = tiles[tileIndex] = new long[4 << 2 * TILE_BITS];
+            }
+
+            var index = indexOf(state);
+            var value = tile[index];
+
+            if (value != 0 && (value >>> 2) - 1 <= distance) {
+                return false;
+            }
+
+            if (value == 0) {
+                size++;
+            }
+
+            tile[index] = (distance + 1) << 2 | command;
+            return true;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        private int tileOf(long state) {
+            return (PackedRobot.y(state) >>> TILE_BITS) * tilesPerRow + (PackedRobot.x(state) >>> TILE_BITS);
+        }
+
+        private static int indexOf(long state) {
+            return ((PackedRobot.y(state) & TILE_MASK) << TILE_BITS | PackedRobot.x(state) & TILE_MASK) << 2
+                | PackedRobot.direction(state);
+        }
+    }
+
+    /**
+     * Open addressing table of values, for planes too big to tile. Every {@code long} is a valid packed robot, so
+     * free slots are marked by their value (0) instead of their key. A state and its value sit next to each other in
+     * one array, so a lookup costs a single cache miss.
+     */
+    private static final class HashedStates implements States {
+        // state, value
+        private long[] slots = new long[2 << 10];
+        private int size;
+
+        @Override
+        public long value(long state) {
+            return slots[indexOf(state) + 1];
+        }
+
+        @Override
+        public boolean putIfShorter(long state, long distance, int command) {
+            var index = indexOf(state);
+            var value = slots[index + 1];
+
+            if (value != 0 && (value >>> 2) - 1 <= distance) {
+                return false;
+            }
+
+            if (value == 0) {
+                slots[index] = state;
+                size++;
+            }
+
+            slots[index + 1] = (distance + 1) << 2 | command;
+
+            if (size * 2L > slots.length / 2) {
+                grow();
+            }
+
+            return true;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        // index of the state in slots, its value is at index + 1
+        private int indexOf(long state) {
+            var mask = slots.length - 2;
+            var index = hash(state) << 1 & mask;
+
+            while (slots[index + 1] != 0 && slots[index] != state) {
+                index = (index + 2) & mask;
+            }
+
+            return index;
+        }
+
+        private void grow() {
+            var oldSlots = slots;
+
+            slots = new long[oldSlots.length * 2];
+
+            for (var i = 0; i < oldSlots.length; i += 2) {
+                if (oldSlots[i + 1] != 0) {
+                    var index = indexOf(oldSlots[i]);
+                    slots[index] = oldSlots[i];
+                    slots[index + 1] = oldSlots[i + 1];
+                }
+            }
+        }
+
+        private static int hash(long state) {
+            var hash = state * 0x9E37_79B9_7F4A_7C15L;
+            return (int) (hash ^ hash >>> 32);
+        }
+    }
+
+    /**
+     * Min-priority queue of states with one stack per priority. With a consistent heuristic the priorities that are
+     * popped never decrease, so pushing and popping are O(1). Within a priority the last pushed state, usually the
+     * one farthest from the start, goes first, so the search follows one of many equally short paths instead of
+     * widening over all of them.
+     */
+    private static final class BucketQueue {
+        private final long minPriority;
+        private long[][] buckets = new long[64][];
+        private int[] sizes = new int[64];
+        private int current;
+        private int size;
+
+        BucketQueue(long minPriority) {
+            this.minPriority = minPriority;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long peekPriority() {
+            while (sizes[current] == 0) {
+                current++;
+            }
+
+            return minPriority + current;
+        }
+
+        void push(long priority, long state) {
+            var bucket = (int) (priority - minPriority);
+
+            if (bucket >= buckets.length) {
+                var length = Math.max(bucket + 1, buckets.length * 2);
+                buckets = Arrays.copyOf(buckets, length);
+                sizes = Arrays.copyOf(sizes, length);
+            }
+
+            var states = buckets[bucket];
+
+            if (states == null) {
+                states = buckets[bucket] = new long[64];
+            } else if (sizes[bucket] == states.length) {
+                states = buckets[bucket] = Arrays.copyOf(states, states.length * 2);
+            }
+
+            states[sizes[bucket]++] = state;
+            size++;
+        }
+
+        long pop() {
+            peekPriority();
+            size--;
+            return buckets[current][--sizes[current]];
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package io.afaruqi.gogobot.domain.robot;
+
+import io.afaruqi.gogobot.domain.plane.Plane;
+
+/**
+ * A macro of {@link RobotPath#MOVE}, {@link RobotPath#LEFT} and {@link RobotPath#RIGHT} commands compiled for a plane
+ * without obstacles into a transition function of the robot, so running it a million times takes about as long as
+ * running it once.
+ * <p>
+ * Without obstacles the two axes are independent: a MOVE only changes one coordinate, and whether it is rejected only
+ * depends on that coordinate. For every direction the robot may start in, the macro is compiled into one walk of unit
+ * steps per axis, and a walk of steps that each stop at the edge is the clamp {@code min(max(c + shift, low), high)}
+ * of the coordinate. Its rejected moves are 0 unless the walk starts within its own length of an edge, the few
+ * coordinates near the edges are tabulated.
+ * <p>
+ * A macro that turns the robot by {@code r} right turns returns it to its start direction after 1, 2 or 4 runs, a
+ * cycle that is compiled the same way. Repeated cycles move a coordinate by the cycle's shift without any rejection
+ * until it gets near an edge, where it stops at a fixed point of the clamp after at most the length of the cycle, so
+ * {@link #run} skips over the cycles in between: it takes O(commands) however many times the macro runs.
+ */
+public final class RobotMacro {
+    /**
+     * The most commands a macro may have, the tables near the edges take O(commands²) to compile.
+     */
+    public static final int MAX_COMMANDS = 256;
+
+    private final byte[] commands;
+    private final Plane plane;
+    private final long moves;
+    private final long leftTurns;
+    private final long rightTurns;
+    private final int rotation;
+    private final int period;
+
+    // by the direction the robot starts in, for a single run and for a cycle of runs back to that direction
+    private final AxisWalk[] xRuns = new AxisWalk[4];
+    private final AxisWalk[] yRuns = new AxisWalk[4];
+    private final AxisWalk[] xCycles = new AxisWalk[4];
+    private final AxisWalk[] yCycles = new AxisWalk[4];
+
+    /**
+     * @param robot         the robot after the runs
+     * @param rejectedMoves the moves that were rejected at the edge of the plane
+     */
+    public record Run(long robot, long rejectedMoves) {
+    }
+
+    private RobotMacro(byte[] commands, Plane plane) {
+        this.commands = commands.clone();
+        this.plane = plane;
+
+        var moves = 0L;
+        var leftTurns = 0L;
+        var rightTurns = 0L;
+
+        for (var command : commands) {
+            switch (command) {
+                case RobotPath.MOVE -> moves++;
+                case RobotPath.LEFT -> leftTurns++;
+                case RobotPath.RIGHT -> rightTurns++;
+                default -> throw new IllegalArgumentException("Macros only have MOVE, LEFT and RIGHT commands: " + command);
+            }
+        }
+
+        this.moves = moves;
+        this.leftTurns = leftTurns;
+        this.rightTurns = rightTurns;
+        this.rotation = (int) ((rightTurns - leftTurns) & 3);
+        this.period = rotation == 0 ? 1 : rotation == 2 ? 2 : 4;
+
+        for (var direction = 0; direction < 4; direction++) {
+            xRuns[direction] = walk(direction, 1, true, plane.xAxis());
+            yRuns[direction] = walk(direction, 1, false, plane.yAxis());
+            xCycles[direction] = walk(direction, period, true, plane.xAxis());
+            yCycles[direction] = walk(direction, period, false, plane.yAxis());
+        }
+    }
+
+    /**
+     * @param commands {@link RobotPath#MOVE}, {@link RobotPath#LEFT} and {@link RobotPath#RIGHT}, at most
+     *                 {@link #MAX_COMMANDS}
+     */
+    static RobotMacro compile(byte[] commands, Plane plane) {
+        if (commands.length > MAX_COMMANDS) {
+            throw new IllegalArgumentException("Macros have at most " + MAX_COMMANDS + " commands: " + commands.length);
+        }
+
+        return new RobotMacro(commands, plane);
+    }
+
+    /**
+     * Same as running the commands {@code times} times one by one on the plane the macro was compiled for, provided
+     * it has no obstacles.
+     */
+    public Run run(long robot, long times) {
+        var direction = PackedRobot.direction(robot);
+        var x = new AxisRun(PackedRobot.x(robot));
+        var y = new AxisRun(PackedRobot.y(robot));
+
+        // a cycle ends in the direction it started in
+        xCycles[direction].repeat(x, times / period);
+        yCycles[direction].repeat(y, times / period);
+
+        for (var i = times % period; i > 0; i--) {
+            xRuns[direction].repeat(x, 1);
+            yRuns[direction].repeat(y, 1);
+            direction = turn(direction, rotation);
+        }
+
+        return new Run(PackedRobot.pack((int) x.position, (int) y.position, direction), x.rejections + y.rejections);
+    }
+
+    /**
+     * @return the plane the macro was compiled for, and only runs on
+     */
+    public Plane plane() {
+        return plane;
+    }
+
+    /**
+     * @return a copy of the commands
+     */
+    public byte[] commands() {
+        return commands.clone();
+    }
+
+    /**
+     * @return the MOVE commands of one run
+     */
+    public long moves() {
+        return moves;
+    }
+
+    public long leftTurns() {
+        return leftTurns;
+    }
+
+    public long rightTurns() {
+        return rightTurns;
+    }
+
+    // the unit steps along one axis of `runs` runs from the given direction
+    private AxisWalk walk(int direction, int runs, boolean horizontal, int axis) {
+        var steps = new byte[(int) moves * runs];
+        var length = 0;
+
+        for (var run = 0; run < runs; run++) {
+            for (var command : commands) {
+                switch (command) {
+                    case RobotPath.MOVE -> {
+                        var step = horizontal ? PackedRobot.dx(direction) : PackedRobot.dy(direction);
+
+                        if (step != 0) {
+                            steps[length++] = (byte) step;
+                        }
+                    }
+                    case RobotPath.LEFT -> direction = turn(direction, 3);
+                    default -> direction = turn(direction, 1);
+                }
+            }
+        }
+
+        return new AxisWalk(steps, length, axis);
+    }
+
+    private static int turn(int direction, int rightTurns) {
+        var robot = PackedRobot.pack(0, 0, direction);
+
+        for (var i = 0; i < rightTurns; i++) {
+            robot = PackedRobot.right(robot);
+        }
+
+        return PackedRobot.direction(robot);
+    }
+
+    private static final class AxisRun {
+        long position;
+        long rejections;
+
+        AxisRun(long position) {
+            this.position = position;
+        }
+    }
+
+    /**
+     * Unit steps along an axis {@code [0, axis]}, each rejected when it would leave it.
+     */
+    private static final class AxisWalk {
+        private final long axis;
+        // the walk is min(max(c + shift, low), high)
+        private final long shift;
+        private final long low;
+        private final long high;
+        // the walk never reaches an edge from [below, axis - above], anywhere else it is tabulated
+        private final long below;
+        private final long above;
+        // by c for c < below, and by axis - c for c > axis - above
+        private final int[] lowRejections;
+        private final int[] highRejections;
+
+        AxisWalk(byte[] steps, int length, long axis) {
+            this.axis = axis;
+
+            var shift = 0L;
+            var low = 0L;
+            var high = axis;
+            var min = 0L;
+            var max = 0L;
+
+            for (var i = 0; i < length; i++) {
+                shift += steps[i];
+                low = clamp(low + steps[i], 0, axis);
+                high = clamp(high + steps[i], 0, axis);
+                min = Math.min(min, shift);
+                max = Math.max(max, shift);
+            }
+
+            this.shift = shift;
+            this.low = low;
+            this.high = high;
+            this.below = -min;
+            this.above = max;
+            this.lowRejections = new int[(int) Math.min(below, axis + 1)];
+            this.highRejections = new int[(int) Math.min(above, axis + 1)];
+
+            for (var c = 0; c < lowRejections.length; c++) {
+                lowRejections[c] = simulate(steps, length, c);
+            }
+
+            for (var i = 0; i < highRejections.length; i++) {
+                highRejections[i] = simulate(steps, length, axis - i);
+            }
+        }
+
+        /**
+         * Walks {@code times} times from the position, and adds the rejected steps.
+         */
+        void repeat(AxisRun run, long times) {
+            var position = run.position;
+            var rejections = run.rejections;
+
+            while (times > 0) {
+                if (shift != 0 && position >= below && position <= axis - above) {
+                    // walks from the middle shift the position as they are, up to the last one from the middle
+                    var walks = Math.min(times, 1 + (shift > 0 ? axis - above - position : position - below) / Math.abs(shift));
+
+                    position += walks * shift;
+                    times -= walks;
+                    continue;
+                }
+
+                var next = clamp(position + shift, low, high);
+                rejections += rejections(position);
+                times--;
+
+                if (next == position) {
+                    // a fixed point, every further walk rejects the same steps
+                    rejections += times * rejections(position);
+                    times = 0;
+                }
+
+                position = next;
+            }
+
+            run.position = position;
+            run.rejections = rejections;
+        }
+
+        private long rejections(long position) {
+            if (position < lowRejections.length) {
+                return lowRejections[(int) position];
+            }
+
+            if (axis - position < highRejections.length) {
+                return highRejections[(int) (axis - position)];
+            }
+
+            return 0;
+        }
+
+        private int simulate(byte[] steps, int length, long position) {
+            var rejections = 0;
+
+            for (var i = 0; i < length; i++) {
+                var next = position + steps[i];
+
+                if (next < 0 || next > axis) {
+                    rejections++;
+                } else {
+                    position = next;
+                }
+            }
+
+            return rejections;
+        }
+
+        private static long clamp(long value, long min, long max) {
+            return Math.min(Math.max(value, min), max);
+        }
+    }
+}
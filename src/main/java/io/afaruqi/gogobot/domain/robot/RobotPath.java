@@ -0,0 +1,100 @@
+package io.afaruqi.gogobot.domain.robot;
+
+import java.util.Arrays;
+
+/**
+ * A sequence of MOVE, LEFT and RIGHT commands, run-length encoded so that a path across a huge plane stays small.
+ */
+public final class RobotPath {
+    public static final int MOVE = 0;
+    public static final int LEFT = 1;
+    public static final int RIGHT = 2;
+
+    /**
+     * What path planning returns when it gives up before it knows whether there is a path at all, see
+     * {@link RobotService#pathTo}; compare it by identity.
+     */
+    public static final RobotPath SEARCH_LIMIT_REACHED = new RobotPath();
+
+    private static final String[] COMMAND_NAMES = {"MOVE", "LEFT", "RIGHT"};
+
+    // count << 2 | command
+    private long[] runs = new long[4];
+    private int size;
+
+    RobotPath() {
+    }
+
+    /**
+     * Appends {@code count} times the command, merged into the last run if it is the same command.
+     */
+    void add(int command, long count) {
+        if (count == 0) {
+            return;
+        }
+
+        if (size > 0 && command(size - 1) == command) {
+            runs[size - 1] += count << 2;
+            return;
+        }
+
+        if (size == runs.length) {
+            runs = Arrays.copyOf(runs, size * 2);
+        }
+
+        runs[size++] = count << 2 | command;
+    }
+
+    /**
+     * @return the number of runs of the same command
+     */
+    public int runs() {
+        return size;
+    }
+
+    /**
+     * @return {@link #MOVE}, {@link #LEFT} or {@link #RIGHT}
+     */
+    public int command(int run) {
+        return (int) (runs[run] & 0b11);
+    }
+
+    public long count(int run) {
+        return runs[run] >>> 2;
+    }
+
+    /**
+     * @return the number of commands
+     */
+    public long length() {
+        var length = 0L;
+
+        for (var run = 0; run < size; run++) {
+            length += count(run);
+        }
+
+        return length;
+    }
+
+    /**
+     * @return e.g. {@code RIGHT, MOVE x3, LEFT}
+     */
+    @Override
+    public String toString() {
+        var text = new StringBuilder();
+
+        for (var run = 0; run < size; run++) {
+            if (run > 0) {
+                text.append(", ");
+            }
+
+            text.append(COMMAND_NAMES[command(run)]);
+
+            if (count(run) > 1) {
+                text.append(" x").append(count(run));
+            }
+        }
+
+        return text.toString();
+    }
+}
@@ -0,0 +1,157 @@
+package io.afaruqi.gogobot.domain.robot;
+
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+
+import java.util.Arrays;
+
+/**
+ * Many independent robots on one plane that all execute the same command at once, e.g. for Monte Carlo studies.
+ * Robots of a population do not see each other, only the plane and its obstacles.
+ * <p>
+ * The robots are kept as a structure of arrays: x and y, and the direction as the unit step {@code (dx, dy)} it moves
+ * by. A command is then one loop over plain {@code int} arrays with additions, subtractions, minimums and maximums
+ * only, which C2 turns into SIMD instructions: a move clamps the moved coordinates to the plane without any branch, a
+ * turn swaps and negates the step components. On a plane with obstacles a move falls back to a loop that looks up
+ * every target cell.
+ * <p>
+ * Not thread-safe.
+ */
+public final class RobotPopulation {
+    private static final int INITIAL_CAPACITY = 1 << 4;
+
+    private final PlaneService planeService;
+    private final int xAxis;
+    private final int yAxis;
+
+    private int[] xs = new int[INITIAL_CAPACITY];
+    private int[] ys = new int[INITIAL_CAPACITY];
+    private int[] dxs = new int[INITIAL_CAPACITY];
+    private int[] dys = new int[INITIAL_CAPACITY];
+    private int size;
+
+    public RobotPopulation(PlaneService planeService) {
+        this.planeService = planeService;
+        this.xAxis = planeService.getPlane().xAxis();
+        this.yAxis = planeService.getPlane().yAxis();
+    }
+
+    /**
+     * Places another robot, its index is the number of robots placed before it.
+     *
+     * @return {@link RobotStatus#OK}, {@link RobotStatus#NOT_WITHIN_PLANE} or {@link RobotStatus#BLOCKED}
+     */
+    public int add(int x, int y, FaceDirection faceDirection) {
+        if (!planeService.isWithinPlane(x, y)) {
+            return RobotStatus.NOT_WITHIN_PLANE;
+        } else if (planeService.isBlocked(x, y)) {
+            return RobotStatus.BLOCKED;
+        }
+
+        ensureCapacity();
+
+        xs[size] = x;
+        ys[size] = y;
+        dxs[size] = PackedRobot.dx(faceDirection.ordinal());
+        dys[size] = PackedRobot.dy(faceDirection.ordinal());
+        size++;
+
+        return RobotStatus.OK;
+    }
+
+    /**
+     * Moves every robot one cell, a robot stays where it is if the cell is off the plane or blocked, the same as
+     * {@link RobotService#step}.
+     */
+    public void move() {
+        if (planeService.hasObstacles()) {
+            moveAroundObstacles();
+            return;
+        }
+
+        moveWithinPlane(xs, dxs, xAxis, size);
+        moveWithinPlane(ys, dys, yAxis, size);
+    }
+
+    public void left() {
+        // (dx, dy) -> (-dy, dx), e.g. NORTH (0, 1) -> WEST (-1, 0)
+        for (var i = 0; i < size; i++) {
+            var dx = dxs[i];
+            dxs[i] = -dys[i];
+            dys[i] = dx;
+        }
+    }
+
+    public void right() {
+        // (dx, dy) -> (dy, -dx), e.g. NORTH (0, 1) -> EAST (1, 0)
+        for (var i = 0; i < size; i++) {
+            var dx = dxs[i];
+            dxs[i] = dys[i];
+            dys[i] = -dx;
+        }
+    }
+
+    /**
+     * @return the robot as a packed {@code long}, see {@link PackedRobot}
+     */
+    public long robot(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("No robot " + index + " in a population of " + size);
+        }
+
+        return PackedRobot.pack(xs[index], ys[index], direction(dxs[index], dys[index]));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /*
+     * The coordinate c within [0, axis] moves by d within {-1, 0, 1} as
+     *
+     *     c = max(min(c, axis - up) + up, down) - down, with up = max(d, 0) and down = max(-d, 0)
+     *
+     * i.e. it only moves up below the axis and only moves down above 0, which is what isWithinPlane allows. Unlike a
+     * clamp of c + d no intermediate value overflows, not even at an axis of Integer.MAX_VALUE.
+     */
+    private static void moveWithinPlane(int[] coordinates, int[] steps, int axis, int size) {
+        for (var i = 0; i < size; i++) {
+            var up = Math.max(steps[i], 0);
+            var down = Math.max(-steps[i], 0);
+
+            coordinates[i] = Math.max(Math.min(coordinates[i], axis - up) + up, down) - down;
+        }
+    }
+
+    private void moveAroundObstacles() {
+        for (var i = 0; i < size; i++) {
+            var x = xs[i] + dxs[i];
+            var y = ys[i] + dys[i];
+
+            if (planeService.isWithinPlane(x, y) && !planeService.isBlocked(x, y)) {
+                xs[i] = x;
+                ys[i] = y;
+            }
+        }
+    }
+
+    private static int direction(int dx, int dy) {
+        if (dx != 0) {
+            return dx > 0 ? FaceDirection.EAST.ordinal() : FaceDirection.WEST.ordinal();
+        }
+
+        return dy > 0 ? FaceDirection.NORTH.ordinal() : FaceDirection.SOUTH.ordinal();
+    }
+
+    private void ensureCapacity() {
+        if (size < xs.length) {
+            return;
+        }
+
+        var capacity = xs.length * 2;
+
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        dxs = Arrays.copyOf(dxs, capacity);
+        dys = Arrays.copyOf(dys, capacity);
+    }
+}
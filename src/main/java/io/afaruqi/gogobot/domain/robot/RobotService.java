@@ -1,84 +1,422 @@
 package io.afaruqi.gogobot.domain.robot;
 
 import io.afaruqi.gogobot.domain.common.Coordinate;
+import io.afaruqi.gogobot.domain.plane.Heatmap;
+import io.afaruqi.gogobot.domain.plane.OccupancyIndex;
 import io.afaruqi.gogobot.domain.plane.PlaneService;
 
+import java.nio.charset.StandardCharsets;
+
 public class RobotService {
+    // 'Output: ', two 10 digit coordinates, two commas and the longest direction
+    public static final int MAX_REPORT_LENGTH = 8 + 10 + 1 + 10 + 1 + 5;
+
+    private static final byte[] REPORT_PREFIX = "Output: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[][] FACE_DIRECTIONS = faceDirections();
+
     private final PlaneService planeService;
+    private final OccupancyIndex occupancy;
+    private final Trajectories trajectories;
+    private final Heatmap heatmap;
+    // created by the first GOTO, a planner has final fields only so threads racing to create it each get a usable one
+    private PathPlanner pathPlanner;
 
     public RobotService(PlaneService planeService) {
+        this(planeService, OccupancyIndex.NONE);
+    }
+
+    /**
+     * @param occupancy the cells taken by the robots moved by this service, which then never move onto each other
+     */
+    public RobotService(PlaneService planeService, OccupancyIndex occupancy) {
+        this(planeService, occupancy, Trajectories.DISABLED);
+    }
+
+    /**
+     * @param trajectories where the callers that know the robot IDs record every placement, move and turn, see
+     *                     {@link #trajectories}
+     */
+    public RobotService(PlaneService planeService, OccupancyIndex occupancy, Trajectories trajectories) {
+        this(planeService, occupancy, trajectories, Heatmap.DISABLED);
+    }
+
+    /**
+     * @param heatmap where every placement and every move of the robots of this service is counted, see
+     *                {@link #heatmap}
+     */
+    public RobotService(PlaneService planeService, OccupancyIndex occupancy, Trajectories trajectories, Heatmap heatmap) {
         this.planeService = planeService;
+        this.occupancy = occupancy;
+        this.trajectories = trajectories;
+        this.heatmap = heatmap;
     }
 
     public Robot place(Coordinate coordinate, FaceDirection faceDirection) throws RobotException {
-        var isWithinPlane = planeService.isWithinPlane(coordinate);
+        return PackedRobot.toRobot(place(coordinate.x(), coordinate.y(), faceDirection));
+    }
+
+    public Robot move(Robot robot) throws RobotException {
+        var packedRobot = PackedRobot.of(robot);
+        var movedRobot = move(packedRobot);
 
-        if (isWithinPlane) {
-            return new Robot(coordinate, faceDirection);
-        } else {
-            throw new RobotException("Robot is not placed within " + planeService.getPlane());
+        if (movedRobot == packedRobot) {
+            throw new RobotException(message(RobotStatus.CANNOT_MOVE));
         }
+
+        return PackedRobot.toRobot(movedRobot);
     }
 
-    public Robot move(Robot robot) throws RobotException {
-        var newCoordinate = switch (robot.faceDirection()) {
-            case NORTH: {
-                var x = robot.coordinate().x();
-                var y = robot.coordinate().y() + 1;
-                yield new Coordinate(x, y);
+    public Robot left(Robot robot) {
+        return PackedRobot.toRobot(left(PackedRobot.of(robot)));
+    }
+
+    public Robot right(Robot robot) {
+        return PackedRobot.toRobot(right(PackedRobot.of(robot)));
+    }
+
+    public String report(Robot robot) {
+        return report(PackedRobot.of(robot));
+    }
+
+    /*
+     * Packed engine API, see PackedRobot. Apart from report, it never allocates; rejections are reported as a
+     * RobotStatus or by returning the robot unchanged, the exceptions are only thrown for the Robot API above.
+     */
+
+    public long place(int x, int y, FaceDirection faceDirection) throws RobotException {
+        var status = checkPlace(x, y);
+
+        if (status != RobotStatus.OK) {
+            throw new RobotException(message(status));
+        }
+
+        heatmap.visit(x, y);
+        return PackedRobot.pack(x, y, faceDirection);
+    }
+
+    /**
+     * @return {@link RobotStatus#OK} when a robot can be placed on the given cell, {@link RobotStatus#NOT_WITHIN_PLANE}
+     * or {@link RobotStatus#BLOCKED} otherwise
+     */
+    public int checkPlace(int x, int y) {
+        if (!planeService.isWithinPlane(x, y)) {
+            return RobotStatus.NOT_WITHIN_PLANE;
+        } else if (planeService.isBlocked(x, y)) {
+            return RobotStatus.BLOCKED;
+        }
+
+        return RobotStatus.OK;
+    }
+
+    /**
+     * Same as {@link #checkPlace}, and takes the cell in the occupancy index if a robot can be placed on it. The
+     * robot then holds the cell until it moves away or is {@link #release released}.
+     *
+     * @return {@link RobotStatus#OK}, {@link RobotStatus#NOT_WITHIN_PLANE}, {@link RobotStatus#BLOCKED} or
+     * {@link RobotStatus#OCCUPIED} when another robot is on the cell
+     */
+    public int claimPlace(int x, int y) {
+        var status = checkPlace(x, y);
+
+        if (status == RobotStatus.OK) {
+            if (!occupancy.claim(x, y)) {
+                return RobotStatus.OCCUPIED;
             }
-            case SOUTH: {
-                var x = robot.coordinate().x();
-                var y = robot.coordinate().y() - 1;
-                yield new Coordinate(x, y);
+
+            heatmap.visit(x, y);
+        }
+
+        return status;
+    }
+
+    /**
+     * Counts a robot placed after {@link #checkPlace} said it can be in the heatmap, {@link #place} and
+     * {@link #claimPlace} count theirs themselves.
+     */
+    public void placed(long robot) {
+        heatmap.visit(PackedRobot.x(robot), PackedRobot.y(robot));
+    }
+
+    /**
+     * Frees the cell of a robot taken by {@link #claimPlace} or {@link #move}, e.g. before it is placed elsewhere.
+     */
+    public void release(long robot) {
+        occupancy.release(PackedRobot.x(robot), PackedRobot.y(robot));
+    }
+
+    /**
+     * @return whether a robot holds the cell of the given one, e.g. of a moved robot, always false without an
+     * occupancy index
+     */
+    public boolean isOccupied(long robot) {
+        return occupancy.isOccupied(PackedRobot.x(robot), PackedRobot.y(robot));
+    }
+
+    public boolean hasOccupancy() {
+        return occupancy != OccupancyIndex.NONE;
+    }
+
+    /**
+     * The packed API knows nothing about robot IDs, so the sessions and fleets record the robots they place, move and
+     * turn here themselves.
+     *
+     * @return the recorded trajectories, {@link Trajectories#DISABLED} unless recording was asked for
+     */
+    public Trajectories trajectories() {
+        return trajectories;
+    }
+
+    /**
+     * @return the visits counted by {@link #move}, {@link #place}, {@link #claimPlace} and {@link #placed},
+     * {@link Heatmap#DISABLED} unless counting was asked for
+     */
+    public Heatmap heatmap() {
+        return heatmap;
+    }
+
+    /**
+     * @return the message of a rejected command, for {@link RobotStatus#NOT_WITHIN_PLANE},
+     * {@link RobotStatus#CANNOT_MOVE}, {@link RobotStatus#BLOCKED} and {@link RobotStatus#OCCUPIED}
+     */
+    public String message(int status) {
+        return switch (status) {
+            case RobotStatus.NOT_WITHIN_PLANE -> "Robot is not placed within " + planeService.getPlane();
+            case RobotStatus.CANNOT_MOVE -> "Robot cannot move there.";
+            case RobotStatus.BLOCKED -> "Robot cannot be placed on an obstacle.";
+            case RobotStatus.OCCUPIED -> "Robot cannot be placed on another robot.";
+            default -> throw new IllegalArgumentException("No message for robot status " + status);
+        };
+    }
+
+    /**
+     * Claims the target cell before it frees the robot's cell, so two robots never share a cell even for a moment.
+     *
+     * @return the moved robot, or the given robot as it is when it cannot move there (off the plane, blocked or
+     * occupied by another robot)
+     */
+    public long move(long robot) {
+        var movedRobot = step(robot);
+
+        if (movedRobot != robot && occupancy.claim(PackedRobot.x(movedRobot), PackedRobot.y(movedRobot))) {
+            release(robot);
+            heatmap.visit(PackedRobot.x(movedRobot), PackedRobot.y(movedRobot));
+            return movedRobot;
+        }
+
+        return robot;
+    }
+
+    /**
+     * A move that only looks at the plane and its obstacles, not at other robots, e.g. to plan ahead without taking
+     * any cell.
+     *
+     * @return the moved robot, or the given robot as it is when it cannot move there (off the plane or blocked)
+     */
+    public long step(long robot) {
+        var direction = PackedRobot.direction(robot);
+        var x = PackedRobot.x(robot) + PackedRobot.dx(direction);
+        var y = PackedRobot.y(robot) + PackedRobot.dy(direction);
+
+        if (planeService.isWithinPlane(x, y) && !planeService.isBlocked(x, y)) {
+            return PackedRobot.pack(x, y, direction);
+        }
+
+        return robot;
+    }
+
+    /**
+     * Same as {@code steps} single moves: the robot stops at the edge of the plane or in front of an obstacle or
+     * another robot. On a plane without obstacles or occupancy the jump is computed in O(1) from the plane bounds.
+     *
+     * @return the moved robot, it moved as many cells as it is away from the given robot
+     */
+    public long move(long robot, long steps) {
+        if (planeService.hasObstacles() || hasOccupancy()) {
+            for (; steps > 0; steps--) {
+                var movedRobot = move(robot);
+
+                if (movedRobot == robot) {
+                    break;
+                }
+
+                robot = movedRobot;
             }
-            case EAST: {
-                var x = robot.coordinate().x() + 1;
-                var y = robot.coordinate().y();
-                yield new Coordinate(x, y);
+
+            return robot;
+        }
+
+        var plane = planeService.getPlane();
+        var direction = PackedRobot.direction(robot);
+        var x = PackedRobot.x(robot);
+        var y = PackedRobot.y(robot);
+        var dx = jump(PackedRobot.dx(direction), x, plane.xAxis(), steps);
+        var dy = jump(PackedRobot.dy(direction), y, plane.yAxis(), steps);
+
+        // the cells passed on the way, one axis is 0
+        heatmap.visitRun(x, y, PackedRobot.dx(direction), PackedRobot.dy(direction), Math.abs(dx + dy));
+        return PackedRobot.pack(x + dx, y + dy, direction);
+    }
+
+    /**
+     * @param rightTurns quarter turns to the right, negative to the left; only the turns modulo 4 matter
+     */
+    public long turn(long robot, int rightTurns) {
+        for (var i = rightTurns & 3; i > 0; i--) {
+            robot = PackedRobot.right(robot);
+        }
+
+        return robot;
+    }
+
+    public long left(long robot) {
+        return PackedRobot.left(robot);
+    }
+
+    public long right(long robot) {
+        return PackedRobot.right(robot);
+    }
+
+    /**
+     * Same as {@link #pathTo(long, int, int, FaceDirection, int)} with a limit of about 4 million states, about
+     * 100 MB of search state.
+     */
+    public RobotPath pathTo(long robot, int x, int y, FaceDirection faceDirection) {
+        var planner = pathPlanner;
+
+        if (planner == null) {
+            planner = new PathPlanner(planeService, this, PathPlanner.DEFAULT_STATE_LIMIT);
+            pathPlanner = planner;
+        }
+
+        return planner.plan(robot, x, y, faceDirection);
+    }
+
+    /**
+     * @param stateLimit the most robot poses a search around obstacles may reach before it gives up
+     * @return the shortest MOVE/LEFT/RIGHT sequence that takes the robot to the given pose, {@code null} when there
+     * is none, e.g. the target is off the plane or walled in by obstacles, or {@link RobotPath#SEARCH_LIMIT_REACHED}
+     * when the search gave up before it found out
+     */
+    public RobotPath pathTo(long robot, int x, int y, FaceDirection faceDirection, int stateLimit) {
+        return new PathPlanner(planeService, this, stateLimit).plan(robot, x, y, faceDirection);
+    }
+
+    /**
+     * @param commands see {@link RobotMacro#compile}
+     * @return the macro compiled for this service's plane, from a cache shared by all services
+     */
+    public RobotMacro macro(byte[] commands) {
+        return Macros.CACHE.compile(commands, planeService.getPlane());
+    }
+
+    /**
+     * Same as running the macro's commands {@code times} times through {@link #move(long)}, {@link #left(long)} and
+     * {@link #right(long)}. On a plane without obstacles or occupancy it takes O(commands) for any number of times,
+     * see {@link RobotMacro}; otherwise, or to count the visits in the heatmap, the commands are run one by one.
+     *
+     * @param macro a macro compiled for this service's plane, see {@link #macro}
+     * @throws IllegalArgumentException if the macro was compiled for another plane
+     */
+    public RobotMacro.Run run(long robot, RobotMacro macro, long times) {
+        if (!macro.plane().equals(planeService.getPlane())) {
+            throw new IllegalArgumentException("Macro compiled for plane " + macro.plane() + " cannot run on plane "
+                + planeService.getPlane());
+        }
+
+        if (!planeService.hasObstacles() && !hasOccupancy() && !heatmap.isEnabled()) {
+            return macro.run(robot, times);
+        }
+
+        var commands = macro.commands();
+        var rejectedMoves = 0L;
+
+        for (var i = 0L; i < times; i++) {
+            for (var command : commands) {
+                switch (command) {
+                    case RobotPath.MOVE -> {
+                        var movedRobot = move(robot);
+
+                        if (movedRobot == robot) {
+                            rejectedMoves++;
+                        }
+
+                        robot = movedRobot;
+                    }
+                    case RobotPath.LEFT -> robot = left(robot);
+                    default -> robot = right(robot);
+                }
             }
-            case WEST:
-                var x = robot.coordinate().x() - 1;
-                var y = robot.coordinate().y();
-                yield new Coordinate(x, y);
-        };
+        }
+
+        return new RobotMacro.Run(robot, rejectedMoves);
+    }
+
+    public String report(long robot) {
+        var report = new byte[MAX_REPORT_LENGTH];
+        return new String(report, 0, report(robot, report, 0), StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Formats the report straight into {@code buffer}, which needs {@link #MAX_REPORT_LENGTH} bytes from
+     * {@code offset}.
+     *
+     * @return the end of the report in {@code buffer}
+     */
+    public int report(long robot, byte[] buffer, int offset) {
+        System.arraycopy(REPORT_PREFIX, 0, buffer, offset, REPORT_PREFIX.length);
+
+        var i = writeNumber(PackedRobot.x(robot), buffer, offset + REPORT_PREFIX.length);
+        buffer[i++] = ',';
+        i = writeNumber(PackedRobot.y(robot), buffer, i);
+        buffer[i++] = ',';
+
+        var faceDirection = FACE_DIRECTIONS[PackedRobot.direction(robot)];
+        System.arraycopy(faceDirection, 0, buffer, i, faceDirection.length);
 
-        var isWithinPlane = planeService.isWithinPlane(newCoordinate);
+        return i + faceDirection.length;
+    }
+
+    // a non-negative int in decimal, returns the end of its digits
+    private static int writeNumber(int number, byte[] buffer, int offset) {
+        var end = offset + 1;
+
+        for (var rest = number / 10; rest > 0; rest /= 10) {
+            end++;
+        }
 
-        if (isWithinPlane) {
-            return new Robot(newCoordinate, robot.faceDirection());
-        } else {
-            throw new RobotException("Robot cannot move there.");
+        for (var i = end - 1; i >= offset; i--) {
+            buffer[i] = (byte) ('0' + number % 10);
+            number /= 10;
         }
+
+        return end;
     }
 
-    public Robot left(Robot robot) {
-        return switch (robot.faceDirection()) {
-            case NORTH:
-                yield new Robot(robot.coordinate(), FaceDirection.WEST);
-            case WEST:
-                yield new Robot(robot.coordinate(), FaceDirection.SOUTH);
-            case SOUTH:
-                yield new Robot(robot.coordinate(), FaceDirection.EAST);
-            case EAST:
-                yield new Robot(robot.coordinate(), FaceDirection.NORTH);
-        };
+    private static byte[][] faceDirections() {
+        var faceDirections = FaceDirection.values();
+        var bytes = new byte[faceDirections.length][];
+
+        for (var faceDirection : faceDirections) {
+            bytes[faceDirection.ordinal()] = faceDirection.name().getBytes(StandardCharsets.US_ASCII);
+        }
+
+        return bytes;
     }
 
-    public Robot right(Robot robot) {
-        return switch (robot.faceDirection()) {
-            case NORTH:
-                yield new Robot(robot.coordinate(), FaceDirection.EAST);
-            case EAST:
-                yield new Robot(robot.coordinate(), FaceDirection.SOUTH);
-            case SOUTH:
-                yield new Robot(robot.coordinate(), FaceDirection.WEST);
-            case WEST:
-                yield new Robot(robot.coordinate(), FaceDirection.NORTH);
-        };
+    // signed distance covered along one axis, the coordinate stays within [0, axis]
+    private static int jump(int delta, int coordinate, int axis, long steps) {
+        if (delta > 0) {
+            return (int) Math.min(steps, axis - coordinate);
+        } else if (delta < 0) {
+            return (int) -Math.min(steps, coordinate);
+        }
+
+        return 0;
     }
 
-    public String report(Robot robot) {
-        return String.format("Output: %d,%d,%s", robot.coordinate().x(), robot.coordinate().y(), robot.faceDirection());
+    // created by the first macro, so a process that never runs one does not allocate the cache; shared by all
+    // services, the sessions of a server or a replay send the same macros for the same planes
+    private static final class Macros {
+        static final MacroCache CACHE = new MacroCache(MacroCache.DEFAULT_CAPACITY);
     }
 }
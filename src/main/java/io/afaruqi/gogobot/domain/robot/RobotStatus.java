@@ -0,0 +1,19 @@
+package io.afaruqi.gogobot.domain.robot;
+
+/**
+ * Outcome of a robot command as a plain {@code int}, for callers that reject commands on the hot path and cannot
+ * afford a {@link RobotException} (and its stack trace) for every rejection.
+ */
+public final class RobotStatus {
+    public static final int OK = 0;
+    public static final int NOT_PLACED = 1;
+    public static final int NOT_WITHIN_PLANE = 2;
+    public static final int CANNOT_MOVE = 3;
+    // placed on an obstacle
+    public static final int BLOCKED = 4;
+    // placed on a cell another robot holds
+    public static final int OCCUPIED = 5;
+
+    private RobotStatus() {
+    }
+}
@@ -0,0 +1,428 @@
+package io.afaruqi.gogobot.domain.robot;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Recorded trajectories of robots by ID, answering where a robot was at a given step and which robots passed through
+ * a given cell.
+ * <p>
+ * Step 0 of a robot is its first placement, and every cell it moves and every turn or placement after that is one
+ * more step; a run of turns that a session merges into one turn counts once. A straight move over any number of cells
+ * is a single record, so a run of moves takes as much memory as one turn.
+ * <p>
+ * Records are kept column-wise (x, y, direction, distance, step, robot) in chunks of {@value #CHUNK_RECORDS} records,
+ * on or off the heap, i.e. 25 bytes per record without any object per record. Every robot keeps the indices of its
+ * records in step order, so {@link #pose} is a binary search, and every 64 x 64 cell tile the records that cross it,
+ * so {@link #visits} only looks at the records of one tile.
+ * <p>
+ * Recording and queries are synchronized, so robots of any number of threads can share one instance; recording is
+ * meant for audits rather than the fastest runs. {@link #DISABLED} records nothing, every recording method returns
+ * after a check of a final field.
+ */
+public final class Trajectories {
+    public static final Trajectories DISABLED = new Trajectories(false, false);
+
+    private static final int CHUNK_RECORDS = 1 << 16;
+    private static final int X = 0;
+    private static final int Y = X + 4 * CHUNK_RECORDS;
+    private static final int DISTANCE = Y + 4 * CHUNK_RECORDS;
+    private static final int STEP = DISTANCE + 4 * CHUNK_RECORDS;
+    private static final int ROBOT = STEP + 8 * CHUNK_RECORDS;
+    private static final int DIRECTION = ROBOT + 4 * CHUNK_RECORDS;
+    private static final int CHUNK_SIZE = DIRECTION + CHUNK_RECORDS;
+
+    private static final int PLACED = 1 << 2;
+    private static final int TILE_SHIFT = 6;
+    private static final long EMPTY = -1L;
+
+    /**
+     * The robot with the given ID entered the cell at the given step.
+     */
+    public record Visit(long id, long step) {
+    }
+
+    private final boolean enabled;
+    private final boolean offHeap;
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+    private int size;
+
+    // robot ID to robot slot, and the records of every robot slot in step order
+    private long[] robotIds = new long[0];
+    private int[] robotSlots = new int[0];
+    private long[] ids = new long[0];
+    private int[][] robotRecords = new int[0][];
+    private int[] robotRecordCounts = new int[0];
+    private int robots;
+
+    // tile key to the records crossing the tile
+    private long[] tileKeys = new long[0];
+    private int[][] tileRecords = new int[0][];
+    private int[] tileRecordCounts = new int[0];
+    private int tiles;
+
+    /**
+     * @param offHeap keeps the record chunks in direct buffers, outside of the Java heap
+     */
+    public Trajectories(boolean offHeap) {
+        this(true, offHeap);
+    }
+
+    private Trajectories(boolean enabled, boolean offHeap) {
+        this.enabled = enabled;
+        this.offHeap = offHeap;
+
+        if (enabled) {
+            robotIds = newKeys(1 << 4);
+            robotSlots = new int[1 << 4];
+            tileKeys = newKeys(1 << 4);
+            tileRecords = new int[1 << 4][];
+            tileRecordCounts = new int[1 << 4];
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param robot the robot as placed, anywhere
+     */
+    public void placed(long id, long robot) {
+        if (enabled) {
+            append(id, robot, 0, PLACED);
+        }
+    }
+
+    /**
+     * @param robot    the robot after the move
+     * @param distance the cells it moved in a straight line, at least 1
+     */
+    public void moved(long id, long robot, long distance) {
+        if (enabled) {
+            append(id, robot, (int) distance, 0);
+        }
+    }
+
+    /**
+     * @param robot the robot after the turn
+     */
+    public void turned(long id, long robot) {
+        if (enabled) {
+            append(id, robot, 0, 0);
+        }
+    }
+
+    /**
+     * @return the number of records
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of steps of the robot, 0 if it was never placed
+     */
+    public synchronized long steps(long id) {
+        var slot = robotSlot(id);
+
+        if (slot < 0) {
+            return 0;
+        }
+
+        return step(robotRecords[slot][robotRecordCounts[slot] - 1]) + 1;
+    }
+
+    /**
+     * @return the packed robot at the given step, the robot stays as its last step left it after that
+     * @throws IllegalArgumentException if the robot was never placed or the step is negative
+     */
+    public synchronized long pose(long id, long step) {
+        var slot = robotSlot(id);
+
+        if (slot < 0 || step < 0) {
+            throw new IllegalArgumentException("No step " + step + " of robot " + id);
+        }
+
+        var records = robotRecords[slot];
+        var count = robotRecordCounts[slot];
+
+        // the first record that ends at or after the step
+        var low = 0;
+        var high = count - 1;
+
+        while (low < high) {
+            var middle = (low + high) >>> 1;
+
+            if (step(records[middle]) < step) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        var record = records[low];
+        var back = Math.max(step(record) - step, 0);
+        var direction = direction(record) & 3;
+
+        return PackedRobot.pack(
+            x(record) - (int) back * PackedRobot.dx(direction),
+            y(record) - (int) back * PackedRobot.dy(direction),
+            direction
+        );
+    }
+
+    /**
+     * @return every time a robot was placed on or moved into the cell, ordered by robot ID and step
+     */
+    public synchronized List<Visit> visits(int x, int y) {
+        var visits = new ArrayList<Visit>();
+
+        if (!enabled) {
+            return visits;
+        }
+
+        var tile = indexOf(tileKeys, tileKey(x, y));
+
+        for (var i = 0; i < tileRecordCounts[tile]; i++) {
+            var record = tileRecords[tile][i];
+            var step = entered(record, x, y);
+
+            if (step >= 0) {
+                visits.add(new Visit(ids[robot(record)], step));
+            }
+        }
+
+        visits.sort(Comparator.comparingLong(Visit::id).thenComparingLong(Visit::step));
+        return visits;
+    }
+
+    // the step at which the record entered the cell, or -1 if it does not cover it
+    private long entered(int record, int x, int y) {
+        var direction = direction(record) & 3;
+        var dx = PackedRobot.dx(direction);
+        var dy = PackedRobot.dy(direction);
+        // the cells back from the end of the record, along its direction
+        var back = dx != 0 ? (long) (x(record) - x) * dx : (long) (y(record) - y) * dy;
+        var onLine = dx != 0 ? y == y(record) : x == x(record);
+        var cells = (direction(record) & PLACED) != 0 ? 1 : distance(record);
+
+        return onLine && back >= 0 && back < cells ? step(record) - back : -1;
+    }
+
+    private synchronized void append(long id, long robot, int distance, int flags) {
+        if (size == chunks.length * CHUNK_RECORDS) {
+            chunks = Arrays.copyOf(chunks, chunks.length + 1);
+            chunks[chunks.length - 1] = offHeap ? ByteBuffer.allocateDirect(CHUNK_SIZE) : ByteBuffer.allocate(CHUNK_SIZE);
+        }
+
+        var slot = robotSlotOrAdd(id);
+        var count = robotRecordCounts[slot];
+        var previousStep = count > 0 ? step(robotRecords[slot][count - 1]) : -1;
+        var step = previousStep + Math.max(distance, 1);
+        var record = size++;
+        var chunk = chunks[record / CHUNK_RECORDS];
+        var offset = record % CHUNK_RECORDS;
+
+        chunk.putInt(X + 4 * offset, PackedRobot.x(robot));
+        chunk.putInt(Y + 4 * offset, PackedRobot.y(robot));
+        chunk.putInt(DISTANCE + 4 * offset, distance);
+        chunk.putLong(STEP + 8 * offset, step);
+        chunk.putInt(ROBOT + 4 * offset, slot);
+        chunk.put(DIRECTION + offset, (byte) (PackedRobot.direction(robot) | flags));
+
+        if (count == robotRecords[slot].length) {
+            robotRecords[slot] = Arrays.copyOf(robotRecords[slot], count * 2);
+        }
+
+        robotRecords[slot][count] = record;
+        robotRecordCounts[slot] = count + 1;
+
+        if (flags == PLACED || distance > 0) {
+            indexTiles(record, robot, distance);
+        }
+    }
+
+    // adds the record to every tile its cells cross, from its end back along its direction
+    private void indexTiles(int record, long robot, int distance) {
+        var direction = PackedRobot.direction(robot);
+        var x = PackedRobot.x(robot);
+        var y = PackedRobot.y(robot);
+        var cells = Math.max(distance, 1);
+        var lastTile = EMPTY;
+
+        for (var back = 0L; back < cells; back++) {
+            var key = tileKey((int) (x - back * PackedRobot.dx(direction)), (int) (y - back * PackedRobot.dy(direction)));
+
+            if (key != lastTile) {
+                addToTile(key, record);
+                lastTile = key;
+                // skip to the last cell within the tile
+                back += Math.max(0, cellsLeftInTile(x, y, direction, back) - 1);
+            }
+        }
+    }
+
+    // the cells from the given one back to the edge of its tile, including it
+    private static long cellsLeftInTile(int x, int y, int direction, long back) {
+        var dx = PackedRobot.dx(direction);
+        var dy = PackedRobot.dy(direction);
+        var mask = (1 << TILE_SHIFT) - 1;
+
+        if (dx > 0) {
+            return ((x - back) & mask) + 1;
+        } else if (dx < 0) {
+            return mask - ((x + back) & mask) + 1;
+        } else if (dy > 0) {
+            return ((y - back) & mask) + 1;
+        }
+
+        return mask - ((y + back) & mask) + 1;
+    }
+
+    private void addToTile(long key, int record) {
+        var index = indexOf(tileKeys, key);
+
+        if (tileKeys[index] == EMPTY) {
+            tileKeys[index] = key;
+            tileRecords[index] = new int[4];
+
+            if (++tiles * 2 > tileKeys.length) {
+                growTiles();
+                index = indexOf(tileKeys, key);
+            }
+        }
+
+        var count = tileRecordCounts[index];
+
+        if (count == tileRecords[index].length) {
+            tileRecords[index] = Arrays.copyOf(tileRecords[index], count * 2);
+        }
+
+        tileRecords[index][count] = record;
+        tileRecordCounts[index] = count + 1;
+    }
+
+    private int robotSlot(long id) {
+        if (!enabled) {
+            return -1;
+        }
+
+        var index = indexOf(robotIds, id);
+        return robotIds[index] == EMPTY ? -1 : robotSlots[index];
+    }
+
+    private int robotSlotOrAdd(long id) {
+        var index = indexOf(robotIds, id);
+
+        if (robotIds[index] != EMPTY) {
+            return robotSlots[index];
+        }
+
+        var slot = robots++;
+        robotIds[index] = id;
+        robotSlots[index] = slot;
+
+        if (slot == ids.length) {
+            var capacity = Math.max(16, slot * 2);
+            ids = Arrays.copyOf(ids, capacity);
+            robotRecords = Arrays.copyOf(robotRecords, capacity);
+            robotRecordCounts = Arrays.copyOf(robotRecordCounts, capacity);
+        }
+
+        ids[slot] = id;
+        robotRecords[slot] = new int[4];
+
+        if (robots * 2 > robotIds.length) {
+            growRobots();
+        }
+
+        return slot;
+    }
+
+    private void growRobots() {
+        var oldIds = robotIds;
+        var oldSlots = robotSlots;
+
+        robotIds = newKeys(oldIds.length * 2);
+        robotSlots = new int[oldIds.length * 2];
+
+        for (var i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != EMPTY) {
+                var index = indexOf(robotIds, oldIds[i]);
+                robotIds[index] = oldIds[i];
+                robotSlots[index] = oldSlots[i];
+            }
+        }
+    }
+
+    private void growTiles() {
+        var oldKeys = tileKeys;
+        var oldRecords = tileRecords;
+        var oldCounts = tileRecordCounts;
+
+        tileKeys = newKeys(oldKeys.length * 2);
+        tileRecords = new int[oldKeys.length * 2][];
+        tileRecordCounts = new int[oldKeys.length * 2];
+
+        for (var i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                var index = indexOf(tileKeys, oldKeys[i]);
+                tileKeys[index] = oldKeys[i];
+                tileRecords[index] = oldRecords[i];
+                tileRecordCounts[index] = oldCounts[i];
+            }
+        }
+    }
+
+    private static long[] newKeys(int capacity) {
+        var keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        return keys;
+    }
+
+    // linear probing, the table is never full so it always ends on the key or on a free slot
+    private static int indexOf(long[] keys, long key) {
+        var mask = keys.length - 1;
+        var hash = key * 0x9E37_79B9_7F4A_7C15L;
+        var index = (int) (hash ^ hash >>> 32) & mask;
+
+        while (keys[index] != key && keys[index] != EMPTY) {
+            index = (index + 1) & mask;
+        }
+
+        return index;
+    }
+
+    private static long tileKey(int x, int y) {
+        return (long) (x >>> TILE_SHIFT) << 32 | y >>> TILE_SHIFT;
+    }
+
+    private int x(int record) {
+        return chunks[record / CHUNK_RECORDS].getInt(X + 4 * (record % CHUNK_RECORDS));
+    }
+
+    private int y(int record) {
+        return chunks[record / CHUNK_RECORDS].getInt(Y + 4 * (record % CHUNK_RECORDS));
+    }
+
+    private int distance(int record) {
+        return chunks[record / CHUNK_RECORDS].getInt(DISTANCE + 4 * (record % CHUNK_RECORDS));
+    }
+
+    private long step(int record) {
+        return chunks[record / CHUNK_RECORDS].getLong(STEP + 8 * (record % CHUNK_RECORDS));
+    }
+
+    private int robot(int record) {
+        return chunks[record / CHUNK_RECORDS].getInt(ROBOT + 4 * (record % CHUNK_RECORDS));
+    }
+
+    // the direction in the low two bits, PLACED above them
+    private int direction(int record) {
+        return chunks[record / CHUNK_RECORDS].get(DIRECTION + record % CHUNK_RECORDS);
+    }
+}
@@ -0,0 +1,116 @@
+package application;
+
+import io.afaruqi.gogobot.application.CommandQueue;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CommandQueueTest {
+    @Test
+    void should_take_every_line_of_every_producer_in_the_order_it_was_offered() throws Exception {
+        var queue = new CommandQueue(64, CommandQueue.Backpressure.BLOCK);
+        var producers = 4;
+        var linesPerProducer = 20_000;
+
+        try (var executor = Executors.newFixedThreadPool(producers)) {
+            var futures = new ArrayList<Future<?>>();
+
+            for (var p = 0; p < producers; p++) {
+                var producer = p;
+                futures.add(executor.submit(() -> {
+                    for (var i = 0; i < linesPerProducer; i++) {
+                        var line = bytes(producer + ":" + i);
+                        assertThat(queue.offer(line, 0, line.length)).isEqualTo(CommandQueue.ACCEPTED);
+                    }
+                }));
+            }
+
+            var next = new int[producers];
+            var batch = new CommandQueue.Batch(100);
+            var taken = 0;
+
+            while (taken < producers * linesPerProducer && queue.take(batch)) {
+                for (var i = 0; i < batch.size(); i++) {
+                    var line = new String(batch.bytes(), batch.from(i), batch.to(i) - batch.from(i), StandardCharsets.UTF_8);
+                    var separator = line.indexOf(':');
+                    var producer = Integer.parseInt(line.substring(0, separator));
+
+                    assertThat(Integer.parseInt(line.substring(separator + 1))).isEqualTo(next[producer]++);
+                }
+
+                assertThat(batch.size()).isBetween(1, 100);
+                taken += batch.size();
+            }
+
+            assertThat(next).containsOnly(linesPerProducer);
+
+            for (var future : futures) {
+                future.get();
+            }
+        }
+
+        assertThat(queue.depth()).isZero();
+        assertThat(queue.dump()).contains("Queue depth: 0 (max ", " of 64)", "Queued lines: 80000 accepted, 0 dropped, 0 rejected");
+    }
+
+    @Test
+    void should_drop_the_oldest_lines_or_reject_new_ones_when_full() {
+        var dropping = new CommandQueue(3, CommandQueue.Backpressure.DROP_OLDEST);
+        var rejecting = new CommandQueue(4, CommandQueue.Backpressure.REJECT);
+        var dropped = new ArrayList<Integer>();
+        var rejected = new ArrayList<Integer>();
+
+        for (var i = 0; i < 10; i++) {
+            var line = bytes("MOVE " + i);
+            dropped.add(dropping.offer(line, 0, line.length));
+            rejected.add(rejecting.offer(line, 0, line.length));
+        }
+
+        // a capacity of 3 is rounded up to 4
+        assertThat(dropped).containsExactly(0, 0, 0, 0, 1, 1, 1, 1, 1, 1);
+        assertThat(rejected).containsExactly(0, 0, 0, 0, 2, 2, 2, 2, 2, 2);
+        assertThat(lines(dropping)).isEqualTo("MOVE 6,MOVE 7,MOVE 8,MOVE 9");
+        assertThat(lines(rejecting)).isEqualTo("MOVE 0,MOVE 1,MOVE 2,MOVE 3");
+        assertThat(dropping.dropped()).isEqualTo(6);
+        assertThat(rejecting.rejected()).isEqualTo(6);
+        assertThat(rejecting.dump()).contains("Queued lines: 4 accepted, 0 dropped, 6 rejected", "Queue wait (ns): p50 < ");
+        assertThatThrownBy(() -> new CommandQueue(0, CommandQueue.Backpressure.BLOCK))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void should_hand_out_the_queued_lines_after_it_is_closed() {
+        var queue = new CommandQueue(8, CommandQueue.Backpressure.BLOCK);
+        var line = bytes("REPORT");
+
+        queue.offer(line, 0, line.length);
+        queue.close();
+
+        assertThat(queue.offer(line, 0, line.length)).isEqualTo(CommandQueue.CLOSED);
+        assertThat(lines(queue)).isEqualTo("REPORT");
+        assertThat(queue.take(new CommandQueue.Batch(8))).isFalse();
+    }
+
+    private static String lines(CommandQueue queue) {
+        var batch = new CommandQueue.Batch(16);
+        var lines = new ArrayList<String>();
+
+        queue.take(batch);
+
+        for (var i = 0; i < batch.size(); i++) {
+            lines.add(new String(batch.bytes(), batch.from(i), batch.to(i) - batch.from(i), StandardCharsets.UTF_8));
+        }
+
+        return String.join(",", lines);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,185 @@
+package domain.fleet;
+
+import io.afaruqi.gogobot.domain.common.Coordinate;
+import io.afaruqi.gogobot.domain.fleet.FleetCommands;
+import io.afaruqi.gogobot.domain.fleet.FleetService;
+import io.afaruqi.gogobot.domain.plane.OccupancyIndex;
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+import io.afaruqi.gogobot.domain.robot.PackedRobot;
+import io.afaruqi.gogobot.domain.robot.Robot;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import io.afaruqi.gogobot.domain.robot.Trajectories;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FleetServiceTest {
+    private final PlaneService planeService = PlaneService.initDefault();
+    private final RobotService robotService = new RobotService(planeService);
+
+    @Test
+    void should_execute_the_commands_of_every_robot_independently() {
+        var commands = new FleetCommands(16);
+        commands.addPlace(1, 0, 0, FaceDirection.NORTH);
+        commands.addPlace(2, 5, 5, FaceDirection.EAST);
+        commands.add(FleetCommands.MOVE, 1);
+        commands.add(FleetCommands.MOVE, 2);
+        commands.add(FleetCommands.RIGHT, 1);
+        commands.add(FleetCommands.REPORT, 1);
+        commands.add(FleetCommands.REPORT, 2);
+        commands.add(FleetCommands.MOVE, 3);
+        commands.addPlace(3, 6, 0, FaceDirection.SOUTH);
+
+        try (var fleetService = new FleetService(robotService, 4)) {
+            fleetService.execute(commands);
+
+            assertThat(fleetService.size()).isEqualTo(2);
+        }
+
+        assertThat(commands.status(3)).isEqualTo(FleetCommands.CANNOT_MOVE);
+        assertThat(PackedRobot.toRobot(commands.robot(5)))
+            .isEqualTo(new Robot(new Coordinate(0, 1), FaceDirection.EAST));
+        assertThat(PackedRobot.x(commands.robot(6))).isEqualTo(5);
+        assertThat(commands.status(7)).isEqualTo(FleetCommands.NOT_PLACED);
+        assertThat(commands.status(8)).isEqualTo(FleetCommands.NOT_WITHIN_PLANE);
+    }
+
+    @Test
+    void should_not_place_or_move_robots_onto_each_other_with_an_occupancy_index() {
+        var occupancy = OccupancyIndex.forPlane(planeService.getPlane());
+        var commands = new FleetCommands(16);
+        commands.addPlace(1, 0, 0, FaceDirection.NORTH);
+        commands.addPlace(2, 0, 0, FaceDirection.EAST);
+        commands.addPlace(2, 0, 1, FaceDirection.SOUTH);
+        commands.add(FleetCommands.MOVE, 1);
+        commands.add(FleetCommands.MOVE, 2);
+        commands.addPlace(2, 0, 1, FaceDirection.EAST);
+        commands.addPlace(1, 1, 0, FaceDirection.WEST);
+        commands.add(FleetCommands.MOVE, 2);
+        commands.add(FleetCommands.MOVE, 1);
+        commands.add(FleetCommands.REPORT, 1);
+
+        // one stripe, as robots of different stripes racing for a cell get it in any order
+        try (var fleetService = new FleetService(new RobotService(planeService, occupancy), 1)) {
+            fleetService.execute(commands);
+        }
+
+        assertThat(commands.status(1)).isEqualTo(FleetCommands.OCCUPIED);
+        assertThat(commands.status(3)).isEqualTo(FleetCommands.CANNOT_MOVE);
+        assertThat(commands.status(4)).isEqualTo(FleetCommands.CANNOT_MOVE);
+        // robot 2 turns on its own cell, robot 1 leaves its cell, which robot 1 can then move back to
+        assertThat(commands.status(5)).isEqualTo(FleetCommands.OK);
+        assertThat(commands.status(6)).isEqualTo(FleetCommands.OK);
+        assertThat(commands.status(7)).isEqualTo(FleetCommands.OK);
+        assertThat(commands.status(8)).isEqualTo(FleetCommands.OK);
+        assertThat(PackedRobot.toRobot(commands.robot(9)))
+            .isEqualTo(new Robot(new Coordinate(0, 0), FaceDirection.WEST));
+        assertThat(occupancy.isOccupied(0, 0)).isTrue();
+        assertThat(occupancy.isOccupied(0, 1)).isFalse();
+        assertThat(occupancy.isOccupied(1, 0)).isFalse();
+        assertThat(occupancy.isOccupied(1, 1)).isTrue();
+    }
+
+    @Test
+    void should_never_put_two_robots_on_one_cell_whatever_the_parallelism() {
+        var occupancy = OccupancyIndex.forPlane(planeService.getPlane());
+        var robots = new HashMap<Long, Long>();
+
+        try (var fleetService = new FleetService(new RobotService(planeService, occupancy), 8)) {
+            for (var commands : randomBatches()) {
+                fleetService.execute(commands);
+
+                for (var i = 0; i < commands.size(); i++) {
+                    // the robot after every command but a rejected PLACE or a command to a robot never placed
+                    if (commands.status(i) == FleetCommands.OK || commands.status(i) == FleetCommands.CANNOT_MOVE) {
+                        robots.put(commands.id(i), commands.robot(i));
+                    }
+                }
+            }
+        }
+
+        var cells = robots.values().stream()
+            .map(robot -> new Coordinate(PackedRobot.x(robot), PackedRobot.y(robot)))
+            .toList();
+
+        assertThat(cells).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void should_record_the_trajectory_of_every_robot() {
+        var trajectories = new Trajectories(false);
+        var commands = new FleetCommands(16);
+        commands.addPlace(1, 0, 0, FaceDirection.NORTH);
+        commands.addPlace(2, 1, 1, FaceDirection.WEST);
+        commands.add(FleetCommands.MOVE, 1);
+        commands.add(FleetCommands.RIGHT, 1);
+        commands.add(FleetCommands.MOVE, 1);
+        commands.add(FleetCommands.MOVE, 2);
+        commands.add(FleetCommands.MOVE, 2);
+
+        try (var fleetService = new FleetService(new RobotService(planeService, OccupancyIndex.NONE, trajectories), 4)) {
+            fleetService.execute(commands);
+        }
+
+        assertThat(trajectories.pose(1, 2)).isEqualTo(PackedRobot.pack(0, 1, FaceDirection.EAST));
+        assertThat(trajectories.steps(2)).isEqualTo(2);
+        assertThat(trajectories.visits(1, 1)).containsExactly(
+            new Trajectories.Visit(1, 3),
+            new Trajectories.Visit(2, 0)
+        );
+    }
+
+    @Test
+    void should_have_the_same_outcome_for_any_parallelism() {
+        var sequential = execute(randomBatches(), 1);
+
+        assertThat(execute(randomBatches(), 2)).isEqualTo(sequential);
+        assertThat(execute(randomBatches(), 8)).isEqualTo(sequential);
+    }
+
+    private List<Long> execute(List<FleetCommands> batches, int parallelism) {
+        var outcome = new ArrayList<Long>();
+
+        try (var fleetService = new FleetService(robotService, parallelism)) {
+            for (var commands : batches) {
+                fleetService.execute(commands);
+
+                for (var i = 0; i < commands.size(); i++) {
+                    outcome.add(commands.robot(i) << 2 | commands.status(i));
+                }
+            }
+        }
+
+        return outcome;
+    }
+
+    private static List<FleetCommands> randomBatches() {
+        var random = new Random(42);
+        var batches = new ArrayList<FleetCommands>();
+
+        for (var batch = 0; batch < 5; batch++) {
+            var commands = new FleetCommands(10_000);
+
+            for (var i = 0; i < 10_000; i++) {
+                var id = random.nextInt(1_000);
+                var operation = random.nextInt(6);
+
+                if (operation == FleetCommands.PLACE || operation == FleetCommands.NONE) {
+                    commands.addPlace(id, random.nextInt(7), random.nextInt(7), FaceDirection.values()[random.nextInt(4)]);
+                } else {
+                    commands.add(operation, id);
+                }
+            }
+
+            batches.add(commands);
+        }
+
+        return batches;
+    }
+}
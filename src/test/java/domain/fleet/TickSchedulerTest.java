@@ -0,0 +1,136 @@
+package domain.fleet;
+
+import io.afaruqi.gogobot.domain.fleet.FleetCommands;
+import io.afaruqi.gogobot.domain.fleet.TickScheduler;
+import io.afaruqi.gogobot.domain.plane.OccupancyIndex;
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+import io.afaruqi.gogobot.domain.robot.PackedRobot;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import io.afaruqi.gogobot.domain.robot.RobotStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TickSchedulerTest {
+    private static final byte[] MOVE = {FleetCommands.MOVE};
+
+    private final PlaneService planeService = PlaneService.initDefault();
+
+    @Test
+    void should_give_a_cell_wanted_by_several_robots_to_the_lowest_id() {
+        try (var scheduler = scheduler(planeService, 4)) {
+            scheduler.place(5, 0, 1, FaceDirection.EAST);
+            scheduler.place(3, 2, 1, FaceDirection.WEST);
+            scheduler.program(5, MOVE);
+            scheduler.program(3, MOVE);
+
+            scheduler.run(1);
+
+            assertThat(scheduler.robot(3)).isEqualTo(PackedRobot.pack(1, 1, FaceDirection.WEST));
+            assertThat(scheduler.robot(5)).isEqualTo(PackedRobot.pack(0, 1, FaceDirection.EAST));
+            assertThat(scheduler.rejectedMoves()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void should_only_move_robots_into_cells_that_were_free_at_the_start_of_the_tick() {
+        try (var scheduler = scheduler(planeService, 4)) {
+            // a queue, and two robots that would swap cells
+            scheduler.place(1, 0, 0, FaceDirection.NORTH);
+            scheduler.place(2, 0, 1, FaceDirection.NORTH);
+            scheduler.place(3, 2, 0, FaceDirection.EAST);
+            scheduler.place(4, 3, 0, FaceDirection.WEST);
+
+            for (var id = 1; id <= 4; id++) {
+                scheduler.program(id, MOVE);
+            }
+
+            scheduler.run(1);
+
+            assertThat(PackedRobot.y(scheduler.robot(1))).isEqualTo(0);
+            assertThat(PackedRobot.y(scheduler.robot(2))).isEqualTo(2);
+            assertThat(PackedRobot.x(scheduler.robot(3))).isEqualTo(2);
+            assertThat(PackedRobot.x(scheduler.robot(4))).isEqualTo(3);
+
+            scheduler.run(1);
+
+            assertThat(PackedRobot.y(scheduler.robot(1))).isEqualTo(1);
+            assertThat(PackedRobot.y(scheduler.robot(2))).isEqualTo(3);
+            assertThat(scheduler.ticks()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void should_repeat_the_program_of_every_robot() {
+        try (var scheduler = scheduler(planeService, 1)) {
+            scheduler.place(1, 0, 0, FaceDirection.NORTH);
+            scheduler.program(1, new byte[]{FleetCommands.MOVE, FleetCommands.RIGHT, FleetCommands.NONE});
+
+            scheduler.run(4);
+
+            assertThat(scheduler.robot(1)).isEqualTo(PackedRobot.pack(1, 1, FaceDirection.EAST));
+            assertThat(scheduler.program(2, MOVE)).isEqualTo(RobotStatus.NOT_PLACED);
+            assertThat(scheduler.place(2, 1, 1, FaceDirection.NORTH)).isEqualTo(RobotStatus.OCCUPIED);
+        }
+    }
+
+    @Test
+    void should_have_the_same_outcome_for_any_parallelism() {
+        var sequential = simulate(1);
+
+        assertThat(simulate(2)).isEqualTo(sequential);
+        assertThat(simulate(8)).isEqualTo(sequential);
+    }
+
+    @Test
+    void should_not_schedule_robots_without_an_occupancy_index() {
+        assertThatThrownBy(() -> new TickScheduler(new RobotService(planeService), 2))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static TickScheduler scheduler(PlaneService planeService, int parallelism) {
+        var occupancy = OccupancyIndex.forPlane(planeService.getPlane());
+        return new TickScheduler(new RobotService(planeService, occupancy), parallelism);
+    }
+
+    // a crowded plane with obstacles, so robots keep running into each other
+    private static List<Long> simulate(int parallelism) {
+        var planeService = PlaneService.init(99, 99);
+        var random = new Random(42);
+
+        for (var i = 0; i < 500; i++) {
+            planeService.addObstacle(random.nextInt(100), random.nextInt(100));
+        }
+
+        var outcome = new ArrayList<Long>();
+
+        try (var scheduler = scheduler(planeService, parallelism)) {
+            for (var id = 0; id < 5_000; id++) {
+                var program = new byte[1 + random.nextInt(8)];
+
+                for (var i = 0; i < program.length; i++) {
+                    program[i] = (byte) (random.nextInt(4) == 0 ? FleetCommands.LEFT : FleetCommands.MOVE);
+                }
+
+                scheduler.place(id, random.nextInt(100), random.nextInt(100), FaceDirection.values()[random.nextInt(4)]);
+                scheduler.program(id, program);
+            }
+
+            scheduler.run(100);
+
+            for (var id = 0; id < 5_000; id++) {
+                outcome.add(scheduler.program(id, new byte[0]) == RobotStatus.OK ? scheduler.robot(id) : -1L);
+            }
+
+            outcome.add(scheduler.rejectedMoves());
+        }
+
+        return outcome;
+    }
+}
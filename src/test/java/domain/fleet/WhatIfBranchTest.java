@@ -0,0 +1,181 @@
+package domain.fleet;
+
+import io.afaruqi.gogobot.domain.fleet.WhatIfBranch;
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+import io.afaruqi.gogobot.domain.robot.PackedRobot;
+import io.afaruqi.gogobot.domain.robot.RobotPath;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import io.afaruqi.gogobot.domain.robot.RobotStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class WhatIfBranchTest {
+    private final PlaneService planeService = PlaneService.initDefault();
+    private final RobotService robotService = new RobotService(planeService);
+
+    @Test
+    void should_fork_without_changing_the_branch_it_was_forked_from() {
+        var branch = new WhatIfBranch(robotService);
+        branch.place(1, 0, 0, FaceDirection.NORTH);
+        branch.move(1);
+        branch.move(1);
+
+        var fork = branch.fork();
+        var earlyFork = branch.fork(2);
+
+        fork.right(1);
+        fork.move(1);
+        branch.move(1);
+
+        assertThat(branch.robot(1)).isEqualTo(PackedRobot.pack(0, 3, FaceDirection.NORTH));
+        assertThat(fork.robot(1)).isEqualTo(PackedRobot.pack(1, 2, FaceDirection.EAST));
+        assertThat(earlyFork.robot(1)).isEqualTo(PackedRobot.pack(0, 1, FaceDirection.NORTH));
+        assertThat(earlyFork.step()).isEqualTo(2);
+        assertThat(branch.fork(0).robots()).isZero();
+        assertThatThrownBy(() -> branch.fork(5)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void should_block_moves_only_on_the_branch_that_added_the_obstacle() {
+        planeService.addObstacle(2, 2);
+
+        var branch = new WhatIfBranch(robotService);
+        branch.place(1, 0, 2, FaceDirection.EAST);
+
+        var blocked = branch.fork();
+        blocked.addObstacle(1, 2);
+
+        assertThat(blocked.move(1)).isEqualTo(RobotStatus.CANNOT_MOVE);
+        assertThat(blocked.place(2, 1, 2, FaceDirection.NORTH)).isEqualTo(RobotStatus.BLOCKED);
+        assertThat(blocked.addObstacle(9, 9)).isEqualTo(RobotStatus.NOT_WITHIN_PLANE);
+        assertThat(branch.move(1)).isEqualTo(RobotStatus.OK);
+        assertThat(branch.move(1)).isEqualTo(RobotStatus.CANNOT_MOVE);
+        assertThat(branch.isBlocked(1, 2)).isFalse();
+        assertThat(blocked.isBlocked(1, 2)).isTrue();
+        assertThat(blocked.isBlocked(2, 2)).isTrue();
+        assertThat(branch.move(7)).isEqualTo(RobotStatus.NOT_PLACED);
+    }
+
+    @Test
+    void should_fork_at_any_of_many_steps_and_forget_the_steps_before_one() {
+        var branch = new WhatIfBranch(new RobotService(PlaneService.init(999, 999)));
+        branch.place(1, 0, 0, FaceDirection.NORTH);
+
+        // more steps than fit into two levels of the step trie
+        for (var i = 0; i < 40_000; i++) {
+            branch.right(1);
+        }
+
+        var random = new SplittableRandom(7);
+
+        for (var i = 0; i < 1_000; i++) {
+            var step = 1 + random.nextInt(branch.step());
+            var fork = branch.fork(step);
+
+            assertThat(fork.step()).isEqualTo(step);
+            assertThat(fork.robot(1)).isEqualTo(rightTurns(PackedRobot.pack(0, 0, FaceDirection.NORTH), step - 1));
+        }
+
+        var early = branch.fork(2);
+        early.move(1);
+
+        branch.forgetBefore(30_000);
+
+        assertThat(branch.fork(30_001).robot(1)).isEqualTo(branch.fork(30_005).robot(1));
+        assertThat(branch.fork().fork(30_000).step()).isEqualTo(30_000);
+        assertThatThrownBy(() -> branch.fork(29_999)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> branch.fork().forgetBefore(10)).isInstanceOf(IllegalArgumentException.class);
+        // a branch forked before keeps its own steps
+        assertThat(early.fork(1).robot(1)).isEqualTo(PackedRobot.pack(0, 0, FaceDirection.NORTH));
+        assertThat(early.robot(1)).isEqualTo(PackedRobot.pack(1, 0, FaceDirection.EAST));
+    }
+
+    @Test
+    void should_keep_every_version_of_a_large_fleet() {
+        var branch = new WhatIfBranch(new RobotService(PlaneService.init(999, 999)));
+        var random = new SplittableRandom(42);
+        var expected = new HashMap<Long, Long>();
+
+        for (var i = 0; i < 100_000; i++) {
+            // sparse IDs, so the trie goes a few levels deep
+            var id = random.nextLong(1L << 40);
+            var x = random.nextInt(1000);
+            var y = random.nextInt(1000);
+
+            branch.place(id, x, y, FaceDirection.SOUTH);
+            expected.put(id, PackedRobot.pack(x, y, FaceDirection.SOUTH));
+        }
+
+        var before = branch.fork();
+
+        for (var id : expected.keySet()) {
+            branch.left(id);
+        }
+
+        assertThat(branch.robots()).isEqualTo(expected.size());
+        assertThat(before.robots()).isEqualTo(expected.size());
+
+        for (var robot : expected.entrySet()) {
+            assertThat(before.robot(robot.getKey())).isEqualTo(robot.getValue());
+            assertThat(branch.robot(robot.getKey())).isEqualTo(PackedRobot.left(robot.getValue()));
+        }
+
+        assertThat(branch.robot(1L << 41)).isEqualTo(WhatIfBranch.NOT_PLACED);
+    }
+
+    @Test
+    void should_run_branches_on_threads_of_their_own_and_report_their_differences() throws Exception {
+        var base = new WhatIfBranch(robotService);
+        base.place(1, 1, 1, FaceDirection.NORTH);
+        base.place(2, 3, 3, FaceDirection.WEST);
+        base.place(3, 0, 0, FaceDirection.EAST);
+
+        var suffixes = List.of(
+            new byte[]{RobotPath.MOVE, RobotPath.MOVE},
+            new byte[]{RobotPath.RIGHT, RobotPath.MOVE, RobotPath.MOVE, RobotPath.MOVE, RobotPath.MOVE, RobotPath.MOVE},
+            new byte[]{RobotPath.LEFT, RobotPath.LEFT}
+        );
+        var branches = new ArrayList<WhatIfBranch>();
+        var tasks = new ArrayList<Callable<Long>>();
+
+        for (var suffix : suffixes) {
+            var branch = base.fork();
+            branches.add(branch);
+            tasks.add(() -> {
+                branch.move(2);
+                return branch.run(1, suffix);
+            });
+        }
+
+        try (var executor = Executors.newFixedThreadPool(suffixes.size())) {
+            var rejectedMoves = new ArrayList<Long>();
+
+            for (var future : executor.invokeAll(tasks)) {
+                rejectedMoves.add(future.get());
+            }
+
+            assertThat(rejectedMoves).containsExactly(0L, 1L, 0L);
+        }
+
+        assertThat(WhatIfBranch.diff(branches)).isEqualTo("Robot 1: 1,3,NORTH | 5,1,EAST | 1,1,SOUTH\n");
+        assertThat(WhatIfBranch.diff(List.of(base, base.fork()))).isEmpty();
+    }
+
+    private static long rightTurns(long robot, int turns) {
+        for (var i = 0; i < turns % 4; i++) {
+            robot = PackedRobot.right(robot);
+        }
+
+        return robot;
+    }
+}
@@ -0,0 +1,94 @@
+package domain.plane;
+
+import io.afaruqi.gogobot.domain.plane.Heatmap;
+import io.afaruqi.gogobot.domain.plane.OccupancyIndex;
+import io.afaruqi.gogobot.domain.plane.Plane;
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+import io.afaruqi.gogobot.domain.robot.PackedRobot;
+import io.afaruqi.gogobot.domain.robot.RobotPath;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import io.afaruqi.gogobot.domain.robot.Trajectories;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class HeatmapTest {
+    @Test
+    void should_count_every_placement_and_move() throws Exception {
+        var planeService = PlaneService.init(4, 4);
+        var heatmap = Heatmap.forPlane(planeService.getPlane());
+        var robotService = new RobotService(planeService, OccupancyIndex.NONE, Trajectories.DISABLED, heatmap);
+
+        var robot = robotService.place(0, 0, FaceDirection.NORTH);
+        robot = robotService.move(robot, 10);
+        robot = robotService.move(robotService.right(robot));
+        robotService.run(robot, robotService.macro(new byte[]{RobotPath.RIGHT, RobotPath.MOVE}), 4);
+
+        // up the west edge, one step east, then a square back to (1, 4)
+        assertThat(heatmap.visits(0, 0)).isEqualTo(1);
+        assertThat(heatmap.visits(0, 2)).isEqualTo(1);
+        assertThat(heatmap.visits(0, 3)).isEqualTo(2);
+        assertThat(heatmap.visits(0, 4)).isEqualTo(2);
+        assertThat(heatmap.visits(1, 4)).isEqualTo(2);
+        assertThat(heatmap.visits(1, 3)).isEqualTo(1);
+        assertThat(heatmap.visits(2, 2)).isZero();
+    }
+
+    @Test
+    void should_read_back_what_it_wrote() throws IOException {
+        var heatmap = Heatmap.forPlane(new Plane(999, 99));
+
+        heatmap.visit(0, 0);
+        heatmap.visitRun(10, 50, 1, 0, 300);
+        heatmap.visitRun(10, 50, 1, 0, 300);
+        heatmap.visit(999, 99);
+
+        var output = new ByteArrayOutputStream();
+        heatmap.writeBinary(output);
+        var read = Heatmap.readBinary(new ByteArrayInputStream(output.toByteArray()));
+
+        assertThat(output.size()).isLessThan(1_000);
+        assertThat(read.width()).isEqualTo(1000);
+        assertThat(read.height()).isEqualTo(100);
+        assertThat(read.visits(0, 0)).isEqualTo(1);
+        assertThat(read.visits(10, 50)).isZero();
+        assertThat(read.visits(310, 50)).isEqualTo(2);
+        assertThat(read.visits(311, 50)).isZero();
+        assertThat(read.visits(999, 99)).isEqualTo(1);
+    }
+
+    @Test
+    void should_write_a_pgm_image_north_up() throws IOException {
+        var heatmap = Heatmap.forPlane(new Plane(2, 1));
+
+        heatmap.visit(0, 1);
+
+        for (var i = 0; i < 3; i++) {
+            heatmap.visit(2, 0);
+        }
+
+        var output = new ByteArrayOutputStream();
+        heatmap.writePgm(output);
+        var image = output.toByteArray();
+        var header = "P5\n3 2\n255\n";
+
+        assertThat(new String(image, 0, header.length(), StandardCharsets.US_ASCII)).isEqualTo(header);
+        assertThat(Arrays.copyOfRange(image, header.length(), image.length))
+            .containsExactly(1, 0, 0, 0, 0, (byte) 255);
+    }
+
+    @Test
+    void should_only_cover_planes_up_to_its_limit() {
+        assertThatThrownBy(() -> Heatmap.forPlane(new Plane(Integer.MAX_VALUE, 0)))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(Heatmap.DISABLED.isEnabled()).isFalse();
+    }
+}
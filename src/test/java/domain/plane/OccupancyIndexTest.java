@@ -0,0 +1,123 @@
+package domain.plane;
+
+import io.afaruqi.gogobot.domain.plane.OccupancyIndex;
+import io.afaruqi.gogobot.domain.plane.Plane;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OccupancyIndexTest {
+    private static Stream<Plane> planes() {
+        // a dense index, and a sparse one for a plane too big to hold a bit per cell
+        return Stream.of(new Plane(99, 99), new Plane(Integer.MAX_VALUE, Integer.MAX_VALUE));
+    }
+
+    @ParameterizedTest
+    @MethodSource("planes")
+    void should_claim_a_cell_only_while_it_is_free(Plane plane) {
+        var occupancy = OccupancyIndex.forPlane(plane);
+
+        assertThat(occupancy.claim(3, 4)).isTrue();
+        assertThat(occupancy.claim(3, 4)).isFalse();
+        assertThat(occupancy.claim(4, 3)).isTrue();
+        assertThat(occupancy.isOccupied(3, 4)).isTrue();
+
+        occupancy.release(3, 4);
+
+        assertThat(occupancy.isOccupied(3, 4)).isFalse();
+        assertThat(occupancy.isOccupied(4, 3)).isTrue();
+        assertThat(occupancy.claim(3, 4)).isTrue();
+    }
+
+    @ParameterizedTest
+    @MethodSource("planes")
+    void should_hand_every_cell_to_exactly_one_of_the_racing_claimers(Plane plane) throws Exception {
+        var occupancy = OccupancyIndex.forPlane(plane);
+        var threads = 8;
+        var cells = 10_000;
+        var barrier = new CyclicBarrier(threads);
+
+        try (var executor = Executors.newFixedThreadPool(threads)) {
+            var claims = new ArrayList<Future<Integer>>();
+
+            for (var thread = 0; thread < threads; thread++) {
+                claims.add(executor.submit(() -> {
+                    barrier.await();
+                    var claimed = 0;
+
+                    for (var cell = 0; cell < cells; cell++) {
+                        if (occupancy.claim(cell % 100, cell / 100)) {
+                            claimed++;
+                        }
+                    }
+
+                    return claimed;
+                }));
+            }
+
+            var claimed = 0;
+
+            for (var claim : claims) {
+                claimed += claim.get();
+            }
+
+            assertThat(claimed).isEqualTo(cells);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("planes")
+    void should_keep_the_cells_of_concurrent_movers_apart(Plane plane) throws Exception {
+        var occupancy = OccupancyIndex.forPlane(plane);
+        var threads = 8;
+
+        try (var executor = Executors.newFixedThreadPool(threads)) {
+            var moves = new ArrayList<Future<?>>();
+
+            // every thread walks its robot up and down the same column, claiming before it releases
+            for (var thread = 0; thread < threads; thread++) {
+                var start = thread * 10;
+                assertThat(occupancy.claim(0, start)).isTrue();
+
+                moves.add(executor.submit(() -> {
+                    var y = start;
+                    var step = 1;
+
+                    for (var i = 0; i < 100_000; i++) {
+                        var next = y + step;
+
+                        if (next < 0 || next > 99) {
+                            step = -step;
+                        } else if (occupancy.claim(0, next)) {
+                            occupancy.release(0, y);
+                            y = next;
+                        } else {
+                            step = -step;
+                        }
+                    }
+                }));
+            }
+
+            for (var move : moves) {
+                move.get();
+            }
+        }
+
+        var occupied = 0;
+
+        for (var y = 0; y <= 99; y++) {
+            if (occupancy.isOccupied(0, y)) {
+                occupied++;
+            }
+        }
+
+        assertThat(occupied).isEqualTo(threads);
+    }
+}
@@ -4,12 +4,14 @@ import io.afaruqi.gogobot.domain.common.Coordinate;
 import io.afaruqi.gogobot.domain.plane.PlaneService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class PlaneServiceTest {
     PlaneService planeService;
@@ -51,4 +53,64 @@ public class PlaneServiceTest {
     void should_return_false_when_given_coordinate_is_outside_of_plane_boundary(Coordinate coordinate) {
         assertThat(planeService.isWithinPlane(coordinate)).isFalse();
     }
+
+    @Test
+    void should_accept_coordinates_up_to_the_configured_axes() {
+        var largePlaneService = PlaneService.init(1_000_000, 20);
+
+        assertThat(largePlaneService.isWithinPlane(1_000_000, 20)).isTrue();
+        assertThat(largePlaneService.isWithinPlane(1_000_001, 20)).isFalse();
+        assertThat(largePlaneService.isWithinPlane(0, 21)).isFalse();
+    }
+
+    @Test
+    void should_reject_a_step_past_the_edge_of_an_unbounded_plane() {
+        var unboundedPlaneService = PlaneService.initUnbounded();
+
+        assertThat(unboundedPlaneService.isWithinPlane(Integer.MAX_VALUE, Integer.MAX_VALUE)).isTrue();
+        assertThat(unboundedPlaneService.isWithinPlane(Integer.MAX_VALUE + 1, 0)).isFalse();
+        assertThat(unboundedPlaneService.isWithinPlane(-1, 0)).isFalse();
+    }
+
+    @Test
+    void should_not_init_a_plane_with_negative_axes() {
+        assertThatThrownBy(() -> PlaneService.init(-1, 5))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void should_block_cells_with_obstacles() {
+        planeService.addObstacle(2, 3);
+        planeService.addObstacle(5, 5);
+
+        assertThat(planeService.isBlocked(2, 3)).isTrue();
+        assertThat(planeService.isBlocked(5, 5)).isTrue();
+        assertThat(planeService.isBlocked(3, 2)).isFalse();
+        assertThat(planeService.getObstacles().size()).isEqualTo(2);
+    }
+
+    @Test
+    void should_block_cells_of_a_huge_plane_without_allocating_the_whole_plane() {
+        var hugePlaneService = PlaneService.initUnbounded();
+
+        hugePlaneService.addObstacle(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        hugePlaneService.addObstacle(1_000_000, 64);
+
+        for (var i = 0; i < 1_000; i++) {
+            hugePlaneService.addObstacle(i * 100, i);
+        }
+
+        assertThat(hugePlaneService.isBlocked(Integer.MAX_VALUE, Integer.MAX_VALUE)).isTrue();
+        assertThat(hugePlaneService.isBlocked(1_000_000, 64)).isTrue();
+        assertThat(hugePlaneService.isBlocked(1_000_000, 63)).isFalse();
+        assertThat(hugePlaneService.isBlocked(99_900, 999)).isTrue();
+        assertThat(hugePlaneService.getObstacles().size()).isEqualTo(1_002);
+    }
+
+    @Test
+    void should_not_add_an_obstacle_outside_of_plane() {
+        assertThatThrownBy(() -> planeService.addObstacle(6, 0))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Obstacle 6,0 is not within [x=5, y=5]");
+    }
 }
@@ -0,0 +1,78 @@
+package domain.plane;
+
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.plane.Reachability;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ReachabilityTest {
+    @Test
+    void should_reach_the_free_cells_on_the_side_of_the_wall() {
+        var planeService = PlaneService.init(9, 9);
+
+        for (var y = 0; y <= 9; y++) {
+            planeService.addObstacle(4, y);
+        }
+
+        try (var reachability = new Reachability(planeService, 1)) {
+            var cells = reachability.from(1, 1);
+
+            assertThat(cells.count()).isEqualTo(40);
+            assertThat(cells.isReachable(3, 9)).isTrue();
+            assertThat(cells.isReachable(4, 5)).isFalse();
+            assertThat(cells.isReachable(5, 5)).isFalse();
+            assertThat(cells.isReachable(-1, 0)).isFalse();
+            assertThat(reachability.from(4, 0).count()).isZero();
+            assertThat(reachability.from(10, 0).count()).isZero();
+        }
+    }
+
+    @Test
+    void should_reach_every_cell_of_a_plane_without_obstacles() {
+        try (var reachability = new Reachability(PlaneService.initUnbounded(), 1)) {
+            var cells = reachability.from(7, 7);
+
+            assertThat(cells.count()).isEqualTo(1L << 62);
+            assertThat(cells.isReachable(Integer.MAX_VALUE, 0)).isTrue();
+        }
+    }
+
+    @Test
+    void should_find_the_same_cells_in_parallel() {
+        var planeService = PlaneService.init(2999, 2999);
+        var random = new SplittableRandom(42);
+
+        for (var i = 0; i < 2_000_000; i++) {
+            planeService.addObstacle(random.nextInt(3000), random.nextInt(3000));
+        }
+
+        try (var sequential = new Reachability(planeService, 1);
+             var parallel = new Reachability(planeService, 4)) {
+            var expected = sequential.from(1500, 1500);
+            var cells = parallel.from(1500, 1500);
+
+            assertThat(cells.count()).isEqualTo(expected.count()).isGreaterThan(1_000_000);
+
+            for (var i = 0; i < 100_000; i++) {
+                var x = random.nextInt(3000);
+                var y = random.nextInt(3000);
+
+                assertThat(cells.isReachable(x, y)).isEqualTo(expected.isReachable(x, y));
+            }
+        }
+    }
+
+    @Test
+    void should_not_search_a_plane_with_obstacles_beyond_its_limit() {
+        var planeService = PlaneService.initUnbounded();
+        planeService.addObstacle(0, 0);
+
+        try (var reachability = new Reachability(planeService, 1)) {
+            assertThatThrownBy(() -> reachability.from(1, 1)).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+}
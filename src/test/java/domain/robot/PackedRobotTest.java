@@ -0,0 +1,84 @@
+package domain.robot;
+
+import io.afaruqi.gogobot.domain.common.Coordinate;
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+import io.afaruqi.gogobot.domain.robot.PackedRobot;
+import io.afaruqi.gogobot.domain.robot.Robot;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.lang.management.ManagementFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PackedRobotTest {
+    @DisplayName("Pack and unpack a robot")
+    @ParameterizedTest(name = "{0}")
+    @EnumSource(FaceDirection.class)
+    void should_keep_coordinate_and_face_direction_when_packed(FaceDirection faceDirection) {
+        var robot = new Robot(new Coordinate(Integer.MAX_VALUE, 7), faceDirection);
+
+        var packedRobot = PackedRobot.of(robot);
+
+        assertThat(PackedRobot.x(packedRobot)).isEqualTo(Integer.MAX_VALUE);
+        assertThat(PackedRobot.y(packedRobot)).isEqualTo(7);
+        assertThat(PackedRobot.faceDirection(packedRobot)).isEqualTo(faceDirection);
+        assertThat(PackedRobot.toRobot(packedRobot)).isEqualTo(robot);
+    }
+
+    @DisplayName("Turns on a packed robot")
+    @ParameterizedTest(name = "{0}")
+    @EnumSource(FaceDirection.class)
+    void should_turn_the_same_way_as_the_robot_api(FaceDirection faceDirection) {
+        var robotService = new RobotService(PlaneService.initDefault());
+        var robot = new Robot(new Coordinate(3, 4), faceDirection);
+
+        assertThat(PackedRobot.toRobot(PackedRobot.left(PackedRobot.of(robot))))
+            .isEqualTo(robotService.left(robot));
+        assertThat(PackedRobot.toRobot(PackedRobot.right(PackedRobot.of(robot))))
+            .isEqualTo(robotService.right(robot));
+    }
+
+    @Test
+    void should_return_the_same_robot_when_it_cannot_move() {
+        var robotService = new RobotService(PlaneService.initDefault());
+        var robot = robotService.place(5, 0, FaceDirection.EAST);
+
+        assertThat(robotService.move(robot)).isEqualTo(robot);
+    }
+
+    @Test
+    void should_not_allocate_when_moving_and_turning() {
+        var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        var robotService = new RobotService(PlaneService.initDefault());
+        var robot = robotService.place(0, 0, FaceDirection.NORTH);
+
+        // warm up, so nothing is measured while the code is still interpreted
+        robot = runCommands(robotService, robot, 100_000);
+
+        var threadId = Thread.currentThread().threadId();
+        var allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        robot = runCommands(robotService, robot, 1_000_000);
+        var allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        // a single allocation per command would already be 16 MB
+        assertThat(allocated).isLessThan(1024);
+        assertThat(PlaneService.initDefault().isWithinPlane(PackedRobot.x(robot), PackedRobot.y(robot))).isTrue();
+    }
+
+    private static long runCommands(RobotService robotService, long robot, int count) {
+        for (var i = 0; i < count; i++) {
+            robot = switch (i % 7) {
+                case 0, 3 -> robotService.left(robot);
+                case 5 -> robotService.right(robot);
+                default -> robotService.move(robot);
+            };
+        }
+
+        return robot;
+    }
+}
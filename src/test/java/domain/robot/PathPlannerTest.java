@@ -0,0 +1,182 @@
+package domain.robot;
+
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+import io.afaruqi.gogobot.domain.robot.PackedRobot;
+import io.afaruqi.gogobot.domain.robot.RobotPath;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PathPlannerTest {
+    @Test
+    void should_find_the_shortest_path_in_closed_form_on_an_open_plane() {
+        assertShortestPaths(PlaneService.init(3, 3));
+    }
+
+    @Test
+    void should_find_the_shortest_path_around_obstacles() {
+        var planeService = PlaneService.init(4, 4);
+        planeService.addObstacle(1, 1);
+        planeService.addObstacle(1, 2);
+        planeService.addObstacle(1, 3);
+        planeService.addObstacle(3, 3);
+        planeService.addObstacle(3, 1);
+
+        assertShortestPaths(planeService);
+    }
+
+    @Test
+    void should_describe_the_path_as_runs_of_commands() {
+        var robotService = new RobotService(PlaneService.initDefault());
+
+        var path = robotService.pathTo(PackedRobot.pack(0, 0, FaceDirection.NORTH), 4, 3, FaceDirection.WEST);
+
+        assertThat(path.length()).isEqualTo(10);
+        assertThat(path).hasToString("RIGHT, MOVE x4, LEFT, MOVE x3, LEFT");
+    }
+
+    @Test
+    void should_not_find_a_path_to_a_blocked_or_walled_in_target() {
+        var planeService = PlaneService.initDefault();
+        planeService.addObstacle(4, 4);
+        planeService.addObstacle(4, 5);
+        planeService.addObstacle(5, 4);
+        var robotService = new RobotService(planeService);
+        var robot = PackedRobot.pack(0, 0, FaceDirection.NORTH);
+
+        assertThat(robotService.pathTo(robot, 4, 4, FaceDirection.NORTH)).isNull();
+        assertThat(robotService.pathTo(robot, 5, 5, FaceDirection.NORTH)).isNull();
+        assertThat(robotService.pathTo(robot, 6, 0, FaceDirection.NORTH)).isNull();
+        assertThat(robotService.pathTo(robot, 0, 0, FaceDirection.NORTH).runs()).isZero();
+    }
+
+    @Test
+    void should_tell_a_search_that_gave_up_from_a_target_that_cannot_be_reached() {
+        var planeService = PlaneService.init(100, 100);
+
+        for (var y = 0; y < 100; y++) {
+            planeService.addObstacle(50, y);
+        }
+
+        var robotService = new RobotService(planeService);
+        var robot = PackedRobot.pack(0, 0, FaceDirection.EAST);
+
+        assertThat(robotService.pathTo(robot, 100, 0, FaceDirection.EAST, 1_000)).isSameAs(RobotPath.SEARCH_LIMIT_REACHED);
+        assertThat(robotService.pathTo(robot, 100, 0, FaceDirection.EAST).length()).isEqualTo(100 + 100 + 100 + 4);
+
+        planeService.addObstacle(50, 100);
+
+        assertThat(robotService.pathTo(robot, 100, 0, FaceDirection.EAST)).isNull();
+    }
+
+    @Test
+    void should_plan_across_a_large_plane_in_milliseconds() {
+        var planeService = PlaneService.init(2_000, 1_000);
+
+        for (var y = 0; y < 100; y++) {
+            planeService.addObstacle(1_000, y);
+        }
+
+        var robotService = new RobotService(planeService);
+        var robot = PackedRobot.pack(0, 0, FaceDirection.EAST);
+
+        var startTime = System.nanoTime();
+        var path = robotService.pathTo(robot, 2_000, 0, FaceDirection.EAST);
+        var elapsedMillis = (System.nanoTime() - startTime) / 1_000_000;
+
+        // around the wall: up to y=100, across and down again
+        assertThat(path.length()).isEqualTo(2_000 + 100 + 100 + 4);
+        assertThat(execute(robotService, robot, path)).isEqualTo(PackedRobot.pack(2_000, 0, FaceDirection.EAST));
+        assertThat(elapsedMillis).isLessThan(1_000);
+    }
+
+    @Test
+    void should_plan_in_closed_form_on_an_unbounded_plane() {
+        var robotService = new RobotService(PlaneService.initUnbounded());
+        var robot = PackedRobot.pack(Integer.MAX_VALUE, 0, FaceDirection.SOUTH);
+
+        var path = robotService.pathTo(robot, 0, Integer.MAX_VALUE, FaceDirection.SOUTH);
+
+        assertThat(path).hasToString("RIGHT, MOVE x2147483647, RIGHT, MOVE x2147483647, RIGHT x2");
+        assertThat(path.length()).isEqualTo(2L * Integer.MAX_VALUE + 4);
+    }
+
+    // compares every planned path against a plain breadth-first search and checks that it really gets there
+    private static void assertShortestPaths(PlaneService planeService) {
+        var robotService = new RobotService(planeService);
+        var plane = planeService.getPlane();
+
+        for (var x = 0; x <= plane.xAxis(); x++) {
+            for (var y = 0; y <= plane.yAxis(); y++) {
+                for (var direction : FaceDirection.values()) {
+                    if (planeService.isBlocked(x, y)) {
+                        continue;
+                    }
+
+                    var robot = PackedRobot.pack(x, y, direction);
+                    var distances = breadthFirstSearch(robotService, robot);
+
+                    for (var target = 0; target < (plane.xAxis() + 1) * (plane.yAxis() + 1) * 4; target++) {
+                        var targetX = target / 4 % (plane.xAxis() + 1);
+                        var targetY = target / 4 / (plane.xAxis() + 1);
+                        var targetDirection = FaceDirection.values()[target % 4];
+                        var targetRobot = PackedRobot.pack(targetX, targetY, targetDirection);
+
+                        var path = robotService.pathTo(robot, targetX, targetY, targetDirection);
+
+                        if (!distances.containsKey(targetRobot)) {
+                            assertThat(path).isNull();
+                            continue;
+                        }
+
+                        assertThat(path.length()).isEqualTo(distances.get(targetRobot).longValue());
+                        assertThat(execute(robotService, robot, path)).isEqualTo(targetRobot);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Map<Long, Integer> breadthFirstSearch(RobotService robotService, long robot) {
+        var distances = new HashMap<Long, Integer>();
+        var queue = new ArrayDeque<Long>();
+        distances.put(robot, 0);
+        queue.add(robot);
+
+        while (!queue.isEmpty()) {
+            var state = queue.poll();
+
+            for (var next : new long[]{robotService.move(state), robotService.left(state), robotService.right(state)}) {
+                if (!distances.containsKey(next)) {
+                    distances.put(next, distances.get(state) + 1);
+                    queue.add(next);
+                }
+            }
+        }
+
+        return distances;
+    }
+
+    private static long execute(RobotService robotService, long robot, RobotPath path) {
+        for (var run = 0; run < path.runs(); run++) {
+            for (var i = 0L; i < path.count(run); i++) {
+                var next = switch (path.command(run)) {
+                    case RobotPath.LEFT -> robotService.left(robot);
+                    case RobotPath.RIGHT -> robotService.right(robot);
+                    default -> robotService.move(robot);
+                };
+
+                assertThat(next).isNotEqualTo(robot);
+                robot = next;
+            }
+        }
+
+        return robot;
+    }
+}
@@ -0,0 +1,134 @@
+package domain.robot;
+
+import io.afaruqi.gogobot.domain.plane.Plane;
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+import io.afaruqi.gogobot.domain.robot.MacroCache;
+import io.afaruqi.gogobot.domain.robot.PackedRobot;
+import io.afaruqi.gogobot.domain.robot.RobotMacro;
+import io.afaruqi.gogobot.domain.robot.RobotPath;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RobotMacroTest {
+    @ParameterizedTest(name = "plane {0} x {1}")
+    @CsvSource({"0, 0", "0, 5", "3, 1", "5, 5", "40, 7", "2147483647, 2147483647"})
+    void should_run_like_the_commands_one_by_one(int xAxis, int yAxis) {
+        var planeService = PlaneService.init(xAxis, yAxis);
+        var robotService = new RobotService(planeService);
+        var random = new SplittableRandom(xAxis * 31L + yAxis);
+
+        for (var trial = 0; trial < 300; trial++) {
+            var commands = new byte[1 + random.nextInt(12)];
+
+            for (var i = 0; i < commands.length; i++) {
+                // mostly moves
+                commands[i] = (byte) Math.max(random.nextInt(-2, 3), 0);
+            }
+
+            var robot = PackedRobot.pack(near(random, xAxis), near(random, yAxis), random.nextInt(4));
+            var times = random.nextInt(60);
+            var run = robotService.macro(commands).run(robot, times);
+            var expected = oneByOne(robotService, commands, robot, times);
+
+            assertThat(run).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void should_run_a_million_times_from_the_middle_of_a_huge_plane() {
+        var robotService = new RobotService(PlaneService.initUnbounded());
+        var patrol = robotService.macro(new byte[]{RobotPath.MOVE, RobotPath.MOVE, RobotPath.RIGHT, RobotPath.MOVE, RobotPath.LEFT});
+        var robot = PackedRobot.pack(1_000, 1_000, FaceDirection.NORTH);
+
+        assertThat(patrol.run(robot, 1_000_000))
+            .isEqualTo(new RobotMacro.Run(PackedRobot.pack(1_001_000, 2_001_000, FaceDirection.NORTH), 0));
+        assertThat(patrol.run(PackedRobot.pack(0, Integer.MAX_VALUE - 10, FaceDirection.NORTH), 1_000_000))
+            .isEqualTo(oneByOne(robotService, patrol.commands(), PackedRobot.pack(0, Integer.MAX_VALUE - 10, FaceDirection.NORTH), 1_000_000));
+    }
+
+    @Test
+    void should_run_the_commands_one_by_one_around_obstacles() {
+        var planeService = PlaneService.init(5, 5);
+        var robotService = new RobotService(planeService);
+        var square = robotService.macro(new byte[]{RobotPath.MOVE, RobotPath.MOVE, RobotPath.RIGHT});
+
+        planeService.addObstacle(1, 2);
+
+        // blocked going east, then stopped by the west edge
+        assertThat(robotService.run(PackedRobot.pack(0, 0, FaceDirection.NORTH), square, 4))
+            .isEqualTo(new RobotMacro.Run(PackedRobot.pack(0, 0, FaceDirection.NORTH), 4));
+        assertThat(robotService.run(PackedRobot.pack(1, 0, FaceDirection.NORTH), square, 1))
+            .isEqualTo(new RobotMacro.Run(PackedRobot.pack(1, 1, FaceDirection.EAST), 1));
+    }
+
+    @Test
+    void should_not_run_a_macro_compiled_for_another_plane() {
+        var robotService = new RobotService(PlaneService.init(5, 5));
+        var otherMacro = new RobotService(PlaneService.init(40, 7)).macro(new byte[]{RobotPath.MOVE});
+        var robot = PackedRobot.pack(0, 5, FaceDirection.NORTH);
+
+        assertThat(otherMacro.plane()).isEqualTo(new Plane(40, 7));
+        assertThatThrownBy(() -> robotService.run(robot, otherMacro, 3))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Macro compiled for plane [x=40, y=7] cannot run on plane [x=5, y=5]");
+        assertThat(robotService.run(robot, robotService.macro(new byte[]{RobotPath.MOVE}), 3))
+            .isEqualTo(new RobotMacro.Run(robot, 3));
+    }
+
+    @Test
+    void should_keep_the_most_recently_used_macros() {
+        var cache = new MacroCache(2);
+        var plane = new Plane(5, 5);
+        var move = new byte[]{RobotPath.MOVE};
+        var left = new byte[]{RobotPath.LEFT};
+        var moveMacro = cache.compile(move, plane);
+
+        assertThat(cache.compile(move.clone(), plane)).isSameAs(moveMacro);
+        assertThat(cache.compile(move, new Plane(6, 5))).isNotSameAs(moveMacro);
+
+        cache.compile(move, plane);
+        cache.compile(left, plane);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.compile(move, plane)).isSameAs(moveMacro);
+        assertThatThrownBy(() -> cache.compile(new byte[RobotMacro.MAX_COMMANDS + 1], plane))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // a coordinate within a few cells of either edge of the axis, or anywhere
+    private static int near(SplittableRandom random, int axis) {
+        return switch (random.nextInt(3)) {
+            case 0 -> (int) Math.min(random.nextInt(8), axis);
+            case 1 -> (int) Math.max(axis - random.nextInt(8), 0);
+            default -> (int) random.nextLong(axis + 1L);
+        };
+    }
+
+    private static RobotMacro.Run oneByOne(RobotService robotService, byte[] commands, long robot, long times) {
+        var rejectedMoves = 0L;
+
+        for (var i = 0L; i < times; i++) {
+            for (var command : commands) {
+                switch (command) {
+                    case RobotPath.MOVE -> {
+                        var movedRobot = robotService.move(robot);
+                        rejectedMoves += movedRobot == robot ? 1 : 0;
+                        robot = movedRobot;
+                    }
+                    case RobotPath.LEFT -> robot = robotService.left(robot);
+                    default -> robot = robotService.right(robot);
+                }
+            }
+        }
+
+        return new RobotMacro.Run(robot, rejectedMoves);
+    }
+}
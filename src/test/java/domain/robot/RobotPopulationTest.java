@@ -0,0 +1,118 @@
+package domain.robot;
+
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+import io.afaruqi.gogobot.domain.robot.PackedRobot;
+import io.afaruqi.gogobot.domain.robot.RobotPopulation;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import io.afaruqi.gogobot.domain.robot.RobotStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RobotPopulationTest {
+    @Test
+    void should_move_and_turn_every_robot_like_the_robot_service() {
+        var planeService = PlaneService.init(9, 6);
+        var robotService = new RobotService(planeService);
+
+        assertSameAsRobotService(planeService, robotService, 0, 9, 0, 6);
+    }
+
+    @Test
+    void should_move_around_obstacles_like_the_robot_service() {
+        var planeService = PlaneService.init(9, 9);
+        var robotService = new RobotService(planeService);
+
+        for (var i = 0; i < 10; i += 2) {
+            planeService.addObstacle(i, 9 - i);
+            planeService.addObstacle(5, i);
+        }
+
+        var population = new RobotPopulation(planeService);
+
+        assertThat(population.add(5, 0, FaceDirection.NORTH)).isEqualTo(RobotStatus.BLOCKED);
+        assertThat(population.add(10, 0, FaceDirection.NORTH)).isEqualTo(RobotStatus.NOT_WITHIN_PLANE);
+        assertThat(population.size()).isZero();
+
+        assertSameAsRobotService(planeService, robotService, 0, 9, 0, 9);
+    }
+
+    @Test
+    void should_stop_at_the_edges_of_the_largest_plane_without_overflowing() {
+        var planeService = PlaneService.initUnbounded();
+        var robotService = new RobotService(planeService);
+        var max = Integer.MAX_VALUE;
+
+        assertSameAsRobotService(planeService, robotService, max - 3, max, max - 3, max);
+        assertSameAsRobotService(planeService, robotService, 0, 3, max - 3, max);
+    }
+
+    @Test
+    void should_not_move_on_a_single_cell_plane() {
+        var population = new RobotPopulation(PlaneService.init(0, 0));
+
+        for (var faceDirection : FaceDirection.values()) {
+            population.add(0, 0, faceDirection);
+        }
+
+        population.move();
+
+        for (var i = 0; i < population.size(); i++) {
+            assertThat(population.robot(i)).isEqualTo(PackedRobot.pack(0, 0, FaceDirection.values()[i]));
+        }
+    }
+
+    // random robots within [xFrom, xTo] x [yFrom, yTo] run random commands in both engines
+    private static void assertSameAsRobotService(PlaneService planeService, RobotService robotService,
+                                                 int xFrom, int xTo, int yFrom, int yTo) {
+        var random = new SplittableRandom(7);
+        var population = new RobotPopulation(planeService);
+        var robots = new long[100];
+
+        for (var i = 0; i < robots.length; i++) {
+            var faceDirection = FaceDirection.values()[random.nextInt(4)];
+            int x;
+            int y;
+
+            do {
+                x = (int) random.nextLong(xFrom, xTo + 1L);
+                y = (int) random.nextLong(yFrom, yTo + 1L);
+            } while (population.add(x, y, faceDirection) != RobotStatus.OK);
+
+            robots[i] = PackedRobot.pack(x, y, faceDirection);
+        }
+
+        for (var command = 0; command < 200; command++) {
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    population.left();
+
+                    for (var i = 0; i < robots.length; i++) {
+                        robots[i] = robotService.left(robots[i]);
+                    }
+                }
+                case 1 -> {
+                    population.right();
+
+                    for (var i = 0; i < robots.length; i++) {
+                        robots[i] = robotService.right(robots[i]);
+                    }
+                }
+                default -> {
+                    population.move();
+
+                    for (var i = 0; i < robots.length; i++) {
+                        robots[i] = robotService.step(robots[i]);
+                    }
+                }
+            }
+
+            for (var i = 0; i < robots.length; i++) {
+                assertThat(population.robot(i)).isEqualTo(robots[i]);
+            }
+        }
+    }
+}
@@ -4,9 +4,11 @@ import io.afaruqi.gogobot.domain.common.Coordinate;
 import io.afaruqi.gogobot.domain.plane.Plane;
 import io.afaruqi.gogobot.domain.plane.PlaneService;
 import io.afaruqi.gogobot.domain.robot.FaceDirection;
+import io.afaruqi.gogobot.domain.robot.PackedRobot;
 import io.afaruqi.gogobot.domain.robot.Robot;
 import io.afaruqi.gogobot.domain.robot.RobotException;
 import io.afaruqi.gogobot.domain.robot.RobotService;
+import io.afaruqi.gogobot.domain.robot.RobotStatus;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -17,10 +19,13 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.charset.StandardCharsets;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 
 @ExtendWith(MockitoExtension.class)
@@ -39,7 +44,7 @@ public class RobotServiceTest {
     void should_place_robot_on_given_coordinate_and_face_direction() throws RobotException {
         var coordinate = new Coordinate(1, 0);
 
-        given(planeService.isWithinPlane(coordinate))
+        given(planeService.isWithinPlane(1, 0))
             .willReturn(true);
 
         var result = robotService.place(coordinate, FaceDirection.EAST);
@@ -54,7 +59,7 @@ public class RobotServiceTest {
         var coordinate = new Coordinate(10, 5);
         var plane = new Plane(5, 5);
 
-        given(planeService.isWithinPlane(coordinate))
+        given(planeService.isWithinPlane(10, 5))
             .willReturn(false);
         given(planeService.getPlane())
             .willReturn(plane);
@@ -73,7 +78,7 @@ public class RobotServiceTest {
 
         var expectedCoordinate = new Coordinate(1, 0);
 
-        given(planeService.isWithinPlane(expectedCoordinate))
+        given(planeService.isWithinPlane(1, 0))
             .willReturn(true);
 
         var result = robotService.move(robot);
@@ -91,7 +96,7 @@ public class RobotServiceTest {
 
         var expectedCoordinate = new Coordinate(0, 1);
 
-        given(planeService.isWithinPlane(expectedCoordinate))
+        given(planeService.isWithinPlane(0, 1))
             .willReturn(true);
 
         var result = robotService.move(robot);
@@ -109,7 +114,7 @@ public class RobotServiceTest {
 
         var expectedCoordinate = new Coordinate(1, 2);
 
-        given(planeService.isWithinPlane(expectedCoordinate))
+        given(planeService.isWithinPlane(1, 2))
             .willReturn(true);
 
         var result = robotService.move(robot);
@@ -127,7 +132,7 @@ public class RobotServiceTest {
 
         var expectedCoordinate = new Coordinate(2, 1);
 
-        given(planeService.isWithinPlane(expectedCoordinate))
+        given(planeService.isWithinPlane(2, 1))
             .willReturn(true);
 
         var result = robotService.move(robot);
@@ -143,9 +148,7 @@ public class RobotServiceTest {
         var faceDirection = FaceDirection.SOUTH;
         var robot = new Robot(originalCoordinate, faceDirection);
 
-        var expectedCoordinate = new Coordinate(0, -1);
-
-        given(planeService.isWithinPlane(expectedCoordinate))
+        given(planeService.isWithinPlane(0, -1))
             .willReturn(false);
 
         Throwable thrown = catchThrowable(() -> robotService.move(robot));
@@ -154,6 +157,90 @@ public class RobotServiceTest {
             .hasMessage("Robot cannot move there.");
     }
 
+    @Test
+    void should_throw_exception_when_robot_moves_into_an_obstacle() {
+        var robot = new Robot(new Coordinate(2, 2), FaceDirection.NORTH);
+
+        given(planeService.isWithinPlane(2, 3))
+            .willReturn(true);
+        given(planeService.isBlocked(2, 3))
+            .willReturn(true);
+
+        Throwable thrown = catchThrowable(() -> robotService.move(robot));
+
+        assertThat(thrown).isInstanceOf(RobotException.class)
+            .hasMessage("Robot cannot move there.");
+    }
+
+    @Test
+    void should_throw_exception_when_robot_is_placed_on_an_obstacle() {
+        var coordinate = new Coordinate(1, 1);
+
+        given(planeService.isWithinPlane(1, 1))
+            .willReturn(true);
+        given(planeService.isBlocked(1, 1))
+            .willReturn(true);
+
+        Throwable thrown = catchThrowable(() -> robotService.place(coordinate, FaceDirection.EAST));
+
+        assertThat(thrown).isInstanceOf(RobotException.class)
+            .hasMessage("Robot cannot be placed on an obstacle.");
+    }
+
+    @Test
+    void should_return_a_status_instead_of_throwing_when_checking_a_placement() {
+        given(planeService.isWithinPlane(anyInt(), anyInt()))
+            .willAnswer(invocation -> invocation.<Integer>getArgument(0) <= 5);
+        given(planeService.isBlocked(1, 1))
+            .willReturn(true);
+        given(planeService.isBlocked(2, 1))
+            .willReturn(false);
+        given(planeService.getPlane())
+            .willReturn(new Plane(5, 5));
+
+        assertThat(robotService.checkPlace(2, 1)).isEqualTo(RobotStatus.OK);
+        assertThat(robotService.checkPlace(1, 1)).isEqualTo(RobotStatus.BLOCKED);
+        assertThat(robotService.checkPlace(6, 1)).isEqualTo(RobotStatus.NOT_WITHIN_PLANE);
+        assertThat(robotService.message(RobotStatus.NOT_WITHIN_PLANE)).isEqualTo("Robot is not placed within [x=5, y=5]");
+        assertThat(robotService.message(RobotStatus.CANNOT_MOVE)).isEqualTo("Robot cannot move there.");
+    }
+
+    @Test
+    void should_stop_a_run_of_moves_at_the_edge_of_the_plane() {
+        var robot = PackedRobot.pack(1, 2, FaceDirection.EAST);
+
+        given(planeService.getPlane())
+            .willReturn(new Plane(5, 5));
+
+        assertThat(robotService.move(robot, 3)).isEqualTo(PackedRobot.pack(4, 2, FaceDirection.EAST));
+        assertThat(robotService.move(robot, Long.MAX_VALUE)).isEqualTo(PackedRobot.pack(5, 2, FaceDirection.EAST));
+        assertThat(robotService.move(PackedRobot.pack(1, 2, FaceDirection.SOUTH), 10))
+            .isEqualTo(PackedRobot.pack(1, 0, FaceDirection.SOUTH));
+    }
+
+    @Test
+    void should_stop_a_run_of_moves_in_front_of_an_obstacle() {
+        var robot = PackedRobot.pack(0, 0, FaceDirection.NORTH);
+
+        given(planeService.hasObstacles())
+            .willReturn(true);
+        given(planeService.isWithinPlane(eq(0), anyInt()))
+            .willReturn(true);
+        given(planeService.isBlocked(eq(0), anyInt()))
+            .willAnswer(invocation -> invocation.<Integer>getArgument(1) == 3);
+
+        assertThat(robotService.move(robot, 5)).isEqualTo(PackedRobot.pack(0, 2, FaceDirection.NORTH));
+    }
+
+    @Test
+    void should_turn_robot_by_the_number_of_turns_modulo_four() {
+        var robot = PackedRobot.pack(0, 0, FaceDirection.NORTH);
+
+        assertThat(PackedRobot.faceDirection(robotService.turn(robot, 5))).isEqualTo(FaceDirection.EAST);
+        assertThat(PackedRobot.faceDirection(robotService.turn(robot, -1))).isEqualTo(FaceDirection.WEST);
+        assertThat(robotService.turn(robot, -8)).isEqualTo(robot);
+    }
+
     @Test
     void should_report_the_current_coordinate_and_face_direction() {
         var coordinate = new Coordinate(2, 0);
@@ -166,6 +253,18 @@ public class RobotServiceTest {
             .isEqualTo("Output: 2,0,EAST");
     }
 
+    @Test
+    void should_format_the_report_into_a_byte_buffer() {
+        var robot = PackedRobot.pack(Integer.MAX_VALUE, 0, FaceDirection.SOUTH);
+        var buffer = new byte[RobotService.MAX_REPORT_LENGTH + 2];
+
+        var end = robotService.report(robot, buffer, 2);
+
+        assertThat(new String(buffer, 2, end - 2, StandardCharsets.US_ASCII))
+            .isEqualTo("Output: 2147483647,0,SOUTH")
+            .isEqualTo(robotService.report(robot));
+    }
+
     private static Stream<Arguments> leftTurnParams() {
         return Stream.of(
             Arguments.of(FaceDirection.NORTH, FaceDirection.WEST),
@@ -0,0 +1,81 @@
+package domain.robot;
+
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+import io.afaruqi.gogobot.domain.robot.PackedRobot;
+import io.afaruqi.gogobot.domain.robot.Trajectories;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TrajectoriesTest {
+    @ParameterizedTest(name = "off heap: {0}")
+    @ValueSource(booleans = {false, true})
+    void should_find_the_pose_of_a_robot_at_any_step(boolean offHeap) {
+        var trajectories = new Trajectories(offHeap);
+
+        trajectories.placed(7, PackedRobot.pack(1, 1, FaceDirection.EAST));
+        trajectories.moved(7, PackedRobot.pack(4, 1, FaceDirection.EAST), 3);
+        trajectories.turned(7, PackedRobot.pack(4, 1, FaceDirection.NORTH));
+        trajectories.moved(7, PackedRobot.pack(4, 2, FaceDirection.NORTH), 1);
+        trajectories.placed(7, PackedRobot.pack(0, 0, FaceDirection.WEST));
+
+        assertThat(trajectories.steps(7)).isEqualTo(7);
+        assertThat(trajectories.pose(7, 0)).isEqualTo(PackedRobot.pack(1, 1, FaceDirection.EAST));
+        assertThat(trajectories.pose(7, 2)).isEqualTo(PackedRobot.pack(3, 1, FaceDirection.EAST));
+        assertThat(trajectories.pose(7, 3)).isEqualTo(PackedRobot.pack(4, 1, FaceDirection.EAST));
+        assertThat(trajectories.pose(7, 4)).isEqualTo(PackedRobot.pack(4, 1, FaceDirection.NORTH));
+        assertThat(trajectories.pose(7, 5)).isEqualTo(PackedRobot.pack(4, 2, FaceDirection.NORTH));
+        assertThat(trajectories.pose(7, 6)).isEqualTo(PackedRobot.pack(0, 0, FaceDirection.WEST));
+        assertThat(trajectories.pose(7, 1_000)).isEqualTo(PackedRobot.pack(0, 0, FaceDirection.WEST));
+        assertThatThrownBy(() -> trajectories.pose(8, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void should_find_every_robot_that_passed_through_a_cell() {
+        var trajectories = new Trajectories(false);
+
+        trajectories.placed(2, PackedRobot.pack(5, 0, FaceDirection.NORTH));
+        // across several 64 x 64 tiles
+        trajectories.moved(2, PackedRobot.pack(5, 300, FaceDirection.NORTH), 300);
+        trajectories.placed(1, PackedRobot.pack(0, 200, FaceDirection.EAST));
+        trajectories.moved(1, PackedRobot.pack(9, 200, FaceDirection.EAST), 9);
+        trajectories.turned(1, PackedRobot.pack(9, 200, FaceDirection.WEST));
+        trajectories.moved(1, PackedRobot.pack(3, 200, FaceDirection.WEST), 6);
+
+        assertThat(trajectories.visits(5, 200)).containsExactly(
+            new Trajectories.Visit(1, 5),
+            new Trajectories.Visit(1, 14),
+            new Trajectories.Visit(2, 200)
+        );
+        assertThat(trajectories.visits(5, 0)).containsExactly(new Trajectories.Visit(2, 0));
+        assertThat(trajectories.visits(5, 301)).isEmpty();
+        assertThat(trajectories.visits(9, 200)).containsExactly(new Trajectories.Visit(1, 9));
+    }
+
+    @Test
+    void should_keep_records_beyond_one_chunk() {
+        var trajectories = new Trajectories(true);
+        var robot = PackedRobot.pack(0, 0, FaceDirection.NORTH);
+        trajectories.placed(1, robot);
+
+        for (var i = 0; i < 200_000; i++) {
+            robot = PackedRobot.right(robot);
+            trajectories.turned(1, robot);
+        }
+
+        assertThat(trajectories.size()).isEqualTo(200_001);
+        assertThat(trajectories.pose(1, 199_999)).isEqualTo(PackedRobot.pack(0, 0, FaceDirection.WEST));
+        assertThat(trajectories.visits(0, 0)).containsExactly(new Trajectories.Visit(1, 0));
+    }
+
+    @Test
+    void should_record_nothing_when_disabled() {
+        Trajectories.DISABLED.placed(1, PackedRobot.pack(0, 0, FaceDirection.NORTH));
+
+        assertThat(Trajectories.DISABLED.steps(1)).isZero();
+        assertThat(Trajectories.DISABLED.visits(0, 0)).isEmpty();
+    }
+}
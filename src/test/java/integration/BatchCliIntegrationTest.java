@@ -0,0 +1,276 @@
+package integration;
+
+import io.afaruqi.gogobot.application.BatchCli;
+import io.afaruqi.gogobot.application.BinaryCommands;
+import io.afaruqi.gogobot.application.Cli;
+import io.afaruqi.gogobot.application.CommandMetrics;
+import io.afaruqi.gogobot.application.CommandSession;
+import io.afaruqi.gogobot.application.RegexCommandParser;
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BatchCliIntegrationTest {
+    private final InputStream systemIn = System.in;
+    private final PrintStream systemOut = System.out;
+
+    @AfterEach
+    void cleanUp() {
+        System.setIn(systemIn);
+        System.setOut(systemOut);
+    }
+
+    private static Stream<String> sessionParams() {
+        return Stream.of(
+            "PLACE 1,1,NORTH\nMOVE\nRIGHT\nREPORT\nEXIT\n",
+            "PLACE 0,0,NORTH\nMOVE\nREPORT",
+            "REPORT\nMOVE\nLEFT\nRIGHT\nPLACE 1,2,EAST\nMOVE\nMOVE\nLEFT\nMOVE\nREPORT\n",
+            "PLACE 5,5,NORTH\nMOVE\nREPORT\nPLACE 6,1,EAST\nPLACE 1,1,UP\nPLACE\nPLACE 1,1\nPLACEHOLDER\n",
+            "PLACX 1,1,NORTH\nPLAC\nPLEASE\nmove\n\n   \n\t\nHELP\nREPORT\n",
+            "PLACE 1,1,NORTH\r\nMOVE\r\nREPORT\rLEFT\rREPORT\r\n",
+            "PLACE 2,2,WEST MOVE REPORT\u0085RIGHT\nREPORT\n",
+            "café\n　\nPLACE 2,2,SOUTH\nMOVE\nMOVE\nMOVE\nREPORT\nEXIT\nREPORT\n",
+            "PLACE 10,1,NORTH\nPLACE 0003,04,WEST\nREPORT\nPLACE 99999999999,1,EAST\nPLACE 1,2147483648,EAST\nPLACE 1,,EAST\nREPORT\n",
+            "MOVE\nMOVE\nLEFT\nRIGHT\nRIGHT\nPLACE 1,1,EAST\n" + "MOVE\n".repeat(9) + "REPORT\n" + "LEFT\n".repeat(7) + "MOVE\n".repeat(3)
+                + "RIGHT\nLEFT\nREPORT\nLEFT\nLEFT\nMOVE\nMOVE\nEXIT\nMOVE\n",
+            "PLACE 4,4,WEST\n" + "MOVE\n".repeat(6) + "RIGHT\n".repeat(5) + "MOVE\nMOVE",
+            "GOTO 1,1,NORTH\nPLACE 0,0,NORTH\nGOTO 4,3,WEST\nGOTO 0,0,NORTH\nGOTO 9,9,EAST\nGOTO 1,1\nGOTOX\nGOTO1,1,NORTH\nGOTO \nREPORT\n",
+            "RUN a\nDEFINE a MOVE MOVE RIGHT\nRUN a 2\nPLACE 1,1,NORTH\nRUN a 7\nREPORT\nRUN b\nDEFINE a LEFT\nRUN a 0003\nREPORT\n"
+                + "DEFINE\nDEFINE b\nDEFINE b MOVE  LEFT\nDEFINE b-c MOVE\nDEFINE b move\nRUN\nRUNNER\nDEFINEX\nRUN2\nRUN a 1x\nRUN a \n"
+                + "RUN a 99999999999\nDEFINE b" + " MOVE".repeat(257) + "\nREPORT\n"
+        );
+    }
+
+    @DisplayName("Batch output is byte-identical to the interactive output")
+    @ParameterizedTest
+    @MethodSource("sessionParams")
+    void should_print_the_same_output_as_the_interactive_cli(String input) throws IOException {
+        var expected = interactiveOutput(input);
+
+        assertThat(batchOutput(Channels.newChannel(inputStream(input))))
+            .isEqualTo(expected);
+        assertThat(batchOutput(new OneByteChannel(input.getBytes(StandardCharsets.UTF_8))))
+            .isEqualTo(expected);
+    }
+
+    @DisplayName("The byte parser prints the same replies and errors as the regular expressions")
+    @ParameterizedTest
+    @MethodSource("sessionParams")
+    void should_print_the_same_output_as_the_regex_parser(String input) throws IOException {
+        var output = new ByteArrayOutputStream();
+        var session = new CommandSession(new RobotService(PlaneService.initDefault()), output);
+        var reader = new BufferedReader(new InputStreamReader(inputStream(input), StandardCharsets.UTF_8));
+
+        session.welcome();
+        new RegexCommandParser(CommandMetrics.DISABLED).replay(reader, session);
+        session.goodbye();
+
+        assertThat(interactiveOutput(input)).isEqualTo(output.toString(StandardCharsets.UTF_8));
+    }
+
+    @DisplayName("Binary output is byte-identical to the interactive output")
+    @ParameterizedTest
+    @MethodSource("sessionParams")
+    void should_print_the_same_output_for_the_binary_encoding(String input) throws IOException {
+        var binary = encode(input);
+
+        assertThat(binaryOutput(new OneByteChannel(binary), PlaneService.initDefault()))
+            .isEqualTo(interactiveOutput(input));
+    }
+
+    @Test
+    void should_run_macros_like_their_commands_one_by_one_with_counted_replies() throws IOException {
+        var macro = "MOVE MOVE RIGHT MOVE MOVE MOVE LEFT LEFT MOVE";
+        var input = "PLACE 3,1,WEST\nDEFINE patrol " + macro + "\nRUN patrol 1001\nREPORT\n";
+        var expanded = "PLACE 3,1,WEST\n" + (macro.replace(' ', '\n') + "\n").repeat(1001) + "REPORT\n";
+        var planeService = PlaneService.init(40, 7);
+
+        var expandedOutput = batchOutput(Channels.newChannel(inputStream(expanded)), planeService);
+        var rejectedMoves = expandedOutput.split("Robot cannot move there.\n", -1).length - 1;
+
+        assertThat(rejectedMoves).isGreaterThan(1);
+        assertThat(batchOutput(Channels.newChannel(inputStream(input)), planeService))
+            .isEqualTo(expandedOutput.replace("Robot cannot move there.\n", "")
+                .replace("Output: ", "Robot cannot move there. (x" + rejectedMoves + ")\nOutput: "));
+    }
+
+    @Test
+    void should_answer_a_huge_run_with_a_line_per_kind_of_rejection() throws IOException {
+        var input = "DEFINE wall" + " MOVE".repeat(256) + "\nRUN wall 2147483647\nPLACE 0,5,NORTH\nRUN wall 2147483647\n"
+            + "REPORT\n";
+
+        var output = batchOutput(Channels.newChannel(inputStream(input)));
+
+        assertThat(output.lines()).hasSizeLessThan(10);
+        assertThat(output).contains(
+            "Please place a robot first with 'PLACE' command. (x549755813632)\n",
+            "Robot cannot move there. (x549755813632)\nOutput: 0,5,NORTH");
+    }
+
+    @Test
+    void should_encode_a_session_an_order_of_magnitude_smaller() throws IOException {
+        var commands = new String[]{"MOVE", "MOVE", "MOVE", "LEFT", "RIGHT", "REPORT"};
+        var random = new Random(42);
+        var input = new StringBuilder();
+
+        for (var line = 0; line < 100_000; line++) {
+            input.append(line % 1_000 == 0 ? "PLACE " + random.nextInt(1_000) + ",3,NORTH" : commands[random.nextInt(commands.length)])
+                .append('\n');
+        }
+
+        var binary = encode(input.toString());
+        var planeService = PlaneService.init(1_000, 1_000);
+
+        assertThat(binary.length * 10).isLessThan(input.length());
+        assertThat(binaryOutput(Channels.newChannel(new ByteArrayInputStream(binary)), planeService))
+            .isEqualTo(batchOutput(Channels.newChannel(inputStream(input.toString())), planeService));
+    }
+
+    @Test
+    void should_encode_a_long_run_of_moves_in_a_few_bytes() throws IOException {
+        var input = "PLACE 0,0,EAST\n" + "MOVE\n".repeat(1_000_000) + "REPORT\n";
+        var binary = encode(input);
+
+        assertThat(binary).hasSizeLessThan(20);
+        assertThat(binaryOutput(Channels.newChannel(new ByteArrayInputStream(binary)), PlaneService.initUnbounded()))
+            .contains("Output: 1000000,0,EAST\n");
+    }
+
+    @Test
+    void should_not_replay_a_text_session_as_a_binary_one() {
+        assertThatThrownBy(() -> binaryOutput(Channels.newChannel(inputStream("PLACE 1,1,NORTH\n")), PlaneService.initDefault()))
+            .isInstanceOf(IOException.class)
+            .hasMessage("Not a binary command session");
+    }
+
+    @Test
+    void should_replay_lines_longer_than_the_read_buffer() throws IOException {
+        var input = "PLACE 0,0,EAST\n" + "X".repeat(3 << 20) + "\nMOVE\nREPORT\n";
+
+        assertThat(batchOutput(Channels.newChannel(inputStream(input))))
+            .isEqualTo(interactiveOutput(input));
+    }
+
+    @Test
+    void should_place_the_robot_beyond_single_digit_coordinates_on_a_large_plane() throws IOException {
+        var input = "PLACE 2147483646,1000000,EAST\nMOVE\nMOVE\nREPORT\n";
+        var output = new ByteArrayOutputStream();
+
+        new BatchCli(new RobotService(PlaneService.initUnbounded()))
+            .replay(Channels.newChannel(inputStream(input)), output);
+
+        assertThat(output.toString(StandardCharsets.UTF_8))
+            .contains("Robot cannot move there.\nOutput: 2147483647,1000000,EAST\n");
+    }
+
+    @Test
+    void should_stop_runs_of_moves_in_front_of_obstacles_like_the_interactive_cli() throws IOException {
+        var input = "PLACE 0,0,NORTH\n" + "MOVE\n".repeat(4) + "RIGHT\nRIGHT\nRIGHT\nRIGHT\nRIGHT\n" + "MOVE\n".repeat(4)
+            + "REPORT\nLEFT\nMOVE\nREPORT\n";
+        var planeService = PlaneService.initDefault();
+        planeService.addObstacle(0, 3);
+        planeService.addObstacle(3, 2);
+
+        assertThat(batchOutput(Channels.newChannel(inputStream(input)), planeService))
+            .isEqualTo(interactiveOutput(input, planeService))
+            .contains("Output: 2,2,EAST\n");
+    }
+
+    private String interactiveOutput(String input) {
+        return interactiveOutput(input, PlaneService.initDefault());
+    }
+
+    private String interactiveOutput(String input, PlaneService planeService) {
+        var output = new ByteArrayOutputStream();
+        System.setIn(inputStream(input));
+        System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+
+        new Cli(new RobotService(planeService)).run();
+
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private String batchOutput(ReadableByteChannel input) throws IOException {
+        return batchOutput(input, PlaneService.initDefault());
+    }
+
+    private String batchOutput(ReadableByteChannel input, PlaneService planeService) throws IOException {
+        var output = new ByteArrayOutputStream();
+
+        new BatchCli(new RobotService(planeService)).replay(input, output);
+
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private String binaryOutput(ReadableByteChannel input, PlaneService planeService) throws IOException {
+        var output = new ByteArrayOutputStream();
+
+        new BatchCli(new RobotService(planeService)).replayBinary(input, output);
+
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encode(String input) throws IOException {
+        var output = new ByteArrayOutputStream();
+
+        BinaryCommands.encode(Channels.newChannel(inputStream(input)), output);
+
+        return output.toByteArray();
+    }
+
+    private static InputStream inputStream(String input) {
+        return new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Hands out a single byte per read, so every line terminator ends up on a read boundary at some point.
+     */
+    private static class OneByteChannel implements ReadableByteChannel {
+        private final byte[] content;
+        private int position;
+
+        OneByteChannel(byte[] content) {
+            this.content = content;
+        }
+
+        @Override
+        public int read(ByteBuffer destination) {
+            if (position == content.length) {
+                return -1;
+            }
+
+            destination.put(content[position++]);
+            return 1;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
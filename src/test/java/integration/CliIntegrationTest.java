@@ -9,8 +9,12 @@ import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -56,6 +60,29 @@ public class CliIntegrationTest {
             .isEqualTo(expected);
     }
 
+    @Test
+    void should_print_the_replies_before_waiting_for_more_input() throws IOException, InterruptedException {
+        var input = new PipedOutputStream();
+        System.setIn(new PipedInputStream(input));
+        var thread = Thread.ofVirtual().start(cli::run);
+
+        input.write("PLACE 1,1,NORTH\nREPORT\n".getBytes(StandardCharsets.UTF_8));
+        input.flush();
+
+        for (var i = 0; i < 500 && !printOutput().contains("Output: 1,1,NORTH"); i++) {
+            Thread.sleep(10);
+        }
+
+        assertThat(printOutput()).endsWith("Output: 1,1,NORTH");
+        assertThat(thread.isAlive()).isTrue();
+
+        input.write("EXIT\n".getBytes(StandardCharsets.UTF_8));
+        input.close();
+        thread.join();
+
+        assertThat(printOutput()).endsWith("Output: 1,1,NORTH\nGoodbye!");
+    }
+
     @Test
     void should_print_user_manual() {
         userInput("HELP");
@@ -70,6 +97,9 @@ public class CliIntegrationTest {
             Type 'LEFT' to turn the face direction to the left.
             Type 'RIGHT' to turn the face direction to the right.
             Type 'REPORT' to announce the robot's current coordinate and its face direction.
+            Type 'GOTO <x,y,NORTH|SOUTH|EAST|WEST>' to print the shortest commands that take the robot to x & y coordinate with face direction, without moving it.
+            Type 'DEFINE <name> <MOVE|LEFT|RIGHT ...>' to define a macro of up to 256 commands separated by spaces (e.g. DEFINE patrol MOVE MOVE RIGHT).
+            Type 'RUN <name> [times]' to run a macro once or the given number of times (e.g. RUN patrol 1000).
             Type 'EXIT' to exit the program.
             Goodbye!""";
 
@@ -140,6 +170,56 @@ public class CliIntegrationTest {
             .isEqualTo(expected);
     }
 
+    @Test
+    void should_not_take_a_word_starting_with_goto_for_a_goto_command() {
+        var input = """
+            GOTOX
+            GOTO1,1,NORTH
+            GOTO 1,1
+            EXIT
+            """;
+        userInput(input);
+
+        cli.run();
+
+        var expected = """
+            Blip blop, welcome to Gogobot! Where you can move a robot around.
+            Type 'HELP' to see all available commands.
+            Unknown command 'GOTOX', type 'HELP' to see available commands.
+            Unknown command 'GOTO1,1,NORTH', type 'HELP' to see available commands.
+            Invalid GOTO arguments: 'GOTO 1,1'
+            Hint: GOTO <x coordinate>,<y coordinate>,<face direction: NORTH, SOUTH, EAST, WEST>
+            Goodbye!""";
+
+        assertThat(printOutput())
+            .isEqualTo(expected);
+    }
+
+    @Test
+    void should_not_take_a_word_starting_with_run_or_define_for_a_macro_command() {
+        var input = """
+            RUNNER
+            DEFINEX MOVE
+            RUN
+            EXIT
+            """;
+        userInput(input);
+
+        cli.run();
+
+        var expected = """
+            Blip blop, welcome to Gogobot! Where you can move a robot around.
+            Type 'HELP' to see all available commands.
+            Unknown command 'RUNNER', type 'HELP' to see available commands.
+            Unknown command 'DEFINEX MOVE', type 'HELP' to see available commands.
+            Invalid RUN arguments: 'RUN'
+            Hint: RUN <name> <optional number of times>
+            Goodbye!""";
+
+        assertThat(printOutput())
+            .isEqualTo(expected);
+    }
+
     private void userInput(String data) {
         ByteArrayInputStream inputContent = new ByteArrayInputStream(data.getBytes());
         System.setIn(inputContent);
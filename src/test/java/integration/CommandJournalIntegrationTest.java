@@ -0,0 +1,124 @@
+package integration;
+
+import io.afaruqi.gogobot.application.CommandJournal;
+import io.afaruqi.gogobot.application.CommandMetrics;
+import io.afaruqi.gogobot.application.CommandSession;
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+import io.afaruqi.gogobot.domain.robot.PackedRobot;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CommandJournalIntegrationTest {
+    private static final String[] COMMANDS = {"MOVE", "MOVE", "LEFT", "RIGHT", "REPORT", "PLACE 2,3,WEST", "PLACE 9,9,EAST"};
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @EnumSource(CommandJournal.FsyncPolicy.class)
+    void should_recover_the_robot_of_the_previous_session(CommandJournal.FsyncPolicy fsyncPolicy) {
+        var planeService = PlaneService.initDefault();
+
+        try (var journal = CommandJournal.open(directory, fsyncPolicy, 100, planeService)) {
+            feed(journal, planeService, "PLACE 1,1,NORTH\nMOVE\nMOVE\nRIGHT\nMOVE\n");
+        }
+
+        try (var journal = CommandJournal.open(directory, fsyncPolicy, 100, planeService)) {
+            assertThat(journal.isRobotPlaced()).isTrue();
+            assertThat(journal.robot()).isEqualTo(PackedRobot.pack(2, 3, FaceDirection.EAST));
+            assertThat(feed(journal, planeService, "REPORT\n")).isEqualTo("Output: 2,3,EAST\n");
+        }
+    }
+
+    @Test
+    void should_recover_the_same_robot_from_the_latest_snapshot_and_from_the_whole_journal() throws IOException {
+        var planeService = PlaneService.initDefault();
+        planeService.addObstacle(2, 2);
+        var random = new Random(42);
+        String expectedReport;
+
+        try (var journal = CommandJournal.open(directory, CommandJournal.FsyncPolicy.NEVER, 1_000, planeService)) {
+            feed(journal, planeService, "PLACE 0,0,NORTH\n");
+
+            // one commit per chunk, so the last snapshot is followed by a journal tail
+            for (var chunk = 0; chunk < 150; chunk++) {
+                var lines = new StringBuilder();
+
+                for (var line = 0; line < 150; line++) {
+                    lines.append(COMMANDS[random.nextInt(COMMANDS.length)]).append('\n');
+                }
+
+                feed(journal, planeService, lines.toString());
+            }
+
+            expectedReport = feed(journal, planeService, "REPORT\n");
+        }
+
+        try (var journal = CommandJournal.open(directory, CommandJournal.FsyncPolicy.NEVER, 1_000, planeService)) {
+            assertThat(feed(journal, planeService, "REPORT\n")).isEqualTo(expectedReport);
+        }
+
+        Files.delete(directory.resolve(CommandJournal.SNAPSHOT_FILE));
+
+        try (var journal = CommandJournal.open(directory, CommandJournal.FsyncPolicy.NEVER, 1_000, planeService)) {
+            assertThat(feed(journal, planeService, "REPORT\n")).isEqualTo(expectedReport);
+        }
+    }
+
+    @Test
+    void should_drop_a_record_cut_short_and_keep_journaling_after_it() throws IOException {
+        var planeService = PlaneService.initDefault();
+
+        try (var journal = CommandJournal.open(directory, CommandJournal.FsyncPolicy.GROUP, 100, planeService)) {
+            feed(journal, planeService, "PLACE 0,0,EAST\nMOVE\n");
+        }
+
+        // the snapshot covers the journal up to here, so the journal has to be replayed from its start
+        Files.delete(directory.resolve(CommandJournal.SNAPSHOT_FILE));
+        // a MOVE record whose varint never ends
+        Files.write(directory.resolve(CommandJournal.JOURNAL_FILE), new byte[]{2, (byte) 0x80}, StandardOpenOption.APPEND);
+
+        try (var journal = CommandJournal.open(directory, CommandJournal.FsyncPolicy.GROUP, 100, planeService)) {
+            assertThat(journal.robot()).isEqualTo(PackedRobot.pack(1, 0, FaceDirection.EAST));
+            feed(journal, planeService, "MOVE\n");
+        }
+
+        try (var journal = CommandJournal.open(directory, CommandJournal.FsyncPolicy.GROUP, 100, planeService)) {
+            assertThat(journal.robot()).isEqualTo(PackedRobot.pack(2, 0, FaceDirection.EAST));
+        }
+    }
+
+    @Test
+    void should_not_open_a_file_that_is_not_a_journal() throws IOException {
+        Files.writeString(directory.resolve(CommandJournal.JOURNAL_FILE), "PLACE 1,1,NORTH\n");
+
+        assertThatThrownBy(() -> CommandJournal.open(directory, CommandJournal.FsyncPolicy.GROUP, 100, PlaneService.initDefault()))
+            .hasMessageContaining("Not a journal file");
+    }
+
+    private static String feed(CommandJournal journal, PlaneService planeService, String input) {
+        var output = new ByteArrayOutputStream();
+        var session = new CommandSession(new RobotService(planeService), output, CommandMetrics.DISABLED, journal);
+        var bytes = input.getBytes(StandardCharsets.UTF_8);
+
+        session.feed(bytes, 0, bytes.length, true);
+        session.commit();
+
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,111 @@
+package integration;
+
+import io.afaruqi.gogobot.application.BatchCli;
+import io.afaruqi.gogobot.application.Cli;
+import io.afaruqi.gogobot.application.CommandMetrics;
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CommandMetricsIntegrationTest {
+    private static final String INPUT = """
+        MOVE
+        PLACE 4,4,NORTH
+        MOVE
+        MOVE
+        LEFT
+        LEFT
+        RIGHT
+        MOVE
+        REPORT
+        JUMP
+        PLACE 1,1
+        STATS
+        """;
+
+    private final InputStream systemIn = System.in;
+    private final PrintStream systemOut = System.out;
+
+    @AfterEach
+    void cleanUp() {
+        System.setIn(systemIn);
+        System.setOut(systemOut);
+    }
+
+    @Test
+    void should_count_commands_and_errors_and_print_them_on_stats() throws IOException {
+        var metrics = new CommandMetrics();
+
+        var output = batchOutput(metrics);
+
+        assertThat(output).contains("Output: 3,5,WEST\n");
+        assertThat(output).containsPattern("PLACE +1 ");
+        assertThat(output).containsPattern("MOVE +4 ");
+        assertThat(output).containsPattern("LEFT +2 ");
+        assertThat(output).containsPattern("RIGHT +1 ");
+        assertThat(output).containsPattern("REPORT +1 ");
+        assertThat(output).contains("Rejected moves: 1\nInvalid commands: 2\nUnplaced robot errors: 1\n");
+    }
+
+    @Test
+    void should_record_the_same_metrics_in_the_interactive_cli() throws IOException {
+        var batchMetrics = new CommandMetrics();
+        batchOutput(batchMetrics);
+
+        var interactiveMetrics = new CommandMetrics();
+        var output = new ByteArrayOutputStream();
+        System.setIn(new ByteArrayInputStream(INPUT.getBytes(StandardCharsets.UTF_8)));
+        System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+
+        new Cli(new RobotService(PlaneService.initDefault()), interactiveMetrics).run();
+
+        assertThat(output.toString(StandardCharsets.UTF_8)).contains("Unplaced robot errors: 1\n");
+        assertThat(counts(interactiveMetrics.dump())).isEqualTo(counts(batchMetrics.dump()));
+    }
+
+    @Test
+    void should_treat_stats_as_an_unknown_command_when_metrics_are_disabled() throws IOException {
+        assertThat(batchOutput(CommandMetrics.DISABLED))
+            .contains("Unknown command 'STATS'")
+            .doesNotContain("Rejected moves");
+    }
+
+    @Test
+    void should_list_stats_in_the_help_only_when_metrics_are_enabled() throws IOException {
+        var stats = "Type 'STATS' to print the command counts and latencies so far.\nType 'EXIT' to exit the program.\n";
+
+        assertThat(batchOutput(new CommandMetrics(), "HELP\n")).contains(stats);
+        assertThat(batchOutput(CommandMetrics.DISABLED, "HELP\n"))
+            .doesNotContain("STATS")
+            .contains("Type 'EXIT' to exit the program.\n");
+    }
+
+    private static String batchOutput(CommandMetrics metrics) throws IOException {
+        return batchOutput(metrics, INPUT);
+    }
+
+    private static String batchOutput(CommandMetrics metrics, String input) throws IOException {
+        var output = new ByteArrayOutputStream();
+
+        new BatchCli(new RobotService(PlaneService.initDefault()), metrics)
+            .replay(Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))), output);
+
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    // the dump without the latency columns
+    private static String counts(String dump) {
+        return dump.replaceAll("(?m)^(\\S+ +\\d+) .*$", "$1");
+    }
+}
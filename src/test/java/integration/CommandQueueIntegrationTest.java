@@ -0,0 +1,65 @@
+package integration;
+
+import io.afaruqi.gogobot.application.Cli;
+import io.afaruqi.gogobot.application.CommandJournal;
+import io.afaruqi.gogobot.application.CommandMetrics;
+import io.afaruqi.gogobot.application.CommandQueue;
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CommandQueueIntegrationTest {
+    private final InputStream systemIn = System.in;
+    private final PrintStream systemOut = System.out;
+
+    @AfterEach
+    void cleanUp() {
+        System.setIn(systemIn);
+        System.setOut(systemOut);
+    }
+
+    @Test
+    void should_print_the_same_replies_through_the_queue() {
+        var commands = """
+            PLACE 1,2,EAST
+            MOVE
+            MOVE
+            LEFT
+            REPORT
+            DEFINE square MOVE RIGHT
+            RUN square 4
+            REPORT
+            EXIT
+            MOVE
+            """;
+
+        var direct = run(commands, null);
+        var queued = run(commands, new CommandQueue(2, CommandQueue.Backpressure.BLOCK));
+
+        assertThat(queued).isEqualTo(direct).contains("Output: 3,2,NORTH");
+    }
+
+    private static String run(String commands, CommandQueue queue) {
+        var output = new ByteArrayOutputStream();
+        System.setIn(new ByteArrayInputStream(bytes(commands)));
+        System.setOut(new PrintStream(output));
+
+        var robotService = new RobotService(PlaneService.initDefault());
+        new Cli(robotService, CommandMetrics.DISABLED, CommandJournal.DISABLED, queue).run();
+
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,142 @@
+package integration;
+
+import io.afaruqi.gogobot.application.BatchCli;
+import io.afaruqi.gogobot.application.CommandMetrics;
+import io.afaruqi.gogobot.application.CommandServer;
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CommandServerIntegrationTest {
+    private static final String[] COMMANDS = {"MOVE", "LEFT", "RIGHT", "REPORT", "PLACE 2,3,WEST", "PLACE 9,9,EAST", "JUMP"};
+
+    private CommandServer server;
+    private Thread serverThread;
+
+    @BeforeEach
+    void setUp() {
+        server = new CommandServer(PlaneService.initDefault(), CommandMetrics.DISABLED,
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        serverThread = Thread.ofVirtual().start(server::serve);
+    }
+
+    @AfterEach
+    void cleanUp() throws InterruptedException {
+        server.close();
+        serverThread.join();
+    }
+
+    @Test
+    void should_reply_to_pipelined_commands_of_concurrent_clients_like_a_batch_replay() throws Exception {
+        var random = new Random(42);
+        var clients = new ArrayList<Callable<Boolean>>();
+
+        for (var i = 0; i < 20; i++) {
+            var session = new StringBuilder("PLACE 0,0,NORTH\n");
+
+            for (var line = random.nextInt(5_000); line > 0; line--) {
+                session.append(COMMANDS[random.nextInt(COMMANDS.length)]).append('\n');
+            }
+
+            var input = session.toString();
+            clients.add(() -> {
+                try (var socket = connect()) {
+                    socket.getOutputStream().write(input.getBytes(StandardCharsets.UTF_8));
+                    socket.shutdownOutput();
+
+                    return new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8)
+                        .equals(batchOutput(input));
+                }
+            });
+        }
+
+        try (var executor = Executors.newFixedThreadPool(clients.size())) {
+            for (var result : executor.invokeAll(clients)) {
+                assertThat(result.get()).isTrue();
+            }
+        }
+    }
+
+    @Test
+    void should_reply_to_a_move_before_the_next_command_arrives_and_close_on_exit() throws IOException {
+        try (var socket = connect()) {
+            var input = socket.getInputStream();
+            var output = socket.getOutputStream();
+
+            output.write("PLACE 0,0,SOUTH\nMOVE\n".getBytes(StandardCharsets.UTF_8));
+            assertThat(readUntil(input, "Robot cannot move there.\n")).isTrue();
+
+            output.write("LEFT\nLEFT\nREPORT\nEXIT\nREPORT\n".getBytes(StandardCharsets.UTF_8));
+
+            assertThat(new String(input.readAllBytes(), StandardCharsets.UTF_8))
+                .isEqualTo("Output: 0,0,NORTH\nGoodbye!\n");
+        }
+    }
+
+    @Test
+    void should_close_the_connection_of_a_client_that_sends_a_line_without_end() throws IOException {
+        try (var socket = connect()) {
+            var input = socket.getInputStream();
+            var output = socket.getOutputStream();
+
+            output.write("PLACE 1,1,EAST\nMOVE\nREPORT\n".getBytes(StandardCharsets.UTF_8));
+            assertThat(readUntil(input, "Output: 2,1,EAST\n")).isTrue();
+
+            // exactly the longest line the server buffers, so it reads everything sent before it closes the connection
+            var line = new byte[1 << 20];
+            Arrays.fill(line, (byte) 'M');
+            output.write(line);
+
+            assertThat(new String(input.readAllBytes(), StandardCharsets.UTF_8))
+                .isEqualTo("Line too long, at most 1048576 bytes per line, closing the connection.\n");
+        }
+    }
+
+    private Socket connect() throws IOException {
+        return new Socket(server.address().getAddress(), server.address().getPort());
+    }
+
+    private static boolean readUntil(InputStream input, String suffix) throws IOException {
+        var received = new StringBuilder();
+
+        while (!received.toString().endsWith(suffix)) {
+            var b = input.read();
+
+            if (b < 0) {
+                return false;
+            }
+
+            received.append((char) b);
+        }
+
+        return true;
+    }
+
+    private static String batchOutput(String input) throws IOException {
+        var output = new ByteArrayOutputStream();
+
+        new BatchCli(new RobotService(PlaneService.initDefault()))
+            .replay(Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))), output);
+
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
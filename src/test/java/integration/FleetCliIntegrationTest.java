@@ -0,0 +1,64 @@
+package integration;
+
+import io.afaruqi.gogobot.application.FleetCli;
+import io.afaruqi.gogobot.domain.fleet.FleetService;
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FleetCliIntegrationTest {
+    @Test
+    void should_move_every_robot_and_reply_in_input_order() throws IOException {
+        var input = """
+            PLACE 7 1,1,NORTH
+            PLACE 12 4,4,EAST
+            MOVE 7
+            MOVE 12
+            MOVE 12
+            RIGHT 7
+            REPORT 7
+            REPORT 12
+            REPORT 3
+            PLACE 3 9,9,WEST
+            PLACE 3 1,1
+            JUMP 7
+            EXIT
+            REPORT 7
+            """;
+
+        var expected = """
+            Robot 12 cannot move there.
+            Output: 7 1,2,EAST
+            Output: 12 5,4,EAST
+            Please place robot 3 first with 'PLACE' command.
+            Robot 3 is not placed within [x=5, y=5]
+            Invalid PLACE arguments: 'PLACE 3 1,1'
+            Hint: PLACE <robot id> <x coordinate>,<y coordinate>,<face direction: NORTH, SOUTH, EAST, WEST>
+            Unknown command 'JUMP 7', fleet commands are 'PLACE <id> <x>,<y>,<face direction>', 'MOVE <id>', 'LEFT <id>', 'RIGHT <id>' and 'REPORT <id>'.
+            """;
+
+        assertThat(replay(input, 1)).isEqualTo(expected);
+        assertThat(replay(input, 4)).isEqualTo(expected);
+    }
+
+    private static String replay(String input, int parallelism) throws IOException {
+        var output = new ByteArrayOutputStream();
+
+        var planeService = PlaneService.initDefault();
+
+        try (var fleetService = new FleetService(new RobotService(planeService), parallelism)) {
+            new FleetCli(fleetService, planeService.getPlane())
+                .replay(Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))), output);
+        }
+
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,42 @@
+package integration;
+
+import io.afaruqi.gogobot.application.ObstacleFile;
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ObstacleFileIntegrationTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void should_skip_blank_lines_and_comments_and_ignore_spaces_around_a_cell() throws IOException {
+        var obstacleFile = directory.resolve("obstacles.txt");
+        Files.writeString(obstacleFile, "# walls\n1,2\n   \n\t\n3,4 \n \t0,5\t\n　\n\n  # indented comment\n");
+        var planeService = PlaneService.initDefault();
+
+        ObstacleFile.load(obstacleFile, planeService);
+
+        assertThat(planeService.isBlocked(1, 2)).isTrue();
+        assertThat(planeService.isBlocked(3, 4)).isTrue();
+        assertThat(planeService.isBlocked(0, 5)).isTrue();
+        assertThat(planeService.isBlocked(2, 1)).isFalse();
+    }
+
+    @Test
+    void should_reject_a_line_that_is_not_a_cell() throws IOException {
+        var obstacleFile = directory.resolve("obstacles.txt");
+        Files.writeString(obstacleFile, "1,2\n3, 4\n");
+
+        assertThatThrownBy(() -> ObstacleFile.load(obstacleFile, PlaneService.initDefault()))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Invalid obstacle on line 2: '3, 4', expected '<x>,<y>'");
+    }
+}
@@ -0,0 +1,85 @@
+package integration;
+
+import io.afaruqi.gogobot.application.BatchCli;
+import io.afaruqi.gogobot.application.ReplayRunner;
+import io.afaruqi.gogobot.domain.plane.PlaneService;
+import io.afaruqi.gogobot.domain.robot.RobotService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReplayRunnerIntegrationTest {
+    private static final String[] COMMANDS = {"MOVE", "LEFT", "RIGHT", "REPORT", "PLACE 2,3,WEST", "PLACE 9,9,EAST", "JUMP"};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void should_write_the_same_output_as_serial_replays_for_every_session() throws IOException {
+        var sessions = Files.createDirectories(directory.resolve("sessions"));
+        var random = new Random(42);
+
+        for (var i = 0; i < 50; i++) {
+            var session = new StringBuilder("PLACE 0,0,NORTH\n");
+
+            for (var line = random.nextInt(2_000); line > 0; line--) {
+                session.append(COMMANDS[random.nextInt(COMMANDS.length)]).append('\n');
+            }
+
+            Files.writeString(sessions.resolve("session-" + i + ".txt"), session);
+        }
+
+        var output = directory.resolve("output");
+        var summary = new ReplayRunner(PlaneService.initDefault(), 4)
+            .run(ReplayRunner.sessionFiles(sessions), output);
+
+        assertThat(summary.failures()).isZero();
+        assertThat(summary.results()).hasSize(50);
+
+        for (var i = 0; i < 50; i++) {
+            var session = sessions.resolve("session-" + i + ".txt");
+
+            assertThat(Files.readAllBytes(output.resolve("session-" + i + ".txt.out")))
+                .isEqualTo(serialReplay(session));
+        }
+
+        assertThat(Files.readString(output.resolve(ReplayRunner.SUMMARY_FILE)))
+            .startsWith("session-0.txt: OK ")
+            .contains("Replayed 50 sessions, 0 failed");
+    }
+
+    @Test
+    void should_replay_the_sessions_of_a_manifest_and_report_missing_ones() throws IOException {
+        Files.writeString(directory.resolve("first"), "PLACE 1,1,EAST\nMOVE\nREPORT\n");
+        Files.writeString(directory.resolve("manifest.txt"), "# regression sessions\nfirst\n\nmissing\n");
+
+        var summary = new ReplayRunner(PlaneService.initDefault(), 2)
+            .run(ReplayRunner.sessionFiles(directory.resolve("manifest.txt")), directory.resolve("output"));
+
+        assertThat(summary.results()).hasSize(2);
+        assertThat(summary.results().get(0).failed()).isFalse();
+        assertThat(summary.results().get(1).failed()).isTrue();
+        assertThat(summary.failures()).isEqualTo(1);
+        assertThat(Files.readString(directory.resolve("output").resolve("first.out")))
+            .contains("Output: 2,1,EAST\n");
+    }
+
+    private static byte[] serialReplay(Path session) throws IOException {
+        var output = new ByteArrayOutputStream();
+
+        try (var input = FileChannel.open(session, StandardOpenOption.READ)) {
+            new BatchCli(new RobotService(PlaneService.initDefault())).replay(input, output);
+        }
+
+        return output.toByteArray();
+    }
+}
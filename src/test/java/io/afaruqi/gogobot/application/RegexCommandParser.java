@@ -0,0 +1,204 @@
+package io.afaruqi.gogobot.application;
+
+import io.afaruqi.gogobot.domain.robot.FaceDirection;
+import io.afaruqi.gogobot.domain.robot.RobotMacro;
+import io.afaruqi.gogobot.domain.robot.RobotPath;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * The command parser {@link Cli} had before it went through {@link CommandTokenizer}: every line is decoded into a
+ * {@code String} and matched against regular expressions. It is kept in the test sources as the reference the byte
+ * parser is tested against, and shipped in the test JAR for {@code CommandDispatchBenchmark} to compare their cost
+ * per line.
+ */
+public final class RegexCommandParser {
+    private static final Pattern VALID_COMMANDS_REGEX = Pattern.compile("^(PLACE?.+|MOVE|LEFT|RIGHT|REPORT|GOTO( .*)?|DEFINE( .*)?|RUN( .*)?)$");
+    private static final Pattern PLACE_COMMAND_REGEX = Pattern.compile("^(PLACE) (?<xCoordinate>\\d+),(?<yCoordinate>\\d+),(?<faceDirection>NORTH|SOUTH|EAST|WEST)$");
+    private static final Pattern GOTO_COMMAND_REGEX = Pattern.compile("^(GOTO) (?<xCoordinate>\\d+),(?<yCoordinate>\\d+),(?<faceDirection>NORTH|SOUTH|EAST|WEST)$");
+    private static final Pattern DEFINE_COMMAND_REGEX = Pattern.compile("^DEFINE (?<name>\\w+)(?<commands>( (MOVE|LEFT|RIGHT))+)$");
+    private static final Pattern RUN_COMMAND_REGEX = Pattern.compile("^RUN (?<name>\\w+)( (?<times>\\d+))?$");
+
+    private final CommandMetrics metrics;
+
+    /**
+     * @param metrics the metrics of the sessions, {@code STATS} is only a command while they are enabled
+     */
+    public RegexCommandParser(CommandMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Executes every line of the reader, split like {@link java.util.Scanner#nextLine()} does it, until it ends or
+     * the session is exited, and commits after every line.
+     */
+    public void replay(BufferedReader reader, CommandSession session) throws IOException {
+        var line = new StringBuilder();
+        String command;
+
+        while (!session.isExited() && (command = nextLine(reader, line)) != null) {
+            execute(session, command);
+            session.commit();
+        }
+    }
+
+    /**
+     * Executes a single line (without its line terminator).
+     */
+    public void execute(CommandSession session, String command) {
+        if (command.equals("EXIT")) {
+            session.exit();
+        } else if (command.equals("HELP")) {
+            session.help();
+        } else if (command.equals("STATS") && metrics.isEnabled()) {
+            session.stats();
+        } else {
+            translateCommand(session, command);
+        }
+    }
+
+    private static String nextLine(BufferedReader reader, StringBuilder line) throws IOException {
+        line.setLength(0);
+        int c;
+
+        while ((c = reader.read()) != -1) {
+            if (c == '\r') {
+                reader.mark(1);
+
+                if (reader.read() != '\n') {
+                    reader.reset();
+                }
+
+                return line.toString();
+            }
+
+            if (c == '\n' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return line.toString();
+            }
+
+            line.append((char) c);
+        }
+
+        return line.isEmpty() ? null : line.toString();
+    }
+
+    private void translateCommand(CommandSession session, String command) {
+        if (command.isBlank())
+            session.blank();
+
+        var commandMatcher = VALID_COMMANDS_REGEX.matcher(command);
+
+        if (commandMatcher.matches()) {
+            executeCommand(session, command);
+        } else {
+            session.unknown(command);
+        }
+    }
+
+    private void executeCommand(CommandSession session, String command) {
+        if (command.startsWith("PLACE")) {
+            executePlaceCommand(session, command);
+        } else if (command.equals("MOVE")) {
+            session.move();
+        } else if (command.equals("LEFT")) {
+            session.left();
+        } else if (command.equals("RIGHT")) {
+            session.right();
+        } else if (command.equals("REPORT")) {
+            session.report();
+        } else if (command.startsWith("GOTO")) {
+            executeGotoCommand(session, command);
+        } else if (command.startsWith("DEFINE")) {
+            executeDefineCommand(session, command);
+        } else if (command.startsWith("RUN")) {
+            executeRunCommand(session, command);
+        }
+    }
+
+    private void executePlaceCommand(CommandSession session, String command) {
+        var matcher = PLACE_COMMAND_REGEX.matcher(command);
+
+        if (matcher.matches()) {
+            var xCoordinate = parseCoordinate(matcher.group("xCoordinate"));
+            var yCoordinate = parseCoordinate(matcher.group("yCoordinate"));
+            var faceDirection = FaceDirection.valueOf(matcher.group("faceDirection"));
+
+            session.place(xCoordinate, yCoordinate, faceDirection);
+        } else {
+            session.invalidPlace(command);
+        }
+    }
+
+    private void executeGotoCommand(CommandSession session, String command) {
+        var matcher = GOTO_COMMAND_REGEX.matcher(command);
+
+        if (matcher.matches()) {
+            var xCoordinate = parseCoordinate(matcher.group("xCoordinate"));
+            var yCoordinate = parseCoordinate(matcher.group("yCoordinate"));
+            var faceDirection = FaceDirection.valueOf(matcher.group("faceDirection"));
+
+            session.goTo(xCoordinate, yCoordinate, faceDirection);
+        } else {
+            session.invalidGoTo(command);
+        }
+    }
+
+    private void executeDefineCommand(CommandSession session, String command) {
+        var matcher = DEFINE_COMMAND_REGEX.matcher(command);
+
+        if (matcher.matches()) {
+            var names = matcher.group("commands").substring(1).split(" ");
+
+            if (names.length <= RobotMacro.MAX_COMMANDS) {
+                var commands = new byte[names.length];
+
+                for (var i = 0; i < names.length; i++) {
+                    commands[i] = switch (names[i]) {
+                        case "MOVE" -> RobotPath.MOVE;
+                        case "LEFT" -> RobotPath.LEFT;
+                        default -> RobotPath.RIGHT;
+                    };
+                }
+
+                session.define(matcher.group("name"), commands);
+                return;
+            }
+        }
+
+        session.invalidDefine(command);
+    }
+
+    private void executeRunCommand(CommandSession session, String command) {
+        var matcher = RUN_COMMAND_REGEX.matcher(command);
+
+        if (matcher.matches()) {
+            var times = matcher.group("times") != null ? parseCoordinate(matcher.group("times")) : 1;
+
+            if (times >= 0) {
+                session.run(matcher.group("name"), times);
+                return;
+            }
+        }
+
+        session.invalidRun(command);
+    }
+
+    // a coordinate that does not fit into an int is outside any plane, so it becomes -1 instead of failing
+    private static int parseCoordinate(String digits) {
+        var coordinate = 0;
+
+        for (var i = 0; i < digits.length(); i++) {
+            var digit = digits.charAt(i) - '0';
+
+            if (coordinate > (Integer.MAX_VALUE - digit) / 10) {
+                return -1;
+            }
+
+            coordinate = coordinate * 10 + digit;
+        }
+
+        return coordinate;
+    }
+}